@@ -50,6 +50,12 @@ public class Main {
      * Reference to global Entity Manager Factory
      */
     public static EntityManagerFactory emf;
+    /**
+     * Reference to the Entity Manager Factory used by bulk operations (product
+     * update, import of products and CSV files), with JDBC batch writing and large
+     * ID preallocation; see the localizethatBulkPU persistence unit
+     */
+    public static EntityManagerFactory bulkEmf;
 
     /**
      * @param args the command line arguments (not used for now)
@@ -78,6 +84,7 @@ public class Main {
         connProps.put("javax.persistence.jdbc.user", appSettings.getString(AppSettings.PREF_DB_LOGIN));
         connProps.put("javax.persistence.jdbc.password", appSettings.getString(AppSettings.PREF_DB_PASSWD));
         emf = Persistence.createEntityManagerFactory("localizethatPU", connProps);
+        bulkEmf = Persistence.createEntityManagerFactory("localizethatBulkPU", connProps);
 
         String preferredLafName = appSettings.getString(AppSettings.PREF_GUI_LOOK_AND_FEEL);
         if (!GuiUtils.setBestAvailableLookAndFeel(preferredLafName)) {
@@ -99,6 +106,16 @@ public class Main {
      * Cleans up the resources used by the application before closing the system
      */
     public static void cleanUpResources() {
+        bulkEmf.close();
         emf.close();
     }
+
+    /**
+     * Discards the entities cached by the interactive Entity Manager Factory, so
+     * the changes made through bulkEmf are visible to it. Bulk workers must call
+     * this method once they have finished
+     */
+    public static void bulkOperationFinished() {
+        emf.getCache().evictAll();
+    }
 }
@@ -8,7 +8,9 @@ package net.localizethat.gui.components;
 import java.awt.Font;
 import java.awt.Rectangle;
 import java.beans.Beans;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.TypedQuery;
@@ -26,9 +28,12 @@ import net.localizethat.model.LTKeyValuePair;
 import net.localizethat.model.LocaleContent;
 import net.localizethat.model.LocaleFile;
 import net.localizethat.model.TranslationStatus;
+import net.localizethat.model.TranslationSuggestion;
 import net.localizethat.model.jpa.JPAHelperBundle;
 import net.localizethat.model.jpa.LocaleContentJPAHelper;
+import net.localizethat.model.jpa.TranslationMemory;
 import net.localizethat.system.AppSettings;
+import net.localizethat.tasks.LoadTranslationMemoryWorker;
 
 /**
  * Content edition panel
@@ -39,6 +44,7 @@ import net.localizethat.system.AppSettings;
  */
 public class ContentEditionPanel extends javax.swing.JPanel implements ListSelectionListener {
     private static final long serialVersionUID = 1L;
+    private static final int MAX_SUGGESTIONS = 10;
     private EntityManagerFactory emf;
     private EntityManager entityManager;
     private JTable associatedTable;
@@ -50,6 +56,9 @@ public class ContentEditionPanel extends javax.swing.JPanel implements ListSelec
     private Glossary g;
     private CheckGlossaryTranslatedTextListener cgttl;
     private Font f;
+    private List<TranslationSuggestion> suggestions;
+    private int suggestionIndex;
+    private LoadTranslationMemoryWorker tmLoader;
 
     /**
      * Creates new form ContentEditionPanel
@@ -84,6 +93,7 @@ public class ContentEditionPanel extends javax.swing.JPanel implements ListSelec
         origTextPane.setText("");
         trnsTextArea.setText("");
         ellipsisCharKeyAdapter = new EllipsisUnicodeCharKeyAdapter();
+        suggestions = Collections.emptyList();
 
         if (!Beans.isDesignTime() && !this.entityManager.getTransaction().isActive()) {
             this.entityManager.getTransaction().begin();
@@ -108,6 +118,39 @@ public class ContentEditionPanel extends javax.swing.JPanel implements ListSelec
         //         trnsTextArea, l, null, origTextPane, g);
         setAssociatedTable(associatedTable);
         // trnsTextArea.getDocument().addDocumentListener(cgttl);
+
+        if (!TranslationMemory.getInstance().isLoaded(l)) {
+            tmLoader = new LoadTranslationMemoryWorker(l, this);
+            tmLoader.execute();
+        }
+    }
+
+    /**
+     * Looks for suggestions in the translation memory for the content being edited,
+     * enabling the suggestions button if there are any. Nothing is suggested until
+     * the translation memory of the target locale has been loaded; if it is not (for
+     * instance, because it has been invalidated after updating a product), it is
+     * loaded in the background, and the suggestions are refreshed once it is ready
+     */
+    public void refreshSuggestions() {
+        LocaleContent origLc = (selectedLObject == null) ? null : selectedLObject.getOriginalNode();
+        L10n l = (tableModel == null) ? null : tableModel.getLocalizationCode();
+
+        suggestions = Collections.emptyList();
+        suggestionIndex = -1;
+        if (l != null && !TranslationMemory.getInstance().isLoaded(l)) {
+            if (tmLoader == null || tmLoader.isDone()) {
+                tmLoader = new LoadTranslationMemoryWorker(l, this);
+                tmLoader.execute();
+            }
+        } else if (origLc instanceof LTKeyValuePair) {
+            suggestions = TranslationMemory.getInstance().suggest(origLc.getTextValue(), l,
+                    Main.appSettings.getInteger(AppSettings.PREF_TM_MIN_SIMILARITY),
+                    MAX_SUGGESTIONS, selectedLObject.getSiblingNode(), entityManager);
+        }
+        sugButton.setEnabled(!suggestions.isEmpty());
+        sugButton.setToolTipText(suggestions.isEmpty() ? "Cycle over suggestions"
+                : "Cycle over suggestions (" + suggestions.size() + ")");
     }
 
     /**
@@ -119,6 +162,10 @@ public class ContentEditionPanel extends javax.swing.JPanel implements ListSelec
         if (associatedTable != null) {
             this.associatedTable = associatedTable;
             tableModel = (ContentListTableModel) this.associatedTable.getModel();
+            // The entries returned by the table model must be managed by our EntityManager
+            if (entityManager != null) {
+                tableModel.setEntityManager(entityManager);
+            }
         }
     }
 
@@ -294,6 +341,9 @@ public class ContentEditionPanel extends javax.swing.JPanel implements ListSelec
         lc = entityManager.find(LTContent.class, selectedLObject.getSiblingNode().getId());
         entityManager.refresh(lc);
         selectedLObject.setSiblingNode(lc);
+        if (lc instanceof LTKeyValuePair) {
+            TranslationMemory.getInstance().translationChanged((LTKeyValuePair) lc);
+        }
     }
 
     private void fillKeyConnections() {
@@ -398,6 +448,11 @@ public class ContentEditionPanel extends javax.swing.JPanel implements ListSelec
         sugButton.setIcon(new javax.swing.ImageIcon(getClass().getResource("/net/localizethat/resources/16-dialog-information.png"))); // NOI18N
         sugButton.setToolTipText("Cycle over suggestions");
         sugButton.setEnabled(false);
+        sugButton.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                sugButtonActionPerformed(evt);
+            }
+        });
 
         keepOriginalCheck.setMnemonic('K');
         keepOriginalCheck.setText("Keep original value");
@@ -756,6 +811,22 @@ public class ContentEditionPanel extends javax.swing.JPanel implements ListSelec
         trnsTextArea.setText("");
     }//GEN-LAST:event_clearButtonActionPerformed
 
+    private void sugButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_sugButtonActionPerformed
+        if (suggestions.isEmpty()) {
+            return;
+        }
+
+        suggestionIndex = (suggestionIndex + 1) % suggestions.size();
+        TranslationSuggestion ts = suggestions.get(suggestionIndex);
+        trnsTextArea.setText(ts.getTargetText());
+        keepOriginalCheck.setSelected(false);
+        trnsStatusCombo.setSelectedItem(ts.getTrnsStatus());
+        Main.mainWindow.getStatusBar().setInfoText("Suggestion " + (suggestionIndex + 1)
+                + " of " + suggestions.size() + " (" + ts.getSimilarity() + "% match): "
+                + ts.getSourceText());
+        trnsTextArea.requestFocusInWindow();
+    }//GEN-LAST:event_sugButtonActionPerformed
+
     // Variables declaration - do not modify//GEN-BEGIN:variables
     private javax.swing.JTextField accessKeyField;
     private javax.swing.JLabel accessKeyLabel;
@@ -856,6 +927,7 @@ public class ContentEditionPanel extends javax.swing.JPanel implements ListSelec
                         }
                     }
                 }
+                refreshSuggestions();
             } else {
                 objectForAKCombo.setEnabled(false);
                 objectForCKCombo.setEnabled(false);
@@ -15,6 +15,7 @@ import net.localizethat.gui.models.ContentListTableModel;
 import net.localizethat.gui.tabpanels.AbstractTabPanel;
 import net.localizethat.model.L10n;
 import net.localizethat.model.LocaleContent;
+import net.localizethat.model.LocaleContentRef;
 
 /**
  * Panel/component that shows a list of (Editable)LocaleContent items and allows
@@ -55,9 +56,47 @@ public class ContentListEditPanel extends AbstractTabPanel {
             managedLcList.add(entityManager.find(lc.getClass(), lc.getId()));
         }
 
+        setUpContentList(managedLcList);
+    }
+
+    /**
+     * Creates a new ContentListEditPanel for a list of references to LocaleContent
+     * items, like the one returned by the Update Product process. Only the IDs are
+     * passed to the table model, which reads the items when they are displayed
+     * @param entityManager the EntityManager that will manage the items
+     * @param targetLocale the locale being edited
+     * @param lcRefList the list of references to the items
+     */
+    public ContentListEditPanel(EntityManager entityManager, L10n targetLocale,
+            List<LocaleContentRef> lcRefList) {
+        emf = Main.emf;
+        this.entityManager = entityManager;
+        this.targetLocale = targetLocale;
+        initComponents();
+
+        if (!Beans.isDesignTime() && !entityManager.getTransaction().isActive()) {
+            entityManager.getTransaction().begin();
+        }
+
+        List<Integer> ids = new ArrayList<>(lcRefList.size());
+        for(LocaleContentRef ref : lcRefList) {
+            ids.add(ref.getId());
+        }
+
+        ContentListTableModel tableModel = contentListTable.getTableModel();
+        tableModel.setLocalizationCode(targetLocale);
+        tableModel.replaceIds(ids);
+        setUpEditionPanel();
+    }
+
+    private void setUpContentList(List<LocaleContent> managedLcList) {
         ContentListTableModel tableModel = contentListTable.getTableModel();
         tableModel.setLocalizationCode(targetLocale);
         tableModel.replaceData(managedLcList);
+        setUpEditionPanel();
+    }
+
+    private void setUpEditionPanel() {
         this.contentEditionPanel.activatePanel(targetLocale, contentListTable.getTable());
         this.contentEditionPanel.setAssociatedTable(contentListTable.getTable());
         this.contentListTable.addTableListSelectionListener(contentEditionPanel);
@@ -8,19 +8,19 @@ package net.localizethat.gui.components;
 import java.awt.Font;
 import java.awt.Rectangle;
 import java.awt.event.KeyEvent;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 import javax.swing.JList;
 import javax.swing.JTable;
 import javax.swing.JTextField;
-import javax.swing.RowFilter;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
 import javax.swing.event.ListSelectionListener;
 import javax.swing.event.TableModelEvent;
 import javax.swing.event.TableModelListener;
 import javax.swing.table.TableColumn;
-import javax.swing.table.TableModel;
-import javax.swing.table.TableRowSorter;
 import net.localizethat.Main;
+import net.localizethat.gui.models.ContentListRowSorter;
 import net.localizethat.gui.models.ContentListTableModel;
 import net.localizethat.gui.models.SelectableItem;
 import net.localizethat.gui.renderers.SelectableListItem;
@@ -32,7 +32,7 @@ import net.localizethat.system.AppSettings;
  */
 public class ContentListTable extends javax.swing.JPanel {
     private static final long serialVersionUID = 1L;
-    private final TableRowSorter<ContentListTableModel> tableRowSorter;
+    private final ContentListRowSorter tableRowSorter;
     private Font f;
 
     /**
@@ -47,10 +47,10 @@ public class ContentListTable extends javax.swing.JPanel {
         contentTable.createDefaultColumnsFromModel();
         tableModel.addTableModelListener(contentTable);
         tableModel.addTableModelListener(new ContentTableModelListener());
-        tableRowSorter = new TableRowSorter<>(tableModel);
+        tableRowSorter = new ContentListRowSorter(tableModel);
         contentTable.setRowSorter(tableRowSorter);
         filterField.getDocument().addDocumentListener(
-                new FilterDocumentListener(tableModel, tableRowSorter, filterField));
+                new FilterDocumentListener(tableModel, filterField));
 
         for(TableColumn tc : tableColumnModel.getColumnsAsList(false)) {
             columnChooserModel.addElement(new SelectableItem<>(tc,
@@ -77,16 +77,16 @@ public class ContentListTable extends javax.swing.JPanel {
         this.contentTable.getSelectionModel().addListSelectionListener(lsl);
     }
 
-    private void applyFilter(TableModel tm, TableRowSorter trs, String filter) {
-        RowFilter<TableModel, Object> rf;
+    private void applyFilter(ContentListTableModel tm, String filter) {
+        Pattern p;
         //If current expression doesn't parse, don't update.
         try {
             // (?i) adds case insensitive flag to the RegEx
-            rf = RowFilter.regexFilter("(?i)" + filter, 3, 4, 5);
-        } catch (java.util.regex.PatternSyntaxException e) {
+            p = filter.isEmpty() ? null : Pattern.compile("(?i)" + filter);
+        } catch (PatternSyntaxException e) {
             return;
         }
-        trs.setRowFilter(rf);
+        tm.setFilter(p);
     }
 
     /**
@@ -344,29 +344,27 @@ public class ContentListTable extends javax.swing.JPanel {
     }
 
     private class FilterDocumentListener implements DocumentListener {
-        private final TableModel tm;
-        private final TableRowSorter trs;
+        private final ContentListTableModel tm;
         private final JTextField filter;
 
-        protected FilterDocumentListener(TableModel tm, TableRowSorter trs, JTextField filter) {
+        protected FilterDocumentListener(ContentListTableModel tm, JTextField filter) {
             this.tm = tm;
-            this.trs = trs;
             this.filter = filter;
         }
 
         @Override
         public void insertUpdate(DocumentEvent e) {
-            applyFilter(tm, trs, filter.getText());
+            applyFilter(tm, filter.getText());
         }
 
         @Override
         public void removeUpdate(DocumentEvent e) {
-            applyFilter(tm, trs, filter.getText());
+            applyFilter(tm, filter.getText());
         }
 
         @Override
         public void changedUpdate(DocumentEvent e) {
-            applyFilter(tm, trs, filter.getText());
+            applyFilter(tm, filter.getText());
         }
     }
 }
@@ -8,6 +8,7 @@ package net.localizethat.gui.dialogs;
 
 import au.com.bytecode.opencsv.CSV;
 import java.beans.Beans;
+import java.beans.PropertyChangeEvent;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
@@ -19,7 +20,9 @@ import java.util.concurrent.TimeoutException;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.TypedQuery;
 import javax.swing.DefaultComboBoxModel;
+import javax.swing.JOptionPane;
 import javax.swing.SpinnerNumberModel;
+import javax.swing.SwingWorker;
 import javax.swing.filechooser.FileNameExtensionFilter;
 import net.localizethat.Main;
 import net.localizethat.gui.models.CharsetModel;
@@ -47,6 +50,7 @@ public class ImportCSVGlossaryDialog extends javax.swing.JPanel implements Modal
     List<DefaultComboBoxModel<String>> headerModelList;
     ModalDialog md;
     int fileLines;
+    CSVImporterWorker ciw;
 
     /**
      * Creates new form ImportCSVGlossary
@@ -108,7 +112,7 @@ public class ImportCSVGlossaryDialog extends javax.swing.JPanel implements Modal
 
     private void retrieveSavedCSVImportSettings() {
         CSVImportSettings cis;
-        cis = CSVImporterWorker.CSVImportSettings.recreateFromXML("savedCis.xml");
+        cis = CSVImporterWorker.CSVImportSettings.recreateFromXML(CSVImportSettings.SAVED_SETTINGS_FILE);
         if (cis != null) {
             if (cis.getFileToImport() != null) {
                 filenamePathField.setText(cis.getFileToImport().getAbsolutePath());
@@ -158,9 +162,35 @@ public class ImportCSVGlossaryDialog extends javax.swing.JPanel implements Modal
         }
     }
     
+    /**
+     * Checks if the last import of the same file into the same glossary was left
+     * unfinished and, if so, asks the user whether to resume it
+     * @param cis the settings of the import about to be launched
+     * @return the number of CSV lines to skip because they were already imported, or 0
+     */
+    private int askForCheckpoint(CSVImportSettings cis) {
+        CSVImportSettings savedCis;
+        savedCis = CSVImporterWorker.CSVImportSettings.recreateFromXML(CSVImportSettings.SAVED_SETTINGS_FILE);
+
+        if (savedCis == null || savedCis.getCheckpointLine() <= 0
+                || savedCis.getFileToImport() == null || savedCis.getGlossary() == null
+                || !savedCis.getFileToImport().equals(cis.getFileToImport())
+                || !Objects.equals(savedCis.getGlossary().getId(), cis.getGlossary().getId())
+                || savedCis.getSkippedLines() != cis.getSkippedLines()
+                || savedCis.isFirstRowHasHeaders() != cis.isFirstRowHasHeaders()) {
+            return 0;
+        }
+
+        int answer = JOptionPane.showConfirmDialog(this,
+                "The last import of this file was not finished (" + savedCis.getCheckpointLine()
+                + " lines were imported).\nDo you want to resume it from there?",
+                "Resume CSV import", JOptionPane.YES_NO_OPTION);
+        return (answer == JOptionPane.YES_OPTION) ? savedCis.getCheckpointLine() : 0;
+    }
+
     public void retrieveSavedCSVImportFieldBindings() {
         CSVImportSettings cis;
-        cis = CSVImporterWorker.CSVImportSettings.recreateFromXML("savedCis.xml");
+        cis = CSVImporterWorker.CSVImportSettings.recreateFromXML(CSVImportSettings.SAVED_SETTINGS_FILE);
         if (cis != null) {
             // TODO Check why this is not getting retrieved
             origTermCombo.setSelectedIndex(cis.getOrigTermColumn() + 1);
@@ -743,17 +773,28 @@ public class ImportCSVGlossaryDialog extends javax.swing.JPanel implements Modal
                     .setTrnsCreationDateColumn(trnsCreationDateCombo.getSelectedIndex() - 1)
                     .setTrnsLastUpdateColumn(trnsLastUpdateCombo.getSelectedIndex() - 1)
                     .setTrnsValueColumn(trnsValueCombo.getSelectedIndex() - 1);
-            cis.serializeToXML("savedCis.xml");
+            if (!cis.isTestMode()) {
+                cis.setCheckpointLine(askForCheckpoint(cis));
+            }
+            cis.serializeToXML(CSVImportSettings.SAVED_SETTINGS_FILE);
 
-            CSVImporterWorker ciw = new CSVImporterWorker(cis, statusBar);
+            ciw = new CSVImporterWorker(cis, statusBar);
             ProgressBarListener pbl = new ProgressBarListener(statusBar, "progress");
             ciw.addPropertyChangeListener(pbl);
+            // The dialog stays open while importing, so the Cancel button can stop the
+            // import; it is closed once the worker finishes
+            ciw.addPropertyChangeListener((PropertyChangeEvent pce) -> {
+                if (pce.getPropertyName().equals("state")
+                        && pce.getNewValue() == SwingWorker.StateValue.DONE) {
+                    md.setModalDialogResult(!ciw.isStopRequested());
+                }
+            });
 
             okButton.setText("OK");
+            okButton.setEnabled(false);
             tabbedPane.setEnabledAt(2, true);
             tabbedPane.setSelectedIndex(2);
             ciw.execute();
-            md.setModalDialogResult(true);
         }
     }//GEN-LAST:event_okButtonActionPerformed
 
@@ -762,7 +803,14 @@ public class ImportCSVGlossaryDialog extends javax.swing.JPanel implements Modal
     }//GEN-LAST:event_multipleValuesInTrnsCheckActionPerformed
 
     private void cancelButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_cancelButtonActionPerformed
-        md.setModalDialogResult(false);
+        if (ciw != null && !ciw.isDone()) {
+            // The worker commits the rows already imported and saves the checkpoint to
+            // resume from; the dialog is closed by the worker state listener once done
+            cancelButton.setEnabled(false);
+            ciw.requestStop();
+        } else {
+            md.setModalDialogResult(false);
+        }
     }//GEN-LAST:event_cancelButtonActionPerformed
 
 
@@ -0,0 +1,120 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.localizethat.gui.models;
+
+import java.util.Collections;
+import java.util.List;
+import javax.swing.RowSorter;
+import javax.swing.SortOrder;
+
+/**
+ * RowSorter for ContentListTableModel. The model sorts (and filters) its rows by
+ * itself, without reading every content in the table, so view and model indexes are
+ * always the same; this class just forwards the clicks on the table headers to the
+ * model
+ * @author rpalomares
+ */
+public class ContentListRowSorter extends RowSorter<ContentListTableModel> {
+    private final ContentListTableModel model;
+    private List<SortKey> sortKeys;
+
+    public ContentListRowSorter(ContentListTableModel model) {
+        this.model = model;
+        this.sortKeys = Collections.emptyList();
+    }
+
+    @Override
+    public ContentListTableModel getModel() {
+        return model;
+    }
+
+    @Override
+    public void toggleSortOrder(int column) {
+        SortOrder order = SortOrder.ASCENDING;
+
+        if (!sortKeys.isEmpty() && sortKeys.get(0).getColumn() == column) {
+            switch (sortKeys.get(0).getSortOrder()) {
+                case ASCENDING:
+                    order = SortOrder.DESCENDING;
+                    break;
+                case DESCENDING:
+                    order = SortOrder.UNSORTED;
+                    break;
+                default:
+                    order = SortOrder.ASCENDING;
+            }
+        }
+        setSortKeys((order == SortOrder.UNSORTED) ? null
+                : Collections.singletonList(new SortKey(column, order)));
+    }
+
+    @Override
+    public int convertRowIndexToModel(int index) {
+        return index;
+    }
+
+    @Override
+    public int convertRowIndexToView(int index) {
+        return index;
+    }
+
+    @Override
+    public void setSortKeys(List<? extends SortKey> keys) {
+        List<SortKey> newKeys = (keys == null || keys.isEmpty())
+                ? Collections.<SortKey>emptyList()
+                : Collections.<SortKey>singletonList(keys.get(0));
+
+        if (!newKeys.equals(sortKeys)) {
+            sortKeys = newKeys;
+            if (sortKeys.isEmpty()) {
+                model.sortBy(-1, true);
+            } else {
+                model.sortBy(sortKeys.get(0).getColumn(),
+                        sortKeys.get(0).getSortOrder() != SortOrder.DESCENDING);
+            }
+            fireSortOrderChanged();
+        }
+    }
+
+    @Override
+    public List<? extends SortKey> getSortKeys() {
+        return sortKeys;
+    }
+
+    @Override
+    public int getViewRowCount() {
+        return model.getRowCount();
+    }
+
+    @Override
+    public int getModelRowCount() {
+        return model.getRowCount();
+    }
+
+    @Override
+    public void modelStructureChanged() {
+    }
+
+    @Override
+    public void allRowsChanged() {
+    }
+
+    @Override
+    public void rowsInserted(int firstRow, int endRow) {
+    }
+
+    @Override
+    public void rowsDeleted(int firstRow, int endRow) {
+    }
+
+    @Override
+    public void rowsUpdated(int firstRow, int endRow) {
+    }
+
+    @Override
+    public void rowsUpdated(int firstRow, int endRow, int column) {
+    }
+}
@@ -5,10 +5,26 @@
  */
 package net.localizethat.gui.models;
 
+import java.text.Collator;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import javax.swing.SwingWorker;
 import javax.swing.table.AbstractTableModel;
+import net.localizethat.Main;
 import net.localizethat.model.EditableLocaleContent;
 import net.localizethat.model.L10n;
 import net.localizethat.model.LTContent;
@@ -18,14 +34,43 @@ import net.localizethat.model.TranslationStatus;
 
 /**
  * Table model of LTContent objects; the list of objects may come from a
- ParseableFile objects or from LTContent lists (from product updates or
- searches, for instance)
+ * ParseableFile objects or from LTContent lists (from product updates or
+ * searches, for instance).
+ *
+ * The model only holds the IDs of the original contents. The values displayed are
+ * read in the background, PAGE_SIZE rows at a time (the contents and their twins in
+ * the target locale with one query each), and kept in a cache of the most recently
+ * displayed rows; the rows are repainted when their page is ready. Entities are only
+ * kept for the rows requested through getElementAt, ie., the ones being edited.
+ *
+ * Sorting and filtering are done by the model itself (see ContentListRowSorter), also
+ * in the background, going through the contents page by page
  * @author rpalomares
  */
 public class ContentListTableModel extends AbstractTableModel {
     private static final long serialVersionUID = 1L;
+    // Rows read from the DB at once
+    private static final int PAGE_SIZE = 100;
+    // Rows whose displayed values are kept in memory
+    private static final int MAX_CACHED_ROWS = 2000;
+    // Rows whose entities are kept in memory
+    private static final int MAX_RESOLVED_ROWS = 64;
+    // Columns looked up by the filter
+    private static final int[] FILTERED_COLUMNS = {3, 4, 5};
     private L10n localizationCode;
-    private final List<ContentListObject> list;
+    private EntityManager entityManager;
+    private List<Integer> allIds;
+    private List<Integer> viewIds;
+    private final Map<Integer, Object[]> rowCache;
+    private final Map<Integer, ContentListObject> resolvedRows;
+    private final Set<Integer> pendingPages;
+    // Incremented every time viewIds changes, so late pages are not applied to wrong rows
+    private int generation;
+    private Pattern filter;
+    private int sortColumn;
+    private boolean sortAscending;
+    private ArrangeWorker arrangeWorker;
+    private FileContentsWorker fileContentsWorker;
     private XTableColumnModel columnModel;
     private final String[] columnHeaders = {"Filename", "Order/Line", "Content Type",
                                             "Key/Entity", "Original value", "Translated value",
@@ -33,33 +78,68 @@ public class ContentListTableModel extends AbstractTableModel {
 
     public ContentListTableModel() {
         super();
-        this.list = new ArrayList<>(10);
+        this.allIds = new ArrayList<>(10);
+        this.viewIds = allIds;
+        this.rowCache = new LruMap<>(MAX_CACHED_ROWS);
+        this.resolvedRows = new LruMap<>(MAX_RESOLVED_ROWS);
+        this.pendingPages = new HashSet<>(16);
+        this.sortColumn = -1;
     }
 
     public ContentListTableModel(L10n localizationCode) {
-        super();
+        this();
         this.localizationCode = localizationCode;
-        this.list = new ArrayList<>(10);
     }
 
     public ContentListTableModel(L10n localizationCode, List<LTContent> source) {
-        super();
-        this.localizationCode = localizationCode;
-        this.list = new ArrayList<>(source.size());
-
-        for(LTContent lc : source) {
-            ContentListObject clo = new ContentListObject(lc);
-            list.add(clo);
-        }
+        this(localizationCode);
+        replaceData(new ArrayList<LocaleContent>(source));
     }
 
+    /**
+     * Replaces the contents of the table
+     * @param newSource the (already persisted) original contents to display
+     */
     public void replaceData(Collection<LocaleContent> newSource) {
-        this.list.clear();
+        List<Integer> ids = new ArrayList<>(newSource.size());
         for(LocaleContent lc : newSource) {
-            ContentListObject clo = new ContentListObject(lc);
-            list.add(clo);
+            ids.add(lc.getId());
+        }
+        replaceIds(ids);
+    }
+
+    /**
+     * Replaces the contents of the table, without reading them from the DB until
+     * they are displayed
+     * @param ids the IDs of the original contents to display
+     */
+    public void replaceIds(List<Integer> ids) {
+        cancelFileContentsLoad();
+        allIds = new ArrayList<>(ids);
+        rowCache.clear();
+        resolvedRows.clear();
+        arrange();
+    }
+
+    /**
+     * Replaces the contents of the table with the ones of a file, sorted by their order
+     * in the file. Both the list of contents and the first page of rows are read in
+     * the background; meanwhile, the table keeps its current rows. If called again
+     * before the previous file is loaded, the previous load is cancelled
+     * @param fileId the ID of the (original) LocaleFile
+     */
+    public void loadFileContents(int fileId) {
+        cancelFileContentsLoad();
+        fileContentsWorker = new FileContentsWorker(fileId);
+        fileContentsWorker.execute();
+    }
+
+    private void cancelFileContentsLoad() {
+        if (fileContentsWorker != null) {
+            // Not interrupting it, as Derby does not cope well with interrupted threads
+            fileContentsWorker.cancel(false);
+            fileContentsWorker = null;
         }
-        this.fireTableDataChanged();
     }
 
     public L10n getLocalizationCode() {
@@ -67,9 +147,25 @@ public class ContentListTableModel extends AbstractTableModel {
     }
 
     public void setLocalizationCode(L10n localizationCode) {
+        if ((this.localizationCode == null) ? localizationCode != null
+                : !this.localizationCode.equals(localizationCode)) {
+            rowCache.clear();
+            resolvedRows.clear();
+        }
         this.localizationCode = localizationCode;
     }
 
+    /**
+     * Sets the EntityManager that will manage the entities returned by getElementAt
+     * @param entityManager an open EntityManager
+     */
+    public void setEntityManager(EntityManager entityManager) {
+        if (this.entityManager != entityManager) {
+            resolvedRows.clear();
+        }
+        this.entityManager = entityManager;
+    }
+
     public XTableColumnModel getColumnModel() {
         return columnModel;
     }
@@ -78,17 +174,57 @@ public class ContentListTableModel extends AbstractTableModel {
         this.columnModel = columnModel;
     }
 
+    /**
+     * Shows only the rows whose key, original or translated value contains a match
+     * of a regular expression (case insensitive)
+     * @param filter the regular expression, or null to show every row
+     */
+    public void setFilter(Pattern filter) {
+        this.filter = filter;
+        arrange();
+    }
+
+    /**
+     * Sorts the rows by the values of a column, keeping the original order of the
+     * rows having the same value
+     * @param column the column to sort by, or -1 to keep the original order
+     * @param ascending true for ascending order, false for descending
+     */
+    public void sortBy(int column, boolean ascending) {
+        this.sortColumn = column;
+        this.sortAscending = ascending;
+        arrange();
+    }
+
+    /**
+     * Returns the content displayed in a row, with its twin in the target locale,
+     * both managed by the EntityManager of this model
+     * @param row the row number
+     * @return the content displayed in the row, or null if the row does not exist
+     */
     public ContentListObject getElementAt(int row) {
-        if ((row < 0) || (row >= list.size())) {
+        if ((row < 0) || (row >= viewIds.size())) {
             return null;
-        } else {
-            return list.get(row);
         }
+
+        Integer id = viewIds.get(row);
+        ContentListObject clo = resolvedRows.get(id);
+        if (clo == null) {
+            LocaleContent lc = entityManager.find(LTContent.class, id);
+            if (lc == null) {
+                return null;
+            }
+            clo = new ContentListObject(lc);
+            resolvedRows.put(id, clo);
+            // From now on, the values are read from the (maybe modified) entities
+            rowCache.remove(id);
+        }
+        return clo;
     }
 
     @Override
     public int getRowCount() {
-        return list.size();
+        return viewIds.size();
     }
 
     @Override
@@ -98,13 +234,53 @@ public class ContentListTableModel extends AbstractTableModel {
 
     @Override
     public Object getValueAt(int rowIndex, int columnIndex) {
-        ContentListObject clo = list.get(rowIndex);
-        LocaleContent lcOrig = clo.getOriginalNode();
-        LocaleContent lcTarget = clo.getSiblingNode();
+        Integer id = viewIds.get(rowIndex);
+        ContentListObject clo = resolvedRows.get(id);
+
+        if (clo != null) {
+            return cellValue(clo.getParentFile(), clo.getOriginalNode(), clo.getSiblingNode(),
+                    columnIndex);
+        }
+
+        Object[] values = rowCache.get(id);
+        if (values == null) {
+            requestPage(rowIndex / PAGE_SIZE);
+            // Empty cell until the page is ready
+            return (columnIndex == 1) ? null : "";
+        }
+        return values[columnIndex];
+    }
+
+    @Override
+    public String getColumnName(int columnIndex) {
+        return columnHeaders[columnIndex];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int columnIndex) {
+        switch (columnIndex) {
+            case 1:
+                return Integer.class;
+            default:
+                return String.class;
+        }
+    }
+
+    @Override
+    public boolean isCellEditable(int rowIndex, int columnIndex) {
+        return false;
+    }
 
+    @Override
+    public void setValueAt(Object aValue, int rowIndex, int columnIndex) {
+        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    }
+
+    private static Object cellValue(LocaleFile parentFile, LocaleContent lcOrig,
+            LocaleContent lcTarget, int columnIndex) {
         switch (columnIndex) {
             case 0: // Filename
-                return clo.getParentFile().getName();
+                return (parentFile == null) ? "" : parentFile.getName();
             case 1: // Order/Line
                 return lcOrig.getOrderInFile();
             case 2: // Content Type
@@ -138,29 +314,90 @@ public class ContentListTableModel extends AbstractTableModel {
         return "";
     }
 
-    @Override
-    public String getColumnName(int columnIndex) {
-        return columnHeaders[columnIndex];
+    private void requestPage(int page) {
+        if (pendingPages.add(page)) {
+            int from = page * PAGE_SIZE;
+            List<Integer> pageIds = new ArrayList<>(
+                    viewIds.subList(from, Math.min(from + PAGE_SIZE, viewIds.size())));
+            new PageWorker(generation, page, pageIds).execute();
+        }
     }
 
-    @Override
-    public Class<?> getColumnClass(int columnIndex) {
-        switch (columnIndex) {
-            case 1:
-                return Integer.class;
-            default:
-                return String.class;
+    /**
+     * Computes viewIds from allIds, applying the filter and the sort order, and
+     * replaces the rows of the table once done
+     */
+    private void arrange() {
+        if (arrangeWorker != null) {
+            arrangeWorker.cancel(false);
+            arrangeWorker = null;
+        }
+
+        if (filter == null && sortColumn < 0) {
+            setViewIds(allIds);
+        } else {
+            arrangeWorker = new ArrangeWorker(allIds, filter, sortColumn, sortAscending);
+            arrangeWorker.execute();
         }
     }
 
-    @Override
-    public boolean isCellEditable(int rowIndex, int columnIndex) {
-        return false;
+    private void setViewIds(List<Integer> ids) {
+        viewIds = ids;
+        generation++;
+        pendingPages.clear();
+        fireTableDataChanged();
     }
 
-    @Override
-    public void setValueAt(Object aValue, int rowIndex, int columnIndex) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    /**
+     * Reads the displayed values of some contents, with one query for the contents and
+     * another one for their twins in the target locale. Intended to be called from a
+     * background thread, so it uses its own EntityManager
+     * @param ids the IDs of the original contents
+     * @param l10n the target locale
+     * @return a map from every ID to the values of its row
+     */
+    private static Map<Integer, Object[]> loadRows(List<Integer> ids, L10n l10n) {
+        Map<Integer, Object[]> rows = new HashMap<>(ids.size() * 2);
+        EntityManager em = Main.emf.createEntityManager();
+
+        try {
+            TypedQuery<LocaleContent> lcQuery = em.createNamedQuery("LocaleContent.findByIdsWithParent",
+                    LocaleContent.class);
+            lcQuery.setParameter("ids", ids);
+            List<LocaleContent> lcList = lcQuery.getResultList();
+
+            // Twins hang from the default locale twin, even for non default locale contents
+            Set<Integer> defTwinIds = new HashSet<>(lcList.size() * 2);
+            for(LocaleContent lc : lcList) {
+                defTwinIds.add(defTwinId(lc));
+            }
+            Map<Integer, LocaleContent> twinsByDefTwinId = new HashMap<>(lcList.size() * 2);
+            if (l10n != null && !defTwinIds.isEmpty()) {
+                TypedQuery<LocaleContent> twinsQuery = em.createNamedQuery(
+                        "LocaleContent.findTwinsByDefTwinIds", LocaleContent.class);
+                twinsQuery.setParameter("l10nid", l10n);
+                twinsQuery.setParameter("ids", new ArrayList<>(defTwinIds));
+                for(LocaleContent twin : twinsQuery.getResultList()) {
+                    twinsByDefTwinId.put(twin.getDefLocaleTwin().getId(), twin);
+                }
+            }
+
+            for(LocaleContent lc : lcList) {
+                LocaleContent twin = twinsByDefTwinId.get(defTwinId(lc));
+                Object[] values = new Object[7];
+                for(int i = 0; i < values.length; i++) {
+                    values[i] = cellValue(lc.getParent(), lc, twin, i);
+                }
+                rows.put(lc.getId(), values);
+            }
+        } finally {
+            em.close();
+        }
+        return rows;
+    }
+
+    private static Integer defTwinId(LocaleContent lc) {
+        return (lc.getDefLocaleTwin() == null) ? lc.getId() : lc.getDefLocaleTwin().getId();
     }
 
     public class ContentListObject {
@@ -195,4 +432,212 @@ public class ContentListTableModel extends AbstractTableModel {
         }
 
     }
+
+    /**
+     * Reads a page of rows and repaints them, if the rows of the table have not
+     * changed meanwhile
+     */
+    private class PageWorker extends SwingWorker<Map<Integer, Object[]>, Void> {
+        private final int pageGeneration;
+        private final int page;
+        private final List<Integer> pageIds;
+        private final L10n l10n;
+
+        PageWorker(int pageGeneration, int page, List<Integer> pageIds) {
+            this.pageGeneration = pageGeneration;
+            this.page = page;
+            this.pageIds = pageIds;
+            this.l10n = localizationCode;
+        }
+
+        @Override
+        protected Map<Integer, Object[]> doInBackground() {
+            return loadRows(pageIds, l10n);
+        }
+
+        @Override
+        protected void done() {
+            try {
+                Map<Integer, Object[]> rows = get();
+                boolean sameL10n = (l10n == null) ? localizationCode == null
+                        : l10n.equals(localizationCode);
+                if (sameL10n) {
+                    for(Map.Entry<Integer, Object[]> e : rows.entrySet()) {
+                        if (!resolvedRows.containsKey(e.getKey())) {
+                            rowCache.put(e.getKey(), e.getValue());
+                        }
+                    }
+                }
+                if (pageGeneration == generation) {
+                    pendingPages.remove(page);
+                    int from = page * PAGE_SIZE;
+                    int to = Math.min(from + PAGE_SIZE, viewIds.size()) - 1;
+                    if (to >= from) {
+                        fireTableRowsUpdated(from, to);
+                    }
+                }
+            } catch (InterruptedException | ExecutionException ex) {
+                Logger.getLogger(ContentListTableModel.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+    }
+
+    /**
+     * Reads the IDs of the contents of a file and the first page of rows, and replaces
+     * the rows of the table with them, unless cancelled meanwhile
+     */
+    private class FileContentsWorker extends SwingWorker<List<Integer>, Void> {
+        private final int fileId;
+        private final L10n l10n;
+        private Map<Integer, Object[]> firstPage;
+
+        FileContentsWorker(int fileId) {
+            this.fileId = fileId;
+            this.l10n = localizationCode;
+        }
+
+        @Override
+        protected List<Integer> doInBackground() {
+            List<Integer> ids;
+            EntityManager em = Main.emf.createEntityManager();
+
+            try {
+                TypedQuery<Integer> idsQuery = em.createNamedQuery("LocaleContent.findIdsByParentId",
+                        Integer.class);
+                idsQuery.setParameter("parentid", fileId);
+                ids = idsQuery.getResultList();
+            } finally {
+                em.close();
+            }
+
+            if (!isCancelled() && !ids.isEmpty()) {
+                firstPage = loadRows(ids.subList(0, Math.min(PAGE_SIZE, ids.size())), l10n);
+            }
+            return ids;
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled() || fileContentsWorker != this) {
+                return;
+            }
+            fileContentsWorker = null;
+            try {
+                List<Integer> ids = get();
+                replaceIds(ids);
+                boolean sameL10n = (l10n == null) ? localizationCode == null
+                        : l10n.equals(localizationCode);
+                if (firstPage != null && sameL10n) {
+                    rowCache.putAll(firstPage);
+                    fireTableRowsUpdated(0, Math.min(PAGE_SIZE, viewIds.size()) - 1);
+                }
+            } catch (InterruptedException | ExecutionException ex) {
+                Logger.getLogger(ContentListTableModel.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+    }
+
+    /**
+     * Applies the filter and the sort order to a list of contents, reading them page by
+     * page, and replaces the rows of the table with the result
+     */
+    private class ArrangeWorker extends SwingWorker<List<Integer>, Void> {
+        private final List<Integer> ids;
+        private final Pattern rowFilter;
+        private final int column;
+        private final boolean ascending;
+        private final L10n l10n;
+
+        ArrangeWorker(List<Integer> ids, Pattern rowFilter, int column, boolean ascending) {
+            this.ids = ids;
+            this.rowFilter = rowFilter;
+            this.column = column;
+            this.ascending = ascending;
+            this.l10n = localizationCode;
+        }
+
+        @Override
+        protected List<Integer> doInBackground() {
+            final List<Object[]> kept = new ArrayList<>(ids.size());
+
+            for(int i = 0; i < ids.size() && !isCancelled(); i += PAGE_SIZE * 5) {
+                List<Integer> pageIds = ids.subList(i, Math.min(i + PAGE_SIZE * 5, ids.size()));
+                Map<Integer, Object[]> rows = loadRows(pageIds, l10n);
+                for(Integer id : pageIds) {
+                    Object[] values = rows.get(id);
+                    if (values != null && matches(values)) {
+                        kept.add(new Object[] {id, (column < 0) ? null : values[column]});
+                    }
+                }
+            }
+
+            if (column >= 0) {
+                final Collator collator = Collator.getInstance();
+                Collections.sort(kept, new Comparator<Object[]>() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public int compare(Object[] o1, Object[] o2) {
+                        int result;
+                        if (o1[1] == null || o2[1] == null) {
+                            result = (o1[1] == null) ? ((o2[1] == null) ? 0 : -1) : 1;
+                        } else if (o1[1] instanceof String) {
+                            result = collator.compare(o1[1], o2[1]);
+                        } else {
+                            result = ((Comparable<Object>) o1[1]).compareTo(o2[1]);
+                        }
+                        return ascending ? result : -result;
+                    }
+                });
+            }
+
+            List<Integer> result = new ArrayList<>(kept.size());
+            for(Object[] k : kept) {
+                result.add((Integer) k[0]);
+            }
+            return result;
+        }
+
+        private boolean matches(Object[] values) {
+            if (rowFilter == null) {
+                return true;
+            }
+            for(int c : FILTERED_COLUMNS) {
+                if (values[c] != null && rowFilter.matcher(values[c].toString()).find()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled() || arrangeWorker != this) {
+                return;
+            }
+            arrangeWorker = null;
+            try {
+                setViewIds(get());
+            } catch (InterruptedException | ExecutionException ex) {
+                Logger.getLogger(ContentListTableModel.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+    }
+
+    /**
+     * A map keeping only its most recently accessed entries
+     */
+    private static class LruMap<K, V> extends LinkedHashMap<K, V> {
+        private static final long serialVersionUID = 1L;
+        private final int maxEntries;
+
+        LruMap(int maxEntries) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > maxEntries;
+        }
+    }
 }
@@ -8,24 +8,40 @@ package net.localizethat.gui.models;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Enumeration;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import javax.swing.SwingWorker;
 import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.DefaultTreeModel;
 import javax.swing.tree.TreeNode;
+import net.localizethat.Main;
 import net.localizethat.model.L10n;
 import net.localizethat.model.LocaleContainer;
 import net.localizethat.model.LocaleFile;
 import net.localizethat.model.LocaleNode;
+import net.localizethat.model.LocaleNodeRef;
 import net.localizethat.model.LocalePath;
 import net.localizethat.model.Product;
 
 /**
+ * Tree model of LocaleContainer and LocaleFile objects. The nodes hold LocaleNodeRef
+ * objects instead of the entities themselves, and the children of a container are only
+ * read from the DB (in the background, with a query for the containers and another
+ * one for the files) the first time it is expanded; until then, it has a single
+ * LOADING_NODE child
  *
  * @author rpalomares
  */
 public class LocaleNodeTreeModel extends DefaultTreeModel {
     private static final long serialVersionUID = 1L;
+    public static final String LOADING_NODE = "Loading…";
+    private final Set<DefaultMutableTreeNode> loadingNodes = new HashSet<>(4);
 
     public static LocaleNodeTreeModel createFromProduct(Product p) {
         DefaultMutableTreeNode root = new DefaultMutableTreeNode("Paths for " + p.getName());
@@ -39,8 +55,7 @@ public class LocaleNodeTreeModel extends DefaultTreeModel {
             // Let's add only the default locale paths
             if (lp.getL10nId().equals(l)) {
                 // Not really the paths, but the associated locale containers
-                DefaultMutableTreeNode child = new DefaultMutableTreeNode(lp.getLocaleContainer());
-                root.add(child);
+                root.add(createNode(LocaleNodeRef.of(lp.getLocaleContainer())));
             }
         }
         return new LocaleNodeTreeModel(root);
@@ -52,42 +67,102 @@ public class LocaleNodeTreeModel extends DefaultTreeModel {
 
         Collections.sort(lpList);
         for(LocalePath lp : lpList) {
-            DefaultMutableTreeNode child = new DefaultMutableTreeNode(lp.getLocaleContainer());
-            root.add(child);
+            root.add(createNode(LocaleNodeRef.of(lp.getLocaleContainer())));
         }
         return new LocaleNodeTreeModel(root);
     }
 
     public LocaleNodeTreeModel(TreeNode root) {
         super(root);
-        // LocaleNode nodeObject = (LocaleNode) node.getUserObject();
-        for(Enumeration e = root.children(); e.hasMoreElements();) {
-            DefaultMutableTreeNode childNode = (DefaultMutableTreeNode) e.nextElement();
-            LocaleNode nodeObject = (LocaleNode) childNode.getUserObject();
-            if (nodeObject instanceof LocaleContainer) {
-                loadGrandChildNodes(childNode, (LocaleContainer) nodeObject);
-            }
-        }
     }
 
     public LocaleNodeTreeModel(TreeNode root, boolean asksAllowsChildren) {
         super(root, asksAllowsChildren);
     }
 
-    public final void loadGrandChildNodes(DefaultMutableTreeNode childNode, LocaleContainer childNodeObject) {
-        List<LocaleNode> lcList = new ArrayList<>(childNodeObject.getChildren());
-        List<LocaleFile> lfList = new ArrayList<>(childNodeObject.getFileChildren());
+    /**
+     * Starts loading the children of a container node, if not loaded (or being
+     * loaded) yet. Intended to be called from a TreeWillExpandListener
+     * @param node the node about to be expanded
+     */
+    public void loadChildNodes(DefaultMutableTreeNode node) {
+        if (node.getChildCount() != 1) {
+            return;
+        }
+
+        DefaultMutableTreeNode placeholder = (DefaultMutableTreeNode) node.getFirstChild();
+        if (placeholder.getUserObject() == LOADING_NODE
+                && node.getUserObject() instanceof LocaleNodeRef && loadingNodes.add(node)) {
+            new ChildNodesWorker(node, (LocaleNodeRef) node.getUserObject()).execute();
+        }
+    }
+
+    private static DefaultMutableTreeNode createNode(LocaleNodeRef ref) {
+        DefaultMutableTreeNode node = new DefaultMutableTreeNode(ref);
+        if (ref.isContainer()) {
+            node.add(new DefaultMutableTreeNode(LOADING_NODE, false));
+        }
+        return node;
+    }
 
-        Collections.sort(lcList);
-        Collections.sort(lfList);
+    /**
+     * Reads the children of a container node and replaces its placeholder with them,
+     * containers first, sorted by name
+     */
+    private class ChildNodesWorker extends SwingWorker<List<LocaleNodeRef>, Void> {
+        private final DefaultMutableTreeNode node;
+        private final LocaleNodeRef parentRef;
 
-        for(LocaleNode grandChildNodeObject : lcList) {
-            DefaultMutableTreeNode grandChildNode = new DefaultMutableTreeNode(grandChildNodeObject);
-            childNode.add(grandChildNode);
+        ChildNodesWorker(DefaultMutableTreeNode node, LocaleNodeRef parentRef) {
+            this.node = node;
+            this.parentRef = parentRef;
         }
-        for(LocaleFile grandChildNodeObject : lfList) {
-            DefaultMutableTreeNode grandChildNode = new DefaultMutableTreeNode(grandChildNodeObject);
-            childNode.add(grandChildNode);
+
+        @Override
+        protected List<LocaleNodeRef> doInBackground() {
+            EntityManager em = Main.emf.createEntityManager();
+            try {
+                List<LocaleNodeRef> containers = findChildren(em,
+                        "LocaleContainer.findNamesByParentIds", LocaleContainer.class);
+                List<LocaleNodeRef> files = findChildren(em,
+                        "LocaleFile.findNamesByParentIds", LocaleFile.class);
+                Collections.sort(containers);
+                Collections.sort(files);
+                containers.addAll(files);
+                return containers;
+            } finally {
+                em.close();
+            }
+        }
+
+        private List<LocaleNodeRef> findChildren(EntityManager em, String namedQuery,
+                Class<? extends LocaleNode> kind) {
+            TypedQuery<Object[]> childrenQuery = em.createNamedQuery(namedQuery, Object[].class);
+            childrenQuery.setParameter("ids", Collections.singletonList(parentRef.getId()));
+            List<Object[]> rows = childrenQuery.getResultList();
+            List<LocaleNodeRef> result = new ArrayList<>(rows.size());
+            for(Object[] row : rows) {
+                result.add(new LocaleNodeRef((Integer) row[0], (String) row[1], kind));
+            }
+            return result;
+        }
+
+        @Override
+        protected void done() {
+            loadingNodes.remove(node);
+            try {
+                List<LocaleNodeRef> children = get();
+                node.removeAllChildren();
+                for(LocaleNodeRef ref : children) {
+                    node.add(createNode(ref));
+                }
+            } catch (InterruptedException | ExecutionException ex) {
+                Logger.getLogger(LocaleNodeTreeModel.class.getName()).log(Level.SEVERE, null, ex);
+                // Let the user try again
+                node.removeAllChildren();
+                node.add(new DefaultMutableTreeNode(LOADING_NODE, false));
+            }
+            nodeStructureChanged(node);
         }
     }
 }
@@ -5,22 +5,21 @@
  */
 package net.localizethat.gui.tabpanels;
 
-import java.util.Enumeration;
 import java.util.List;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.swing.event.TreeExpansionEvent;
-import javax.swing.event.TreeExpansionListener;
 import javax.swing.event.TreeSelectionEvent;
 import javax.swing.event.TreeSelectionListener;
+import javax.swing.event.TreeWillExpandListener;
 import javax.swing.tree.DefaultMutableTreeNode;
 import net.localizethat.Main;
 import net.localizethat.gui.models.ContentListTableModel;
 import net.localizethat.gui.models.LocaleNodeTreeModel;
 import net.localizethat.model.L10n;
-import net.localizethat.model.LocaleContainer;
 import net.localizethat.model.LocaleFile;
 import net.localizethat.model.LocaleNode;
+import net.localizethat.model.LocaleNodeRef;
 import net.localizethat.model.LocalePath;
 import net.localizethat.model.Product;
 
@@ -44,7 +43,7 @@ public class EditContentPanel extends AbstractTabPanel {
         initComponents();
         tl = new TreeListeners();
         dataTree.addTreeSelectionListener(tl);
-        dataTree.addTreeExpansionListener(tl);
+        dataTree.addTreeWillExpandListener(tl);
         this.contentEditionPanel.setAssociatedTable(contentListTable.getTable());
         this.contentListTable.addTableListSelectionListener(contentEditionPanel);
     }
@@ -214,7 +213,7 @@ public class EditContentPanel extends AbstractTabPanel {
         entityManager.close();
     }
 
-    class TreeListeners implements TreeSelectionListener, TreeExpansionListener {
+    class TreeListeners implements TreeSelectionListener, TreeWillExpandListener {
 
         @Override
         public void valueChanged(TreeSelectionEvent e) {
@@ -222,45 +221,36 @@ public class EditContentPanel extends AbstractTabPanel {
                     dataTree.getLastSelectedPathComponent();
 
             if (node == null || node.getUserObject() == null
-                    || !(node.getUserObject() instanceof LocaleNode)) {
+                    || !(node.getUserObject() instanceof LocaleNodeRef)) {
                 return;
             }
 
-            LocaleNode nodeObject = entityManager.merge((LocaleNode) node.getUserObject());
+            LocaleNodeRef ref = (LocaleNodeRef) node.getUserObject();
+            LocaleNode nodeObject = entityManager.find(ref.getKind(), ref.getId());
+            if (nodeObject == null) {
+                return;
+            }
             pathText.setText(nodeObject.getFilePath());
             if (node.isLeaf() && (nodeObject instanceof LocaleFile)) {
-                LocaleFile lf = (LocaleFile) nodeObject;
                 ContentListTableModel tableModel = contentListTable.getTableModel();
                 tableModel.setLocalizationCode(targetLocale);
-                tableModel.replaceData(lf.getChildren());
+                tableModel.loadFileContents(ref.getId());
             }
         }
 
         @Override
-        public void treeExpanded(TreeExpansionEvent event) {
+        public void treeWillExpand(TreeExpansionEvent event) {
             DefaultMutableTreeNode node = (DefaultMutableTreeNode)
                     event.getPath().getLastPathComponent();
 
-            if (node == null) {
-                return;
-            }
-
-            for(Enumeration e = node.children(); e.hasMoreElements();) {
-                DefaultMutableTreeNode childNode = (DefaultMutableTreeNode) e.nextElement();
-                LocaleNode nodeObject = (LocaleNode) childNode.getUserObject();
-                if (nodeObject instanceof LocaleContainer) {
-                    loadGrandChildNodes(childNode, (LocaleContainer) nodeObject);
-                }
+            if (node != null) {
+                lntm.loadChildNodes(node);
             }
         }
 
         @Override
-        public void treeCollapsed(TreeExpansionEvent event) {
+        public void treeWillCollapse(TreeExpansionEvent event) {
             // Nothing to do here
         }
-
-        private void loadGrandChildNodes(DefaultMutableTreeNode childNode, LocaleContainer childNodeObject) {
-            lntm.loadGrandChildNodes(childNode, childNodeObject);
-        }
     }
 }
@@ -8,6 +8,7 @@ package net.localizethat.gui.tabpanels;
 import java.awt.Rectangle;
 import java.awt.event.KeyEvent;
 import java.beans.Beans;
+import java.nio.file.Paths;
 import java.util.Collection;
 import java.util.Iterator;
 import javax.persistence.EntityManager;
@@ -168,6 +169,11 @@ public class ExportProductPanel extends AbstractTabPanel {
         targetLocaleLabel = new javax.swing.JLabel();
         targetLocaleCombo = new javax.swing.JComboBox<L10n>();
         removeObsoleteCheck = new javax.swing.JCheckBox();
+        skipUnchangedCheck = new javax.swing.JCheckBox();
+        archiveCheck = new javax.swing.JCheckBox();
+        archiveFileField = new javax.swing.JTextField();
+        archiveLayoutLabel = new javax.swing.JLabel();
+        archiveLayoutField = new javax.swing.JTextField();
         jScrollPane3 = new javax.swing.JScrollPane();
         exportOutputArea = new javax.swing.JTextArea();
         buttonPanel = new javax.swing.JPanel();
@@ -213,6 +219,25 @@ public class ExportProductPanel extends AbstractTabPanel {
         removeObsoleteCheck.setMnemonic('R');
         removeObsoleteCheck.setText("Remove obsolete files from disk");
 
+        skipUnchangedCheck.setMnemonic('k');
+        skipUnchangedCheck.setSelected(true);
+        skipUnchangedCheck.setText("Skip unchanged files");
+        skipUnchangedCheck.setToolTipText("Don't rewrite files whose contents would be identical");
+
+        archiveCheck.setMnemonic('A');
+        archiveCheck.setText("Export to archive (XPI/zip):");
+        archiveCheck.setToolTipText("Write the files into an archive instead of the locale paths");
+
+        archiveFileField.setToolTipText("Path of the archive to create");
+
+        archiveLayoutLabel.setDisplayedMnemonic('L');
+        archiveLayoutLabel.setLabelFor(archiveLayoutField);
+        archiveLayoutLabel.setText("Layout:");
+
+        archiveLayoutField.setColumns(20);
+        archiveLayoutField.setText("{path}");
+        archiveLayoutField.setToolTipText("Folder of every path inside the archive; {locale} and {path} are replaced by the target locale code and path name");
+
         exportOutputArea.setEditable(false);
         exportOutputArea.setColumns(20);
         exportOutputArea.setRows(5);
@@ -246,6 +271,14 @@ public class ExportProductPanel extends AbstractTabPanel {
                 .addContainerGap()
                 .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
                     .addComponent(jScrollPane3)
+                    .addGroup(layout.createSequentialGroup()
+                        .addComponent(archiveCheck)
+                        .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                        .addComponent(archiveFileField)
+                        .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
+                        .addComponent(archiveLayoutLabel)
+                        .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                        .addComponent(archiveLayoutField, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
                     .addComponent(buttonPanel, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
                     .addGroup(layout.createSequentialGroup()
                         .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
@@ -261,7 +294,10 @@ public class ExportProductPanel extends AbstractTabPanel {
                             .addComponent(jScrollPane2, javax.swing.GroupLayout.DEFAULT_SIZE, 365, Short.MAX_VALUE)
                             .addGroup(layout.createSequentialGroup()
                                 .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
-                                    .addComponent(removeObsoleteCheck)
+                                    .addGroup(layout.createSequentialGroup()
+                                        .addComponent(removeObsoleteCheck)
+                                        .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
+                                        .addComponent(skipUnchangedCheck))
                                     .addComponent(originalPathsLabel))
                                 .addGap(0, 0, Short.MAX_VALUE)))))
                 .addContainerGap())
@@ -284,7 +320,15 @@ public class ExportProductPanel extends AbstractTabPanel {
                         .addComponent(targetLocaleLabel))
                     .addComponent(targetLocaleCombo, javax.swing.GroupLayout.Alignment.TRAILING, javax.swing.GroupLayout.PREFERRED_SIZE, 27, javax.swing.GroupLayout.PREFERRED_SIZE))
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
-                .addComponent(removeObsoleteCheck)
+                .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                    .addComponent(removeObsoleteCheck)
+                    .addComponent(skipUnchangedCheck))
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                    .addComponent(archiveCheck)
+                    .addComponent(archiveFileField, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
+                    .addComponent(archiveLayoutLabel)
+                    .addComponent(archiveLayoutField, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
                 .addComponent(jScrollPane3)
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
@@ -354,16 +398,32 @@ public class ExportProductPanel extends AbstractTabPanel {
             targetLocaleCombo.requestFocusInWindow();
             return;
         }
+        if (archiveCheck.isSelected() && archiveFileField.getText().trim().isEmpty()) {
+            statusBar.setErrorText("Please, enter the path of the archive to create");
+            archiveFileField.requestFocusInWindow();
+            return;
+        }
         if (xpw != null) {
             xpw.cancel(true);
         }
-        xpw = new ExportProductWorker(exportOutputArea, originalPathsListModel.iterator(),
-                        removeObsoleteCheck.isSelected(), (L10n) targetLocaleCombo.getSelectedItem());
+        if (archiveCheck.isSelected()) {
+            xpw = new ExportProductWorker(exportOutputArea, originalPathsListModel.iterator(),
+                            (L10n) targetLocaleCombo.getSelectedItem(),
+                            Paths.get(archiveFileField.getText().trim()), archiveLayoutField.getText());
+        } else {
+            xpw = new ExportProductWorker(exportOutputArea, originalPathsListModel.iterator(),
+                            removeObsoleteCheck.isSelected(), skipUnchangedCheck.isSelected(),
+                            (L10n) targetLocaleCombo.getSelectedItem());
+        }
         statusBar.startUndefProgress();
         xpw.execute();
     }//GEN-LAST:event_exportButtonActionPerformed
 
     // Variables declaration - do not modify//GEN-BEGIN:variables
+    private javax.swing.JCheckBox archiveCheck;
+    private javax.swing.JTextField archiveFileField;
+    private javax.swing.JTextField archiveLayoutField;
+    private javax.swing.JLabel archiveLayoutLabel;
     private javax.swing.JPanel buttonPanel;
     private javax.swing.JButton cancelButton;
     private javax.persistence.EntityManager entityManager;
@@ -381,6 +441,7 @@ public class ExportProductPanel extends AbstractTabPanel {
     private javax.swing.JCheckBox removeObsoleteCheck;
     private javax.swing.JCheckBox selectAllProductsCheck;
     private javax.swing.JLabel selectProductsLabel;
+    private javax.swing.JCheckBox skipUnchangedCheck;
     private javax.swing.JComboBox<L10n> targetLocaleCombo;
     private javax.swing.JLabel targetLocaleLabel;
     // End of variables declaration//GEN-END:variables
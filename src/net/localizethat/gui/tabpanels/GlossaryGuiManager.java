@@ -20,6 +20,7 @@ import javax.swing.event.ListSelectionListener;
 import net.localizethat.Main;
 import net.localizethat.model.Glossary;
 import net.localizethat.model.L10n;
+import net.localizethat.model.jpa.GlossaryTermIndex;
 import net.localizethat.util.gui.JStatusBar;
 
 /**
@@ -356,6 +357,7 @@ public class GlossaryGuiManager extends AbstractTabPanel {
                 entityManager.remove(selectedGlossary);
                 entityManager.getTransaction().commit();
                 entityManager.getTransaction().begin();
+                GlossaryTermIndex.getInstance().glossaryRemoved(selectedGlossary);
                 refreshGlossaryList();
                 statusBar.setText(JStatusBar.LogMsgType.INFO, "Glossary deleted");
                 enableButtonsAndFields(false);
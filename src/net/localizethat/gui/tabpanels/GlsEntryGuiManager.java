@@ -30,6 +30,7 @@ import net.localizethat.model.GlsEntry;
 import net.localizethat.model.GlsTranslation;
 import net.localizethat.model.L10n;
 import net.localizethat.model.PartOfSpeech;
+import net.localizethat.model.jpa.GlossaryTermIndex;
 import net.localizethat.util.gui.JStatusBar;
 
 /**
@@ -736,6 +737,7 @@ public class GlsEntryGuiManager extends AbstractTabPanel {
             entityManager.persist(ge);
             entityManager.getTransaction().commit();
             entityManager.getTransaction().begin();
+            GlossaryTermIndex.getInstance().entryChanged(ge);
             statusBar.setText(JStatusBar.LogMsgType.INFO,
                     "New entry added, use detail fields to complete it");
             glosEntryTableModel.addElement(ge);
@@ -805,6 +807,7 @@ public class GlsEntryGuiManager extends AbstractTabPanel {
         try {
             entityManager.getTransaction().commit();
             entityManager.getTransaction().begin();
+            GlossaryTermIndex.getInstance().entryChanged(ge);
             glosEntryTableModel.fireTableRowsUpdated(index, index);
             statusBar.setText(JStatusBar.LogMsgType.INFO, "Entry changes saved");
         } catch (Exception ex) {
@@ -898,6 +901,7 @@ public class GlsEntryGuiManager extends AbstractTabPanel {
                 entityManager.remove(ge);
                 entityManager.getTransaction().commit();
                 entityManager.getTransaction().begin();
+                GlossaryTermIndex.getInstance().entryRemoved(ge);
 
 
                 glosEntryTableModel.fireTableRowsDeleted(index, index);
@@ -925,7 +929,7 @@ public class GlsEntryGuiManager extends AbstractTabPanel {
             GlsTranslation gt = glosTranslationTableModel.getElement(index);
             GlsEntry ge = gt.getGlseId();
             try {
-                ge.getGlsTranslationCollection().remove(gt);
+                ge.removeGlsTranslation(gt);
                 entityManager.remove(gt);
                 entityManager.getTransaction().commit();
                 entityManager.getTransaction().begin();
@@ -8,8 +8,10 @@ package net.localizethat.gui.tabpanels;
 import java.awt.Rectangle;
 import java.awt.event.KeyEvent;
 import java.beans.Beans;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -26,6 +28,7 @@ import net.localizethat.model.L10n;
 import net.localizethat.model.LocalePath;
 import net.localizethat.model.Product;
 import net.localizethat.tasks.ImportProductWorker;
+import net.localizethat.tasks.PropagateTranslationsWorker;
 import net.localizethat.util.gui.JStatusBar;
 
 /**
@@ -38,6 +41,7 @@ public class ImportProductPanel extends AbstractTabPanel {
     private final EntityManagerFactory emf;
     private final JStatusBar statusBar;
     private ImportProductWorker ipw;
+    private PropagateTranslationsWorker ptw;
     private boolean isResultTabOpened;
 
     /**
@@ -76,10 +80,12 @@ public class ImportProductPanel extends AbstractTabPanel {
                 Product.class);
 
         productListModel.clearAll();
+        sourceProductListModel.clearAll();
         Collection<Product> collProduct = productQuery.getResultList();
         for(Product p : collProduct) {
             productListModel.addElement(new SelectableItem<>(p, false));
         }
+        sourceProductListModel.addAll(new ArrayList<>(collProduct));
     }
 
     private void refreshL10nList(ListComboBoxGenericModel<L10n> listModel) {
@@ -162,6 +168,7 @@ public class ImportProductPanel extends AbstractTabPanel {
         productListModel = new net.localizethat.gui.models.ListComboBoxGenericModel<SelectableItem<Product>>();
         originalPathsListModel = new net.localizethat.gui.models.ListComboBoxGenericModel<LocalePath>();
         listL10nModel = new net.localizethat.gui.models.ListComboBoxGenericModel<L10n>();
+        sourceProductListModel = new net.localizethat.gui.models.ListComboBoxGenericModel<Product>();
         selectProductsLabel = new javax.swing.JLabel();
         jScrollPane1 = new javax.swing.JScrollPane();
         productList = new javax.swing.JList<SelectableItem<Product>>();
@@ -173,10 +180,13 @@ public class ImportProductPanel extends AbstractTabPanel {
         targetLocaleCombo = new javax.swing.JComboBox<L10n>();
         onExistingContentLabel = new javax.swing.JLabel();
         onExistingContentCombo = new javax.swing.JComboBox();
+        sourceProductLabel = new javax.swing.JLabel();
+        sourceProductCombo = new javax.swing.JComboBox<Product>();
         jScrollPane3 = new javax.swing.JScrollPane();
         importOutputArea = new javax.swing.JTextArea();
         buttonPanel = new javax.swing.JPanel();
         importButton = new javax.swing.JButton();
+        propagateButton = new javax.swing.JButton();
         editChangesButton = new javax.swing.JButton();
         cancelButton = new javax.swing.JButton();
 
@@ -221,6 +231,12 @@ public class ImportProductPanel extends AbstractTabPanel {
 
         onExistingContentCombo.setModel(new javax.swing.DefaultComboBoxModel(new String[] { "Keep existing value", "Overwrite with imported value" }));
 
+        sourceProductLabel.setLabelFor(sourceProductCombo);
+        sourceProductLabel.setText("Copy from product:");
+
+        sourceProductCombo.setModel(sourceProductListModel);
+        sourceProductCombo.setToolTipText("Product (usually, in another channel) whose translations will be copied");
+
         importOutputArea.setEditable(false);
         importOutputArea.setColumns(20);
         importOutputArea.setRows(5);
@@ -236,6 +252,15 @@ public class ImportProductPanel extends AbstractTabPanel {
         });
         buttonPanel.add(importButton);
 
+        propagateButton.setText("Propagate");
+        propagateButton.setToolTipText("Copy translations from the chosen product to the selected ones");
+        propagateButton.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                propagateButtonActionPerformed(evt);
+            }
+        });
+        buttonPanel.add(propagateButton);
+
         editChangesButton.setMnemonic('R');
         editChangesButton.setText("Review changes");
         editChangesButton.setToolTipText("Open new and updated content in Edit View");
@@ -279,11 +304,13 @@ public class ImportProductPanel extends AbstractTabPanel {
                             .addGroup(layout.createSequentialGroup()
                                 .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
                                     .addComponent(targetLocaleLabel)
-                                    .addComponent(onExistingContentLabel))
+                                    .addComponent(onExistingContentLabel)
+                                    .addComponent(sourceProductLabel))
                                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
                                 .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
                                     .addComponent(onExistingContentCombo, 0, 1, Short.MAX_VALUE)
-                                    .addComponent(targetLocaleCombo, 0, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE))))))
+                                    .addComponent(targetLocaleCombo, 0, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
+                                    .addComponent(sourceProductCombo, 0, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE))))))
                 .addContainerGap())
         );
         layout.setVerticalGroup(
@@ -306,6 +333,10 @@ public class ImportProductPanel extends AbstractTabPanel {
                 .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
                     .addComponent(onExistingContentCombo, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
                     .addComponent(onExistingContentLabel))
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                    .addComponent(sourceProductCombo, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
+                    .addComponent(sourceProductLabel))
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
                 .addComponent(jScrollPane3, javax.swing.GroupLayout.DEFAULT_SIZE, 86, Short.MAX_VALUE)
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
@@ -356,6 +387,8 @@ public class ImportProductPanel extends AbstractTabPanel {
         if ((ipw != null) && (!ipw.isDone())) {
             ipw.cancel(true);
             statusBar.endProgress();
+        } else if ((ptw != null) && (!ptw.isDone())) {
+            ptw.cancel(false);
         } else {
             Main.mainWindow.removeTab(this);
         }
@@ -379,6 +412,7 @@ public class ImportProductPanel extends AbstractTabPanel {
         if (ipw != null) {
             ipw.cancel(true);
         }
+        ptw = null;
         ipw = new ImportProductWorker(importOutputArea, editChangesButton,
                 replaceExistingValues, (L10n) targetLocaleCombo.getSelectedItem(),
                 originalPathsListModel.iterator());
@@ -393,7 +427,12 @@ public class ImportProductPanel extends AbstractTabPanel {
                 entityManager.getTransaction().rollback();
             }
             entityManager.clear();
-            clePanel = new ContentListEditPanel(entityManager, ipw.get(), listL10nModel.getSelectedTypedItem());
+            if (ptw != null) {
+                clePanel = new ContentListEditPanel(entityManager, listL10nModel.getSelectedTypedItem(),
+                        ptw.get());
+            } else {
+                clePanel = new ContentListEditPanel(entityManager, ipw.get(), listL10nModel.getSelectedTypedItem());
+            }
             Main.mainWindow.addTab(clePanel, "Last Update Product result");
             Main.mainWindow.getStatusBar().clearText();
             clePanel.requestFocusInWindow();
@@ -404,6 +443,45 @@ public class ImportProductPanel extends AbstractTabPanel {
         }
     }//GEN-LAST:event_editChangesButtonActionPerformed
 
+    private void propagateButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_propagateButtonActionPerformed
+        L10n l = listL10nModel.getSelectedTypedItem();
+        Product source = sourceProductListModel.getSelectedTypedItem();
+        boolean isL10nValid = (l != null);
+        boolean replaceExistingValues = onExistingContentCombo.getSelectedItem().equals("Overwrite with imported value");
+        List<Product> targets = new ArrayList<>(productListModel.getSize());
+
+        for(LocalePath lp : originalPathsListModel.getAll()) {
+            L10n ll = lp.getL10nId();
+            isL10nValid = isL10nValid && (!l.equals(ll));
+        }
+        for (Iterator<SelectableItem<Product>> it = productListModel.iterator(); it.hasNext();) {
+            SelectableItem<Product> ip = it.next();
+            if (ip.isSelected() && !ip.getItem().equals(source)) {
+                targets.add(ip.getItem());
+            }
+        }
+
+        if (!isL10nValid) {
+            statusBar.setErrorText("Please, select a valid locale different from used in original paths");
+            targetLocaleCombo.requestFocusInWindow();
+            return;
+        }
+        if (source == null || targets.isEmpty()) {
+            statusBar.setErrorText("Please, choose a product to copy from and select other products to copy to");
+            sourceProductCombo.requestFocusInWindow();
+            return;
+        }
+        if ((ipw != null) && (!ipw.isDone())) {
+            ipw.cancel(true);
+        }
+        ipw = null;
+        editChangesButton.setEnabled(false);
+        ptw = new PropagateTranslationsWorker(importOutputArea, editChangesButton,
+                replaceExistingValues, l, source, targets);
+        statusBar.startUndefProgress();
+        ptw.execute();
+    }//GEN-LAST:event_propagateButtonActionPerformed
+
     // Variables declaration - do not modify//GEN-BEGIN:variables
     private javax.swing.JPanel buttonPanel;
     private javax.swing.JButton cancelButton;
@@ -422,8 +500,12 @@ public class ImportProductPanel extends AbstractTabPanel {
     private javax.swing.JList<LocalePath> originalpathsList;
     private javax.swing.JList<SelectableItem<Product>> productList;
     private net.localizethat.gui.models.ListComboBoxGenericModel<SelectableItem<Product>> productListModel;
+    private javax.swing.JButton propagateButton;
     private javax.swing.JCheckBox selectAllProductsCheck;
     private javax.swing.JLabel selectProductsLabel;
+    private javax.swing.JComboBox<Product> sourceProductCombo;
+    private net.localizethat.gui.models.ListComboBoxGenericModel<Product> sourceProductListModel;
+    private javax.swing.JLabel sourceProductLabel;
     private javax.swing.JComboBox<L10n> targetLocaleCombo;
     private javax.swing.JLabel targetLocaleLabel;
     // End of variables declaration//GEN-END:variables
@@ -25,6 +25,7 @@ import net.localizethat.gui.renderers.SelectableListItem;
 import net.localizethat.model.L10n;
 import net.localizethat.model.LocalePath;
 import net.localizethat.model.Product;
+import net.localizethat.tasks.PreTranslateWorker;
 import net.localizethat.tasks.UpdateProductWorker;
 import net.localizethat.util.gui.JStatusBar;
 
@@ -38,6 +39,7 @@ public class UpdateProductPanel extends AbstractTabPanel {
     private final EntityManagerFactory emf;
     private final JStatusBar statusBar;
     private UpdateProductWorker upw;
+    private PreTranslateWorker ptw;
     private boolean isResultTabOpened;
 
     /**
@@ -173,7 +175,9 @@ public class UpdateProductPanel extends AbstractTabPanel {
         buttonPanel = new javax.swing.JPanel();
         updateButton = new javax.swing.JButton();
         editChangesButton = new javax.swing.JButton();
+        preTranslateButton = new javax.swing.JButton();
         cancelButton = new javax.swing.JButton();
+        forceRescanCheck = new javax.swing.JCheckBox();
         targetLocaleLabel = new javax.swing.JLabel();
         targetLocaleCombo = new javax.swing.JComboBox<L10n>();
 
@@ -234,6 +238,16 @@ public class UpdateProductPanel extends AbstractTabPanel {
         });
         buttonPanel.add(editChangesButton);
 
+        preTranslateButton.setMnemonic('P');
+        preTranslateButton.setText("Pre-translate");
+        preTranslateButton.setToolTipText("Fill untranslated strings from the translation memory");
+        preTranslateButton.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                preTranslateButtonActionPerformed(evt);
+            }
+        });
+        buttonPanel.add(preTranslateButton);
+
         cancelButton.setText("Cancel");
         cancelButton.setToolTipText("Cancel and close tab");
         cancelButton.addActionListener(new java.awt.event.ActionListener() {
@@ -243,6 +257,11 @@ public class UpdateProductPanel extends AbstractTabPanel {
         });
         buttonPanel.add(cancelButton);
 
+        forceRescanCheck.setMnemonic('F');
+        forceRescanCheck.setText("Force full rescan");
+        forceRescanCheck.setToolTipText("Parse every file, even those unchanged since the last update");
+        buttonPanel.add(forceRescanCheck);
+
         targetLocaleLabel.setDisplayedMnemonic('S');
         targetLocaleLabel.setLabelFor(targetLocaleCombo);
         targetLocaleLabel.setText("Select target locale:");
@@ -341,6 +360,8 @@ public class UpdateProductPanel extends AbstractTabPanel {
         if ((upw != null) && (!upw.isDone())) {
             upw.cancel(true);
             statusBar.endProgress();
+        } else if ((ptw != null) && (!ptw.isDone())) {
+            ptw.cancel(false);
         } else {
             Main.mainWindow.removeTab(this);
         }
@@ -364,7 +385,7 @@ public class UpdateProductPanel extends AbstractTabPanel {
             upw.cancel(true);
         }
         upw = new UpdateProductWorker(updateOutputArea, editChangesButton,
-                l, originalPathsListModel.iterator());
+                l, originalPathsListModel.iterator(), forceRescanCheck.isSelected());
         statusBar.startUndefProgress();
         upw.execute();
     }//GEN-LAST:event_updateButtonActionPerformed
@@ -376,7 +397,7 @@ public class UpdateProductPanel extends AbstractTabPanel {
                 entityManager.getTransaction().rollback();
             }
             entityManager.clear();
-            clePanel = new ContentListEditPanel(entityManager, upw.get(), listL10nModel.getSelectedTypedItem());
+            clePanel = new ContentListEditPanel(entityManager, listL10nModel.getSelectedTypedItem(), upw.get());
             Main.mainWindow.addTab(clePanel, "Last Update Product result");
             Main.mainWindow.getStatusBar().clearText();
             clePanel.requestFocusInWindow();
@@ -387,12 +408,50 @@ public class UpdateProductPanel extends AbstractTabPanel {
         }
     }//GEN-LAST:event_editChangesButtonActionPerformed
 
+    private void preTranslateButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_preTranslateButtonActionPerformed
+        L10n l = listL10nModel.getSelectedTypedItem();
+        boolean isL10nValid = (l != null);
+
+        for(LocalePath lp : originalPathsListModel.getAll()) {
+            L10n ll = lp.getL10nId();
+            isL10nValid = isL10nValid && (!l.equals(ll));
+        }
+
+        if (!isL10nValid) {
+            statusBar.setErrorText("Please, select a valid locale different from used in original paths");
+            targetLocaleCombo.requestFocusInWindow();
+            return;
+        }
+        if ((upw != null) && (!upw.isDone())) {
+            statusBar.setErrorText("Please, wait until the update finishes");
+            return;
+        }
+
+        // After an update, only the new and modified contents are pre-translated;
+        // otherwise, every content in the selected products
+        try {
+            if ((upw != null) && (!upw.isCancelled())) {
+                ptw = new PreTranslateWorker(updateOutputArea, preTranslateButton, l, upw.get());
+            } else {
+                ptw = new PreTranslateWorker(updateOutputArea, preTranslateButton, l,
+                        originalPathsListModel.iterator());
+            }
+        } catch (InterruptedException | ExecutionException ex) {
+            Logger.getLogger(UpdateProductPanel.class.getName()).log(Level.SEVERE, null, ex);
+            return;
+        }
+        preTranslateButton.setEnabled(false);
+        statusBar.startUndefProgress();
+        ptw.execute();
+    }//GEN-LAST:event_preTranslateButtonActionPerformed
+
 
     // Variables declaration - do not modify//GEN-BEGIN:variables
     private javax.swing.JPanel buttonPanel;
     private javax.swing.JButton cancelButton;
     private javax.swing.JButton editChangesButton;
     private javax.persistence.EntityManager entityManager;
+    private javax.swing.JCheckBox forceRescanCheck;
     private javax.swing.JScrollPane jScrollPane1;
     private javax.swing.JScrollPane jScrollPane2;
     private javax.swing.JScrollPane jScrollPane3;
@@ -400,6 +459,7 @@ public class UpdateProductPanel extends AbstractTabPanel {
     private javax.swing.JLabel originalPathsLabel;
     private net.localizethat.gui.models.ListComboBoxGenericModel<LocalePath> originalPathsListModel;
     private javax.swing.JList<LocalePath> originalpathsList;
+    private javax.swing.JButton preTranslateButton;
     private javax.swing.JList<SelectableItem<Product>> productList;
     private net.localizethat.gui.models.ListComboBoxGenericModel<SelectableItem<Product>> productListModel;
     private javax.swing.JCheckBox selectAllProductsCheck;
@@ -0,0 +1,116 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.localizethat.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Resolves the file path of a LocalePath (or anything below it) into a Path, which can
+ * be either in the default file system or inside a zip archive (like omni.ja or a jar
+ * file). Paths inside an archive use the same syntax as jar: URLs, ie., the path to the
+ * archive followed by "!/" and the path inside it; for instance,
+ * "/opt/firefox/browser/omni.ja!/chrome/en-US/locale/browser".
+ *
+ * Archives are opened through the zip FileSystemProvider the first time a path inside
+ * them is resolved, so their entries are read (and listed) without unpacking them, and
+ * they are kept open until this resolver is closed
+ * @author rpalomares
+ */
+public class ArchivePathResolver implements Closeable {
+    public static final String ARCHIVE_SEPARATOR = "!/";
+    private static final String CRC_ATTRIBUTE = "zip:crc";
+    private final Map<Path, FileSystem> archives;
+
+    public ArchivePathResolver() {
+        this.archives = new HashMap<>(4);
+    }
+
+    /**
+     * Checks if a file path points into an archive
+     * @param filePath the file path
+     * @return true if filePath has the "archive!/entry" syntax
+     */
+    public static boolean isInArchive(String filePath) {
+        return filePath.contains(ARCHIVE_SEPARATOR);
+    }
+
+    /**
+     * Checks if a Path is an entry of an archive opened by an ArchivePathResolver
+     * @param p the path
+     * @return true if p does not belong to the default file system
+     */
+    public static boolean isArchiveEntry(Path p) {
+        return p.getFileSystem() != FileSystems.getDefault();
+    }
+
+    /**
+     * Returns the CRC-32 of an archive entry, as stored in the central directory of
+     * the archive, so it can be used to detect changes without decompressing the entry
+     * @param p the path of the entry
+     * @return the CRC-32 of the entry, or null if p is not an archive entry
+     * @throws IOException in case the attributes of the entry can't be read
+     */
+    public static Long getCrc(Path p) throws IOException {
+        if (!isArchiveEntry(p)) {
+            return null;
+        }
+        return (Long) Files.getAttribute(p, CRC_ATTRIBUTE);
+    }
+
+    /**
+     * Resolves a file path, opening the archive it points into if needed
+     * @param filePath the file path, either a plain one or one with the
+     *                 "archive!/entry" syntax
+     * @return the corresponding Path
+     * @throws IOException in case the archive can't be opened
+     */
+    public synchronized Path resolve(String filePath) throws IOException {
+        int separatorIndex = filePath.indexOf(ARCHIVE_SEPARATOR);
+        if (separatorIndex < 0) {
+            return Paths.get(filePath);
+        }
+
+        Path archive = Paths.get(filePath.substring(0, separatorIndex)).toAbsolutePath().normalize();
+        FileSystem fs = archives.get(archive);
+        if (fs == null) {
+            fs = FileSystems.newFileSystem(archive, (ClassLoader) null);
+            archives.put(archive, fs);
+        }
+        return fs.getPath("/", filePath.substring(separatorIndex + ARCHIVE_SEPARATOR.length()));
+    }
+
+    /**
+     * Closes every archive opened by this resolver. Paths resolved inside them can't be
+     * used afterwards
+     * @throws IOException in case any archive can't be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        IOException firstException = null;
+
+        for(FileSystem fs : archives.values()) {
+            try {
+                fs.close();
+            } catch (IOException ex) {
+                if (firstException == null) {
+                    firstException = ex;
+                }
+            }
+        }
+        archives.clear();
+        if (firstException != null) {
+            throw firstException;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.localizethat.io;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import net.localizethat.model.LocaleContainer;
+import net.localizethat.model.LocaleFile;
+
+/**
+ * Compares the entries of a directory in disk with the children of a LocaleContainer,
+ * classifying them as added (only in disk), removed (only in the datamodel, or in disk
+ * but with a different type) and kept (in both places).
+ *
+ * The directory is read once and the attributes of every entry are read only once,
+ * and the comparison is done through hash lookups, so the cost is linear in the
+ * number of entries
+ * @author rpalomares
+ */
+public class DirectoryReconciler {
+    private final Path directory;
+    private final Map<String, BasicFileAttributes> diskEntries;
+    private final List<Path> addedDirectories;
+    private final List<Path> addedFiles;
+    private final List<LocaleContainer> keptContainers;
+    private final List<LocaleContainer> removedContainers;
+    private final List<LocaleFile> keptFiles;
+    private final List<LocaleFile> removedFiles;
+    private final List<Path> unmatchedEntries;
+
+    private DirectoryReconciler(Path directory) {
+        this.directory = directory;
+        this.diskEntries = new LinkedHashMap<>(64);
+        this.addedDirectories = new ArrayList<>(4);
+        this.addedFiles = new ArrayList<>(16);
+        this.keptContainers = new ArrayList<>(16);
+        this.removedContainers = new ArrayList<>(4);
+        this.keptFiles = new ArrayList<>(64);
+        this.removedFiles = new ArrayList<>(4);
+        this.unmatchedEntries = new ArrayList<>(4);
+    }
+
+    /**
+     * Reconciles the contents of a directory in disk with a LocaleContainer. A
+     * missing directory is an error, since reconciling it would report every child of
+     * the LocaleContainer as removed
+     * @param directory the directory in disk
+     * @param lc the LocaleContainer whose children are to be compared with the
+     *           entries in the directory
+     * @return a DirectoryReconciler holding the result of the comparison
+     * @throws NoSuchFileException if the directory does not exist
+     * @throws IOException if the directory exists but can't be read
+     */
+    public static DirectoryReconciler reconcile(Path directory, LocaleContainer lc)
+            throws IOException {
+        return reconcile(directory, lc, false);
+    }
+
+    /**
+     * Reconciles the contents of a directory in disk with a LocaleContainer
+     * @param directory the directory in disk
+     * @param lc the LocaleContainer whose children are to be compared with the
+     *           entries in the directory
+     * @param missingAsEmpty if true, a missing directory is considered empty (for
+     *                       instance, when exporting, as it is going to be created);
+     *                       otherwise, it is an error
+     * @return a DirectoryReconciler holding the result of the comparison
+     * @throws NoSuchFileException if the directory does not exist and missingAsEmpty
+     *                             is false
+     * @throws IOException if the directory exists but can't be read
+     */
+    public static DirectoryReconciler reconcile(Path directory, LocaleContainer lc,
+            boolean missingAsEmpty) throws IOException {
+        DirectoryReconciler dr = new DirectoryReconciler(directory);
+
+        dr.readDirectory(missingAsEmpty);
+        dr.compare(lc);
+        return dr;
+    }
+
+    private void readDirectory(boolean missingAsEmpty) throws IOException {
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(directory)) {
+            for(Path entry : ds) {
+                BasicFileAttributes attrs;
+                try {
+                    attrs = Files.readAttributes(entry, BasicFileAttributes.class);
+                } catch (NoSuchFileException e) {
+                    // Either removed while we read the directory, or a dangling link
+                    continue;
+                }
+                diskEntries.put(entry.getFileName().toString(), attrs);
+            }
+        } catch (NoSuchFileException e) {
+            if (!missingAsEmpty) {
+                throw e;
+            }
+            // Nothing in disk, so everything in the datamodel is removed
+        }
+    }
+
+    private void compare(LocaleContainer lc) {
+        Set<String> matchedNames = new HashSet<>((diskEntries.size() * 4) / 3 + 1);
+
+        for(LocaleContainer lcChild : lc.getChildren()) {
+            BasicFileAttributes attrs = diskEntries.get(lcChild.getName());
+            if (attrs != null && attrs.isDirectory()) {
+                keptContainers.add(lcChild);
+                matchedNames.add(lcChild.getName());
+            } else {
+                removedContainers.add(lcChild);
+            }
+        }
+
+        for(LocaleFile lfChild : lc.getFileChildren()) {
+            BasicFileAttributes attrs = diskEntries.get(lfChild.getName());
+            if (attrs != null && !attrs.isDirectory()) {
+                keptFiles.add(lfChild);
+                matchedNames.add(lfChild.getName());
+            } else {
+                removedFiles.add(lfChild);
+            }
+        }
+
+        for(Map.Entry<String, BasicFileAttributes> entry : diskEntries.entrySet()) {
+            if (!matchedNames.contains(entry.getKey())) {
+                Path p = directory.resolve(entry.getKey());
+                unmatchedEntries.add(p);
+                if (entry.getValue().isDirectory()) {
+                    addedDirectories.add(p);
+                } else {
+                    addedFiles.add(p);
+                }
+            }
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the attributes of an entry of the directory, read when reconciling
+     * @param name the name of the entry
+     * @return the attributes of the entry, or null if it is not in the directory
+     */
+    public BasicFileAttributes getAttributes(String name) {
+        return diskEntries.get(name);
+    }
+
+    /**
+     * Returns the directories in disk without a LocaleContainer with the same name
+     * @return a list of directories in disk
+     */
+    public List<Path> getAddedDirectories() {
+        return Collections.unmodifiableList(addedDirectories);
+    }
+
+    /**
+     * Returns the regular files in disk without a LocaleFile with the same name
+     * @return a list of files in disk
+     */
+    public List<Path> getAddedFiles() {
+        return Collections.unmodifiableList(addedFiles);
+    }
+
+    /**
+     * Returns every entry in disk (files and directories) not matched by any child of
+     * the LocaleContainer, ie., the union of getAddedDirectories and getAddedFiles in
+     * disk order
+     * @return a list of entries in disk
+     */
+    public List<Path> getUnmatchedEntries() {
+        return Collections.unmodifiableList(unmatchedEntries);
+    }
+
+    public List<LocaleContainer> getKeptContainers() {
+        return Collections.unmodifiableList(keptContainers);
+    }
+
+    /**
+     * Returns the LocaleContainer children without a directory with the same name
+     * in disk (either missing or being a regular file)
+     * @return a list of LocaleContainer children
+     */
+    public List<LocaleContainer> getRemovedContainers() {
+        return Collections.unmodifiableList(removedContainers);
+    }
+
+    public List<LocaleFile> getKeptFiles() {
+        return Collections.unmodifiableList(keptFiles);
+    }
+
+    /**
+     * Returns the LocaleFile children without a regular file with the same name
+     * in disk (either missing or being a directory)
+     * @return a list of LocaleFile children
+     */
+    public List<LocaleFile> getRemovedFiles() {
+        return Collections.unmodifiableList(removedFiles);
+    }
+}
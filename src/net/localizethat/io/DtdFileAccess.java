@@ -12,23 +12,35 @@ import java.text.ParseException;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import net.localizethat.Main;
 import net.localizethat.io.parsers.DTDReadHelper;
+import net.localizethat.io.parsers.DTDTokenizerReadHelper;
+import net.localizethat.io.parsers.ReadHelper;
 import net.localizethat.model.DtdFile;
 import net.localizethat.model.LocaleContent;
-import net.localizethat.model.ParseableFile;
+import net.localizethat.system.AppSettings;
 
 /**
  * DTD ParseableFileAccess utility class that returns a list of LTContent objects
  * @author rpalomares
  */
 public class DtdFileAccess implements ParseableFileAccess {
-    private ParseableFile parseableFile;
+    private String filePath;
 
     private DtdFileAccess() {
     }
 
     public DtdFileAccess(DtdFile dtdFile) {
-        this.parseableFile = dtdFile;
+        this.filePath = dtdFile.getFilePath();
+    }
+
+    /**
+     * Creates a DtdFileAccess not bound to any DtdFile entity, so it can be used outside the
+     * thread owning the EntityManager
+     * @param filePath the path of the file to parse, only used in error messages
+     */
+    public DtdFileAccess(String filePath) {
+        this.filePath = filePath;
     }
 
     @Override
@@ -42,20 +54,37 @@ public class DtdFileAccess implements ParseableFileAccess {
             } else {
                 lnr = new LineNumberReader(is);
             }
-            DTDReadHelper dtdReadHelper = new DTDReadHelper(lnr);
+            ReadHelper dtdReadHelper = createReadHelper(lnr);
 
             dtdReadHelper.parseStream();
             lcList = dtdReadHelper.getLocaleContentList();
             lnr.close();
         } catch (ParseException ex) {
             Logger.getLogger(DtdFileAccess.class.getName()).log(Level.SEVERE,
-                    "Error parsing DTD file " + parseableFile.getFilePath(), ex);
+                    "Error parsing DTD file " + filePath, ex);
             lcList = null;
         } catch (IOException ex) {
             Logger.getLogger(DtdFileAccess.class.getName()).log(Level.SEVERE,
-                    "General IO exception parsing DTD file " + parseableFile.getFilePath(), ex);
+                    "General IO exception parsing DTD file " + filePath, ex);
             lcList = null;
         }
         return lcList;
     }
+
+    /**
+     * Creates the DTD parser selected in the preferences, the tokenizer being the
+     * default one
+     * @param lnr the reader the parser will read from
+     * @return a ReadHelper for DTD files
+     */
+    private ReadHelper createReadHelper(LineNumberReader lnr) {
+        String parser = (Main.appSettings == null) ? null
+                : Main.appSettings.getString(AppSettings.PREF_PARSER_DTD);
+
+        if (AppSettings.PARSER_DTD_SAX.equals(parser)) {
+            return new DTDReadHelper(lnr);
+        } else {
+            return new DTDTokenizerReadHelper(lnr);
+        }
+    }
 }
@@ -0,0 +1,197 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.localizethat.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * Reusable in-memory buffer where exported files are rendered before being written to
+ * disk, so they are only written if their contents have changed.
+ *
+ * The buffer is compared with the existing file by size first, and then by MD5 hash;
+ * if they differ, the buffer is written to a temporary file in the same directory,
+ * which is then moved over the existing one, so the file in disk is never left half
+ * written. The bytes are encoded with the default charset, like the FileWriter used
+ * by LocaleFile.getAsPrintWriter, and written and read through NIO channels. An
+ * ExportBuffer is not thread safe; use one per thread
+ * @author rpalomares
+ */
+public class ExportBuffer {
+    private static final int READ_BUFFER_SIZE = 8192;
+    private static final SecureRandom TEMP_NAME_RANDOM = new SecureRandom();
+    private final ReusableByteArrayOutputStream bytes;
+    private final ByteBuffer readBuffer;
+    private final MessageDigest digest;
+    private PrintWriter writer;
+
+    public ExportBuffer() {
+        this.bytes = new ReusableByteArrayOutputStream(64 * 1024);
+        this.readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        try {
+            this.digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException ex) {
+            // Every Java platform is required to support MD5
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Empties the buffer and returns a writer to render a new file into it
+     * @return a PrintWriter writing into this buffer
+     */
+    public PrintWriter reset() {
+        bytes.reset();
+        writer = new PrintWriter(new OutputStreamWriter(bytes, Charset.defaultCharset()));
+        return writer;
+    }
+
+    /**
+     * Returns a copy of the contents of the buffer, for instance, to add them to an
+     * archive from another thread
+     * @return the bytes rendered since the last reset
+     */
+    public byte[] toByteArray() {
+        writer.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes the buffer to a file, replacing it if it exists
+     * @param target the file to write
+     * @throws IOException in case the file can't be written
+     */
+    public void write(Path target) throws IOException {
+        writer.flush();
+        writeTo(target);
+    }
+
+    /**
+     * Writes the buffer to a file, unless the file already has the same contents
+     * @param target the file to write
+     * @return true if the file has been written, false if it was left untouched
+     * @throws IOException in case the existing file can't be read or the new one
+     * can't be written
+     */
+    public boolean writeIfChanged(Path target) throws IOException {
+        writer.flush();
+        if (hasSameContents(target)) {
+            return false;
+        }
+
+        Path tempFile = createTempFileFor(target);
+        try {
+            writeTo(tempFile);
+            try {
+                Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        return true;
+    }
+
+    /**
+     * Creates an empty temporary file in the same directory as a target file, to be
+     * moved over it once written. Unlike Files.createTempFile, which makes the file
+     * readable by its owner only, the temporary file gets the POSIX permissions of the
+     * target if it exists, or the default ones for new files (as set by the umask) if
+     * it doesn't, so replacing the target does not change its permissions
+     * @param target the file that will be replaced by the temporary one
+     * @return the path of the temporary file
+     * @throws IOException in case the file can't be created or its permissions can't
+     * be set
+     */
+    public static Path createTempFileFor(Path target) throws IOException {
+        Path dir = target.toAbsolutePath().getParent();
+        Path tempFile = null;
+
+        while (tempFile == null) {
+            Path candidate = dir.resolve("." + target.getFileName() + "."
+                    + Long.toUnsignedString(TEMP_NAME_RANDOM.nextLong()) + ".tmp");
+            try {
+                tempFile = Files.createFile(candidate);
+            } catch (FileAlreadyExistsException ex) {
+                // Try again with another name
+            }
+        }
+
+        try {
+            if (Files.exists(target) && Files.getFileStore(tempFile)
+                    .supportsFileAttributeView(PosixFileAttributeView.class)) {
+                Files.setPosixFilePermissions(tempFile, Files.getPosixFilePermissions(target));
+            }
+        } catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(tempFile);
+            throw ex;
+        }
+        return tempFile;
+    }
+
+    private boolean hasSameContents(Path target) throws IOException {
+        if (!Files.isRegularFile(target) || Files.size(target) != bytes.size()) {
+            return false;
+        }
+
+        digest.reset();
+        digest.update(bytes.getBuffer(), 0, bytes.size());
+        byte[] bufferHash = digest.digest();
+
+        try (FileChannel fc = FileChannel.open(target, StandardOpenOption.READ)) {
+            readBuffer.clear();
+            while (fc.read(readBuffer) != -1) {
+                readBuffer.flip();
+                digest.update(readBuffer);
+                readBuffer.clear();
+            }
+        }
+        return Arrays.equals(bufferHash, digest.digest());
+    }
+
+    private void writeTo(Path file) throws IOException {
+        ByteBuffer contents = ByteBuffer.wrap(bytes.getBuffer(), 0, bytes.size());
+
+        try (FileChannel fc = FileChannel.open(file, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (contents.hasRemaining()) {
+                fc.write(contents);
+            }
+        }
+    }
+
+    /**
+     * ByteArrayOutputStream giving access to its internal buffer, to avoid copying it
+     */
+    private static class ReusableByteArrayOutputStream extends ByteArrayOutputStream {
+
+        ReusableByteArrayOutputStream(int size) {
+            super(size);
+        }
+
+        byte[] getBuffer() {
+            return buf;
+        }
+    }
+}
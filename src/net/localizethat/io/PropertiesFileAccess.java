@@ -14,7 +14,6 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import net.localizethat.io.parsers.PropertiesReadHelper;
 import net.localizethat.model.LocaleContent;
-import net.localizethat.model.ParseableFile;
 import net.localizethat.model.PropertiesFile;
 
 /**
@@ -22,13 +21,22 @@ import net.localizethat.model.PropertiesFile;
  * @author rpalomares
  */
 public class PropertiesFileAccess implements ParseableFileAccess {
-    private ParseableFile parseableFile;
+    private String filePath;
 
     private PropertiesFileAccess() {
     }
 
     public PropertiesFileAccess(PropertiesFile propertiesFile) {
-        this.parseableFile = propertiesFile;
+        this.filePath = propertiesFile.getFilePath();
+    }
+
+    /**
+     * Creates a PropertiesFileAccess not bound to any PropertiesFile entity, so it can be used outside the
+     * thread owning the EntityManager
+     * @param filePath the path of the file to parse, only used in error messages
+     */
+    public PropertiesFileAccess(String filePath) {
+        this.filePath = filePath;
     }
 
     @Override
@@ -49,11 +57,11 @@ public class PropertiesFileAccess implements ParseableFileAccess {
             lnr.close();
         } catch (ParseException ex) {
             Logger.getLogger(PropertiesFileAccess.class.getName()).log(Level.SEVERE,
-                    "Error parsing Properties file " + parseableFile.getFilePath(), ex);
+                    "Error parsing Properties file " + filePath, ex);
             lcList = null;
         } catch (IOException ex) {
             Logger.getLogger(PropertiesFileAccess.class.getName()).log(Level.SEVERE,
-                    "General IO exception parsing Properties file " + parseableFile.getFilePath(), ex);
+                    "General IO exception parsing Properties file " + filePath, ex);
             lcList = null;
         }
         return lcList;
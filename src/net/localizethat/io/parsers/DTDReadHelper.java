@@ -49,6 +49,10 @@ public class DTDReadHelper extends DefaultHandler2 implements ReadHelper {
             + "<!DOCTYPE dialog SYSTEM \"LocalizeThat\">"
             + "<dialog></dialog>";
     private static final String brandDummyDtd = "";
+    private static final Pattern L10N_NOTE_PATTERN = Pattern.compile("LOCALIZATION NOTE",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern L10N_NOTE_ENTITY_PATTERN = Pattern.compile(
+            "LOCALIZATION NOTE\\s+\\(([^)]+)\\)", Pattern.CASE_INSENSITIVE);
     private static final Logger fLogger = Logger.getLogger(DTDReadHelper.class.getPackage().
             getName());
     private final LineNumberReader is;
@@ -119,40 +123,37 @@ public class DTDReadHelper extends DefaultHandler2 implements ReadHelper {
      */
     @Override
     public void comment(char ch[], int start, int length) throws SAXException {
-        String thisComment = new String(ch, start, length);
-        String entityName = null;
-        LTLicense thisFileLicense;
-        Pattern p;
-        Matcher m;
-        int lineNumber = lineCount++;
+        lcList.add(createCommentContent(new String(ch, start, length), lineCount++));
+    }
 
+    /**
+     * Creates the LocaleContent for a DTD comment, which may be a license header (LTLicense),
+     * a localization note or a general comment (LTComment)
+     * @param thisComment the text of the comment, without the comment delimiters
+     * @param lineNumber the order in file of the comment
+     * @return a LTLicense or LTComment object
+     */
+    static LocaleContent createCommentContent(String thisComment, int lineNumber) {
         // Have we found an MPL1 / MPL2 license block?
         if (thisComment.contains("*** BEGIN LICENSE BLOCK ***") ||
                 thisComment.contains("http://mozilla.org/MPL/2.0/")) {
 
-            thisFileLicense = new LTLicense();
+            LTLicense thisFileLicense = new LTLicense();
             thisFileLicense.setName("LTLicenseHeader");
             thisFileLicense.setTextValue(thisComment);
             thisFileLicense.setOrderInFile(lineNumber);
             thisFileLicense.setCreationDate(new Date());
             thisFileLicense.setLastUpdate(thisFileLicense.getCreationDate());
-            lcList.add(thisFileLicense);
+            return thisFileLicense;
 
-        } else if (thisComment.toUpperCase().contains("LOCALIZATION NOTE")) {
+        } else if (L10N_NOTE_PATTERN.matcher(thisComment).find()) {
             /* The localization note format should be:
              *   LOCALIZATION NOTE (entity): comment
              * comment may expand several lines
              *
              * However, sometimes no entity is given
              */
-
-            p = Pattern.compile("LOCALIZATION NOTE\\s+\\(([^)]+)\\)",
-                    Pattern.CASE_INSENSITIVE);
-            m = p.matcher(thisComment);
-
-            if (m.find()) {
-                entityName = m.group(1);
-            }
+            Matcher m = L10N_NOTE_ENTITY_PATTERN.matcher(thisComment);
 
             LTComment ltComment = new LTComment();
             ltComment.setName("-comment@line-" + lineNumber);
@@ -163,10 +164,10 @@ public class DTDReadHelper extends DefaultHandler2 implements ReadHelper {
             ltComment.setLastUpdate(ltComment.getCreationDate());
             // If we've got a localization note referencing an entity, we save it
             // for further search in the model
-            if (entityName != null) {
-                ltComment.setEntityName(entityName);
+            if (m.find()) {
+                ltComment.setEntityName(m.group(1));
             }
-            lcList.add(ltComment);
+            return ltComment;
 
         } else {
             LTComment ltComment = new LTComment();
@@ -176,7 +177,7 @@ public class DTDReadHelper extends DefaultHandler2 implements ReadHelper {
             ltComment.setOrderInFile(lineNumber);
             ltComment.setCreationDate(new Date());
             ltComment.setLastUpdate(ltComment.getCreationDate());
-            lcList.add(ltComment);
+            return ltComment;
         }
     }
 
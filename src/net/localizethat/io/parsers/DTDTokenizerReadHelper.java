@@ -0,0 +1,517 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.localizethat.io.parsers;
+
+import java.io.IOException;
+import java.io.LineNumberReader;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import net.localizethat.model.LTExternalEntity;
+import net.localizethat.model.LTKeyValuePair;
+import net.localizethat.model.LocaleContent;
+
+/**
+ * A hand-written DTD parser that reads the whole stream in a char buffer and walks it
+ * once, recognizing the constructs found in Mozilla localization DTD files: comments,
+ * internal entity declarations (general and parameter ones), external entity
+ * declarations and parameter entity references. Conditional sections are entered
+ * (INCLUDE) or skipped (IGNORE), and any other markup declaration or processing
+ * instruction is skipped.
+ *
+ * Unlike DTDReadHelper, it does not need an XML parser to be cheated into reading a
+ * DTD; real lines and columns are only used in error messages, while the order in file
+ * of the items is a running counter, numbered like DTDReadHelper does, so both parsers
+ * give the same result and items sharing a line keep their relative order
+ *
+ * @author rpalomares
+ */
+public class DTDTokenizerReadHelper implements ReadHelper {
+    private static final int READ_BUFFER_SIZE = 8192;
+    private final LineNumberReader is;
+    private final List<LocaleContent> lcList;
+    private final Set<String> declaredEntities;
+    private final StringBuilder valueBuilder;
+    private char[] buf;
+    private int len;
+    private int pos;
+    // Line counting is done lazily: lineAtPos is the line of lineScanPos, and
+    // lineAt(offset) advances it up to the requested offset
+    private int lineScanPos;
+    private int lineAtPos;
+    private int conditionalDepth;
+    // Order in file of the next item
+    private int itemCount;
+
+    /**
+     * Creates a new instance of DTDTokenizerReadHelper
+     * @param dtdReader
+     */
+    public DTDTokenizerReadHelper(LineNumberReader dtdReader) {
+        this.is = dtdReader;
+        lcList = new ArrayList<>(15);
+        declaredEntities = new HashSet<>(32);
+        valueBuilder = new StringBuilder(128);
+    }
+
+    @Override
+    public List<LocaleContent> getLocaleContentList() {
+        if (is == null) {
+            return null;
+        } else {
+            return lcList;
+        }
+    }
+
+    @Override
+    public void parseStream() throws ParseException {
+        try {
+            readAll();
+        } catch (IOException e) {
+            throw new ParseException("Load file error", 0);
+        }
+
+        pos = 0;
+        lineScanPos = 0;
+        lineAtPos = 1;
+        conditionalDepth = 0;
+        itemCount = 0;
+        // Skip the BOM, if any
+        if (len > 0 && buf[0] == '\uFEFF') {
+            pos++;
+            lineScanPos++;
+        }
+
+        while (true) {
+            skipWhitespace();
+            if (pos >= len) {
+                break;
+            }
+
+            char c = buf[pos];
+            if (c == '<') {
+                if (startsWith("<!--")) {
+                    parseComment();
+                } else if (startsWith("<!ENTITY")) {
+                    parseEntityDecl();
+                } else if (startsWith("<![")) {
+                    parseConditionalSectionStart();
+                } else if (startsWith("<?")) {
+                    skipPast("?>", pos);
+                } else if (startsWith("<!")) {
+                    skipMarkupDecl();
+                } else {
+                    throw error("Unexpected markup", pos);
+                }
+            } else if (c == '%') {
+                // Parameter entity reference, like the usual %brandDTD;
+                pos++;
+                readName();
+                expect(';');
+            } else if (c == ']' && conditionalDepth > 0 && startsWith("]]>")) {
+                conditionalDepth--;
+                pos += 3;
+            } else {
+                throw error("Unexpected character '" + c + "'", pos);
+            }
+        }
+
+        if (conditionalDepth > 0) {
+            throw error("Unterminated conditional section", len);
+        }
+    }
+
+    /**
+     * Reads the whole stream into buf, normalizing line ends to '\n'
+     */
+    private void readAll() throws IOException {
+        char[] chunk = new char[READ_BUFFER_SIZE];
+        boolean pendingCr = false;
+        int read;
+
+        buf = new char[READ_BUFFER_SIZE];
+        len = 0;
+        while ((read = is.read(chunk, 0, chunk.length)) != -1) {
+            if (len + read > buf.length) {
+                char[] newBuf = new char[Math.max(buf.length * 2, len + read)];
+                System.arraycopy(buf, 0, newBuf, 0, len);
+                buf = newBuf;
+            }
+            for(int i = 0; i < read; i++) {
+                char c = chunk[i];
+                if (c == '\r') {
+                    buf[len++] = '\n';
+                    pendingCr = true;
+                } else {
+                    if (!(c == '\n' && pendingCr)) {
+                        buf[len++] = c;
+                    }
+                    pendingCr = false;
+                }
+            }
+        }
+    }
+
+    private void parseComment() throws ParseException {
+        int start = pos;
+        int textStart = pos + 4;
+        int end = indexOf("-->", textStart);
+
+        if (end == -1) {
+            throw error("Unterminated comment", start);
+        }
+        pos = end + 3;
+        lcList.add(DTDReadHelper.createCommentContent(new String(buf, textStart, end - textStart),
+                itemCount++));
+    }
+
+    private void parseEntityDecl() throws ParseException {
+        int start = pos;
+        boolean isParameter = false;
+        String name;
+
+        pos += 8;  // "<!ENTITY".length()
+        requireWhitespace();
+        if (pos < len && buf[pos] == '%') {
+            isParameter = true;
+            pos++;
+            requireWhitespace();
+        }
+        name = readName();
+        requireWhitespace();
+        // Like in XML, only the first declaration of an entity is binding (general and
+        // parameter entities live in different namespaces, though)
+        boolean firstDecl = declaredEntities.add(isParameter ? "%" + name : name);
+
+        if (pos < len && (buf[pos] == '"' || buf[pos] == '\'')) {
+            String value = readEntityValue();
+            skipWhitespace();
+            expect('>');
+            if (firstDecl) {
+                addEntity(isParameter ? "%" + name : name, value, null, null, false);
+            }
+        } else {
+            String publicId = null;
+            String systemId;
+            String keyword = readName();
+
+            switch (keyword) {
+                case "PUBLIC":
+                    requireWhitespace();
+                    publicId = readQuoted();
+                    requireWhitespace();
+                    systemId = readQuoted();
+                    break;
+                case "SYSTEM":
+                    requireWhitespace();
+                    systemId = readQuoted();
+                    break;
+                default:
+                    throw error("Expected entity value, SYSTEM or PUBLIC", start);
+            }
+            skipWhitespace();
+            if (!isParameter && startsWith("NDATA")) {
+                pos += 5;
+                requireWhitespace();
+                readName();
+                skipWhitespace();
+            }
+            expect('>');
+            if (firstDecl) {
+                addEntity(name, null, publicId, systemId, true);
+            }
+        }
+    }
+
+    private void addEntity(String name, String value, String publicId, String systemId,
+            boolean external) {
+        int orderInFile = itemCount++;
+
+        if (external) {
+            LTExternalEntity ltExtEntity = new LTExternalEntity(name, publicId, systemId);
+            ltExtEntity.setOrderInFile(orderInFile);
+            ltExtEntity.setCreationDate(new Date());
+            ltExtEntity.setLastUpdate(ltExtEntity.getCreationDate());
+            lcList.add(ltExtEntity);
+        } else {
+            LTKeyValuePair ltKvp = new LTKeyValuePair();
+            ltKvp.setName(name);
+            ltKvp.setTextValue(value);
+            ltKvp.setCreationDate(new Date());
+            ltKvp.setLastUpdate(ltKvp.getCreationDate());
+            ltKvp.setOrderInFile(orderInFile);
+            lcList.add(ltKvp);
+        }
+    }
+
+    /**
+     * Reads a quoted entity value, replacing character references by the characters
+     * they stand for. General entity references are kept as they are
+     * @return the entity value
+     */
+    private String readEntityValue() throws ParseException {
+        int start = pos;
+        char quote = buf[pos++];
+
+        valueBuilder.setLength(0);
+        while (pos < len) {
+            char c = buf[pos];
+            if (c == quote) {
+                pos++;
+                return valueBuilder.toString();
+            } else if (c == '&' && pos + 1 < len && buf[pos + 1] == '#') {
+                valueBuilder.appendCodePoint(readCharReference());
+            } else {
+                valueBuilder.append(c);
+                pos++;
+            }
+        }
+        throw error("Unterminated entity value", start);
+    }
+
+    private int readCharReference() throws ParseException {
+        int start = pos;
+        int radix = 10;
+        int digitsStart;
+        int codePoint;
+
+        pos += 2;  // "&#"
+        if (pos < len && buf[pos] == 'x') {
+            radix = 16;
+            pos++;
+        }
+        digitsStart = pos;
+        while (pos < len && Character.digit(buf[pos], radix) != -1) {
+            pos++;
+        }
+        if (pos == digitsStart || pos >= len || buf[pos] != ';') {
+            throw error("Malformed character reference", start);
+        }
+        try {
+            codePoint = Integer.parseInt(new String(buf, digitsStart, pos - digitsStart), radix);
+        } catch (NumberFormatException e) {
+            throw error("Malformed character reference", start);
+        }
+        if (!Character.isValidCodePoint(codePoint)) {
+            throw error("Invalid character reference", start);
+        }
+        pos++;
+        return codePoint;
+    }
+
+    private String readQuoted() throws ParseException {
+        int start = pos;
+
+        if (pos >= len || (buf[pos] != '"' && buf[pos] != '\'')) {
+            throw error("Expected quoted literal", pos);
+        }
+        int end = indexOf(buf[pos], pos + 1);
+        if (end == -1) {
+            throw error("Unterminated literal", start);
+        }
+        pos = end + 1;
+        return new String(buf, start + 1, end - start - 1);
+    }
+
+    private void parseConditionalSectionStart() throws ParseException {
+        int start = pos;
+        String keyword;
+
+        pos += 3;  // "<!["
+        skipWhitespace();
+        if (pos < len && buf[pos] == '%') {
+            // The keyword comes from a parameter entity, which we don't expand;
+            // the safest choice is to include the section
+            pos++;
+            readName();
+            expect(';');
+            keyword = "INCLUDE";
+        } else {
+            keyword = readName();
+        }
+        skipWhitespace();
+        expect('[');
+
+        switch (keyword) {
+            case "INCLUDE":
+                conditionalDepth++;
+                break;
+            case "IGNORE":
+                skipIgnoredSection(start);
+                break;
+            default:
+                throw error("Unknown conditional section keyword " + keyword, start);
+        }
+    }
+
+    private void skipIgnoredSection(int start) throws ParseException {
+        int depth = 1;
+
+        while (pos < len) {
+            if (startsWith("<![")) {
+                depth++;
+                pos += 3;
+            } else if (startsWith("]]>")) {
+                pos += 3;
+                if (--depth == 0) {
+                    return;
+                }
+            } else {
+                pos++;
+            }
+        }
+        throw error("Unterminated IGNORE section", start);
+    }
+
+    /**
+     * Skips an ELEMENT, ATTLIST, NOTATION or any other markup declaration we are not
+     * interested in, honouring quoted literals that might contain a '>'
+     */
+    private void skipMarkupDecl() throws ParseException {
+        int start = pos;
+
+        pos += 2;
+        while (pos < len) {
+            char c = buf[pos];
+            if (c == '"' || c == '\'') {
+                readQuoted();
+            } else if (c == '>') {
+                pos++;
+                return;
+            } else {
+                pos++;
+            }
+        }
+        throw error("Unterminated markup declaration", start);
+    }
+
+    private void skipPast(String terminator, int start) throws ParseException {
+        int end = indexOf(terminator, pos + 2);
+
+        if (end == -1) {
+            throw error("Unterminated markup", start);
+        }
+        pos = end + terminator.length();
+    }
+
+    private String readName() throws ParseException {
+        int start = pos;
+
+        while (pos < len && isNameChar(buf[pos])) {
+            pos++;
+        }
+        if (pos == start) {
+            throw error("Expected name", start);
+        }
+        return new String(buf, start, pos - start);
+    }
+
+    private static boolean isNameChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '.' || c == '-' || c == '_' || c == ':'
+                || c == '\u00B7';
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\n' || c == '\t';
+    }
+
+    private void skipWhitespace() {
+        while (pos < len && isWhitespace(buf[pos])) {
+            pos++;
+        }
+    }
+
+    private void requireWhitespace() throws ParseException {
+        if (pos >= len || !isWhitespace(buf[pos])) {
+            throw error("Expected whitespace", pos);
+        }
+        skipWhitespace();
+    }
+
+    private void expect(char c) throws ParseException {
+        if (pos >= len || buf[pos] != c) {
+            throw error("Expected '" + c + "'", pos);
+        }
+        pos++;
+    }
+
+    private boolean startsWith(String s) {
+        int sLen = s.length();
+
+        if (pos + sLen > len) {
+            return false;
+        }
+        for(int i = 0; i < sLen; i++) {
+            if (buf[pos + i] != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOf(char c, int from) {
+        for(int i = from; i < len; i++) {
+            if (buf[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int indexOf(String s, int from) {
+        char first = s.charAt(0);
+        int sLen = s.length();
+
+        for(int i = from; i <= len - sLen; i++) {
+            if (buf[i] == first) {
+                int j = 1;
+                while (j < sLen && buf[i + j] == s.charAt(j)) {
+                    j++;
+                }
+                if (j == sLen) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the line (1-based) of an offset in the buffer. Offsets are expected to
+     * be requested in increasing order, so the whole buffer is scanned only once
+     * @param offset the offset in the buffer
+     * @return the line number
+     */
+    private int lineAt(int offset) {
+        if (offset < lineScanPos) {
+            lineScanPos = 0;
+            lineAtPos = 1;
+        }
+        while (lineScanPos < offset) {
+            if (buf[lineScanPos++] == '\n') {
+                lineAtPos++;
+            }
+        }
+        return lineAtPos;
+    }
+
+    private int columnAt(int offset) {
+        int i = Math.min(offset, len);
+
+        while (i > 0 && buf[i - 1] != '\n') {
+            i--;
+        }
+        return offset - i + 1;
+    }
+
+    private ParseException error(String message, int offset) {
+        return new ParseException(message + " at line " + lineAt(offset) + ", column "
+                + columnAt(offset), offset);
+    }
+}
@@ -9,6 +9,7 @@ import java.io.IOException;
 import java.io.LineNumberReader;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.logging.Level;
@@ -36,16 +37,34 @@ public class PropertiesReadHelper implements ReadHelper {
     private static final int STATUS_L10N_COMMENT = 4;
     private static final int STATUS_LICENSEHEADER = 5;
     private static final int STATUS_INISECTION = 6;
+    private static final int READ_BUFFER_SIZE = 8192;
+    private static final char[] L10N_NOTE_UPPER = "LOCALIZATION NOTE".toCharArray();
+    private static final char[] MPL1_END = "*** END LICENSE BLOCK ***".toCharArray();
+    private static final char[] MPL2_URL = "http://mozilla.org/MPL/2.0/".toCharArray();
+    private static final Pattern L10N_NOTE_ENTITY_PATTERN = Pattern.compile(
+            "LOCALIZATION NOTE\\s+\\(([^)]+)\\)", Pattern.CASE_INSENSITIVE);
     private LineNumberReader lnr;
     private int parseCurrentStatus;
     private final List<LocaleContent> lcList;
+    // The whole stream is read in buf, and lines are handled as regions of it
+    private char[] buf;
+    private int len;
+    private int cursor;
+    private int currentLineStart;
+    private int currentLineEnd;
+    private CharArraySequence lineSequence;
+    private final Matcher l10nNoteMatcher;
+    // Comments spanning several lines are collected here, and their LocaleContent
+    // gets the text once the comment is complete
+    private final StringBuilder commentText;
+    private LocaleContent pendingComment;
 
     /**
      * Empty private constructor to force the use of the public constructor requiring an stream in the form of
      * LineNumberReader instance
      */
     private PropertiesReadHelper() {
-        lcList = new ArrayList<>(15);
+        this(null);
     }
 
     /**
@@ -56,6 +75,8 @@ public class PropertiesReadHelper implements ReadHelper {
     public PropertiesReadHelper(LineNumberReader lnr) {
         this.lnr = lnr;
         lcList = new ArrayList<>(15);
+        commentText = new StringBuilder(256);
+        l10nNoteMatcher = L10N_NOTE_ENTITY_PATTERN.matcher("");
     }
 
     @Override
@@ -63,29 +84,35 @@ public class PropertiesReadHelper implements ReadHelper {
         int keyDelimiter;
         int pos;
         char c;
-        int lineNumber;
-        Matcher m;
-        Pattern p;
-        String line;
+        int lineNumber = 0;
+        int lineStart;
+        int lineEnd;
         StringBuilder value = null;
         LocaleContent lc = null;
 
-        line = getNextLine();
-        while (line != null) {
-            lineNumber = lnr.getLineNumber();
+        readAll();
+        pendingComment = null;
+        commentText.setLength(0);
+        cursor = 0;
+        while (nextLine()) {
+            lineNumber++;
+            lineStart = currentLineStart;
+            lineEnd = currentLineEnd;
 
             if (parseCurrentStatus == PropertiesReadHelper.STATUS_NULL) {
                 lc = null;
-                line = skipWhitespaces(line);
+                // Skip leading spaces
+                while ((lineStart < lineEnd) && (buf[lineStart] == ' ')) {
+                    lineStart++;
+                }
             }
 
-            if (line.isEmpty()) {
+            if (lineStart == lineEnd) {
                 parseCurrentStatus = PropertiesReadHelper.STATUS_NULL;
-                line = getNextLine();
                 continue;
             }
 
-            c = line.charAt(0);
+            c = buf[lineStart];
 
             // If we're not in the middle of a (multiline) value
             // and the string starts with a comment delimiter
@@ -100,13 +127,13 @@ public class PropertiesReadHelper implements ReadHelper {
                         }
 
                         // If the line has "Localization note" inside it, mark it
-                        parseCurrentStatus = (line.toUpperCase().contains("LOCALIZATION NOTE"))
+                        parseCurrentStatus = (indexOfIgnoreCase(L10N_NOTE_UPPER, lineStart, lineEnd) != -1)
                                 ? STATUS_L10N_COMMENT : parseCurrentStatus;
 
                         // Have we found an MPL1 / MPL2 license block?
                         if ((parseCurrentStatus == STATUS_COMMENT)
-                                && (line.contains("*** END LICENSE BLOCK ***") ||
-                                        line.contains("http://mozilla.org/MPL/2.0/"))) {
+                                && ((indexOf(MPL1_END, lineStart, lineEnd) != -1) ||
+                                        (indexOf(MPL2_URL, lineStart, lineEnd) != -1))) {
                             parseCurrentStatus = STATUS_LICENSEHEADER;
                         }
                         break;
@@ -127,21 +154,20 @@ public class PropertiesReadHelper implements ReadHelper {
                 case STATUS_KEY:
                     // IMPORTANT: we assume keys don't split over several lines
                     // Let's look for the key - value separator, usually '='
-                    keyDelimiter = line.indexOf('=');
+                    keyDelimiter = indexOf('=', lineStart, lineEnd);
                     keyDelimiter = (keyDelimiter == -1)
-                            ? line.indexOf(':') : keyDelimiter;
+                            ? indexOf(':', lineStart, lineEnd) : keyDelimiter;
 
                     // If no key delimiter has been found, it is likely a
                     // syntax error, but we will just ignore the line
                     if (keyDelimiter == -1) {
                         parseCurrentStatus = STATUS_NULL;
-                        line = getNextLine();
                         continue;
                     }
 
                     if (lc == null) {
                         lc = new LTKeyValuePair();
-                        lc.setName(line.substring(0, keyDelimiter).trim());
+                        lc.setName(trimmedString(lineStart, keyDelimiter));
                         lc.setOrderInFile(lineNumber);
                         lc.setCreationDate(new Date());
                         lc.setLastUpdate(lc.getCreationDate());
@@ -150,25 +176,24 @@ public class PropertiesReadHelper implements ReadHelper {
 
                     // The key is the left side of the delimiter, removing
                     // existing spaces
-                    line = line.substring(keyDelimiter + 1);
+                    lineStart = keyDelimiter + 1;
                     parseCurrentStatus = STATUS_VALUE;
                     // No break here, since we want to process the remaining
                     // content of line as the value
                 case STATUS_VALUE:
-                    pos = 0;
+                    pos = lineStart;
                     if (value == null) {
-                        while (pos < line.length()
-                                && Character.isWhitespace(line.charAt(pos))) {
+                        while (pos < lineEnd && Character.isWhitespace(buf[pos])) {
                             pos++;
                         }
-                        value = new StringBuilder(line.length() - pos);
+                        value = new StringBuilder(lineEnd - pos);
                     }
 
-                    while (pos < line.length()) {
-                        c = line.charAt(pos++);
+                    while (pos < lineEnd) {
+                        c = buf[pos++];
                         if (c == '\\') {
-                            if (pos != line.length()) {
-                                c = line.charAt(pos++);
+                            if (pos != lineEnd) {
+                                c = buf[pos++];
                                 switch (c) {
                                     case '\\':
                                         // We've found an actual double slash sequence
@@ -186,15 +211,22 @@ public class PropertiesReadHelper implements ReadHelper {
                                     case 'u':
                                         // Hack to deal with shorter than 4 digits Unicode sequences
                                         int unicodeSequenceEnd = pos;
+                                        int uni = 0;
+                                        int digit;
 
-                                        while ((unicodeSequenceEnd < line.length())
+                                        while ((unicodeSequenceEnd < lineEnd)
                                                 && (unicodeSequenceEnd < (pos + 4))
-                                                && ("0123456789ABCDEFabcdef".indexOf(line.charAt(unicodeSequenceEnd)) != -1)) {
+                                                && (buf[unicodeSequenceEnd] < 128)
+                                                && ((digit = Character.digit(buf[unicodeSequenceEnd], 16)) != -1)) {
+                                            uni = (uni << 4) | digit;
                                             unicodeSequenceEnd++;
                                         }
 
-                                        char uni = (char) Integer.parseInt(line.substring(pos, unicodeSequenceEnd), 16);
-                                        value.append(uni);
+                                        if (unicodeSequenceEnd == pos) {
+                                            throw new ParseException("Unicode escape sequence without digits at line "
+                                                    + lineNumber, pos);
+                                        }
+                                        value.append((char) uni);
                                         pos = unicodeSequenceEnd;
                                         break;
                                     default:
@@ -210,8 +242,8 @@ public class PropertiesReadHelper implements ReadHelper {
                         }
                     }
 
-                    if ((line.length() == 0)
-                            || (line.charAt(line.length() - 1) != '\\')) {
+                    if ((lineStart == lineEnd)
+                            || (buf[lineEnd - 1] != '\\')) {
 
                         lc.setTextValue(value.toString());
                         parseCurrentStatus = STATUS_NULL;
@@ -228,12 +260,9 @@ public class PropertiesReadHelper implements ReadHelper {
                         lc.setCreationDate(new Date());
                         lc.setLastUpdate(lc.getCreationDate());
                         lcList.add(lc);
+                        startComment(lc);
                     }
-                    if ((lc.getTextValue() == null) || (lc.getTextValue().isEmpty())) {
-                        lc.setTextValue(line);
-                    } else {
-                        lc.setTextValue(lc.getTextValue() + "\n" + line);
-                    }
+                    appendCommentLine(lineStart, lineEnd);
                     break;
                 case STATUS_L10N_COMMENT:
                     if (lc == null) {
@@ -243,6 +272,7 @@ public class PropertiesReadHelper implements ReadHelper {
                         lc.setCreationDate(new Date());
                         lc.setLastUpdate(lc.getCreationDate());
                         lcList.add(lc);
+                        startComment(lc);
                     }
 
                     // If a comment block ends with, or contains, a localization
@@ -258,19 +288,14 @@ public class PropertiesReadHelper implements ReadHelper {
                      *
                      * However, sometimes no key is given
                      */
-                    p = Pattern.compile("LOCALIZATION NOTE\\s+\\(([^)]+)\\)",
-                            Pattern.CASE_INSENSITIVE);
-                    m = p.matcher(line);
+                    lineSequence.setRange(lineStart, lineEnd);
+                    l10nNoteMatcher.reset(lineSequence);
 
-                    if (m.find()) {
-                        ((LTComment) lc).setEntityName(m.group(1));
+                    if (l10nNoteMatcher.find()) {
+                        ((LTComment) lc).setEntityName(l10nNoteMatcher.group(1));
                     }
 
-                    if ((lc.getTextValue() == null) || (lc.getTextValue().isEmpty())) {
-                        lc.setTextValue(line);
-                    } else {
-                        lc.setTextValue(lc.getTextValue() + "\n" + line);
-                    }
+                    appendCommentLine(lineStart, lineEnd);
                     break;
                 case STATUS_LICENSEHEADER:
                     if (lc == null) {
@@ -280,6 +305,7 @@ public class PropertiesReadHelper implements ReadHelper {
                         lc.setCreationDate(new Date());
                         lc.setLastUpdate(lc.getCreationDate());
                         lcList.add(lc);
+                        startComment(lc);
                     } else if(lc instanceof LTComment) {
                         // The string to identify an MPL 2.0 license header appears
                         // in the third line of the license comment, so it will have
@@ -290,19 +316,17 @@ public class PropertiesReadHelper implements ReadHelper {
                         lc2.setOrderInFile(lc.getOrderInFile());
                         lc2.setCreationDate(lc.getCreationDate());
                         lc2.setLastUpdate(lc.getLastUpdate());
-                        lc2.setTextValue(lc.getTextValue());
                         lcList.remove(lc);
                         lcList.add(lc2);
                         lc = lc2;
+                        // The text collected so far goes to the license
+                        pendingComment = lc2;
                     }
 
-                    if ((lc.getTextValue() == null) || (lc.getTextValue().isEmpty())) {
-                        lc.setTextValue(line);
-                    } else {
-                        lc.setTextValue(lc.getTextValue() + "\n" + line);
-                    }
+                    appendCommentLine(lineStart, lineEnd);
                     // We're looking for the end of the license block to mark the status as
                     // null
+                    flushComment();
                     parseCurrentStatus = STATUS_NULL;
                     value = null;
                     lc = null;
@@ -310,16 +334,15 @@ public class PropertiesReadHelper implements ReadHelper {
                 case STATUS_INISECTION:
                     // IMPORTANT: we assume keys don't split over several lines
                     // Let's look for the key - value separator, usually '='
-                    keyDelimiter = line.indexOf(']');
+                    keyDelimiter = indexOf(']', lineStart, lineEnd);
 
                     if (keyDelimiter == -1) {
                         parseCurrentStatus = STATUS_NULL;
-                        line = getNextLine();
                         continue;
                     }
 
                     lc = new LTIniSection();
-                    lc.setName(line.substring(1, keyDelimiter));
+                    lc.setName(new String(buf, lineStart + 1, keyDelimiter - lineStart - 1));
                     lc.setOrderInFile(lineNumber);
                     lc.setCreationDate(new Date());
                     lc.setLastUpdate(lc.getCreationDate());
@@ -329,8 +352,8 @@ public class PropertiesReadHelper implements ReadHelper {
                     lc = null;
                     break;
             }
-            line = getNextLine();
         }
+        flushComment();
     }
 
     @Override
@@ -342,26 +365,171 @@ public class PropertiesReadHelper implements ReadHelper {
         }
     }
 
-    private String getNextLine() {
-        String line;
+    /**
+     * Reads the whole stream into buf. An IO error ends the stream at the point
+     * it happened, like it did when reading line by line
+     */
+    private void readAll() {
+        int read;
+
+        buf = new char[READ_BUFFER_SIZE];
+        len = 0;
         try {
-            line = lnr.readLine();
+            while ((read = lnr.read(buf, len, buf.length - len)) != -1) {
+                len += read;
+                if (len == buf.length) {
+                    buf = Arrays.copyOf(buf, buf.length * 2);
+                }
+            }
         } catch (IOException ex) {
             Logger.getLogger(PropertiesReadHelper.class.getName()).log(Level.SEVERE, null, ex);
-            line = null;
         }
-        return line;
+        lineSequence = new CharArraySequence(buf);
     }
 
-    private String skipWhitespaces(String line) {
-        int i = 0;
-        while ((i < line.length()) && (line.charAt(i) == ' ')) {
-            i++;
+    /**
+     * Advances to the next line, with the same line terminators than
+     * BufferedReader.readLine ('\n', '\r' or "\r\n")
+     * @return true if there is a line between currentLineStart and currentLineEnd,
+     *         false if the end of the stream has been reached
+     */
+    private boolean nextLine() {
+        if (cursor >= len) {
+            return false;
+        }
+
+        currentLineStart = cursor;
+        while ((cursor < len) && (buf[cursor] != '\n') && (buf[cursor] != '\r')) {
+            cursor++;
         }
-        if (i < line.length()) {
-            return line.substring(i);
-        } else {
-            return "";
+        currentLineEnd = cursor;
+        if (cursor < len) {
+            if ((buf[cursor] == '\r') && (cursor + 1 < len) && (buf[cursor + 1] == '\n')) {
+                cursor++;
+            }
+            cursor++;
+        }
+        return true;
+    }
+
+    private int indexOf(char c, int from, int to) {
+        for(int i = from; i < to; i++) {
+            if (buf[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int indexOf(char[] target, int from, int to) {
+        int last = to - target.length;
+
+        for(int i = from; i <= last; i++) {
+            int j = 0;
+            while ((j < target.length) && (buf[i + j] == target[j])) {
+                j++;
+            }
+            if (j == target.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Searches an upper case target ignoring the case of the buffer contents, the
+     * same way as toUpperCase().contains(target) without copying the line
+     */
+    private int indexOfIgnoreCase(char[] upperTarget, int from, int to) {
+        int last = to - upperTarget.length;
+
+        for(int i = from; i <= last; i++) {
+            int j = 0;
+            while ((j < upperTarget.length)
+                    && (Character.toUpperCase(buf[i + j]) == upperTarget[j])) {
+                j++;
+            }
+            if (j == upperTarget.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the chars between from and to as a String, without leading and trailing
+     * whitespace, as String.trim() would
+     */
+    private String trimmedString(int from, int to) {
+        while ((from < to) && (buf[from] <= ' ')) {
+            from++;
+        }
+        while ((from < to) && (buf[to - 1] <= ' ')) {
+            to--;
+        }
+        return new String(buf, from, to - from);
+    }
+
+    /**
+     * Sets the text collected for the previous comment (if any) and starts collecting
+     * the text for a new one
+     */
+    private void startComment(LocaleContent lc) {
+        flushComment();
+        pendingComment = lc;
+    }
+
+    private void appendCommentLine(int from, int to) {
+        if (commentText.length() > 0) {
+            commentText.append('\n');
+        }
+        commentText.append(buf, from, to - from);
+    }
+
+    private void flushComment() {
+        if (pendingComment != null) {
+            pendingComment.setTextValue(commentText.toString());
+            pendingComment = null;
+        }
+        commentText.setLength(0);
+    }
+
+    /**
+     * A CharSequence view of a region of the buffer, so the localization note
+     * pattern can be applied to a line without copying it
+     */
+    private static class CharArraySequence implements CharSequence {
+        private final char[] chars;
+        private int start;
+        private int end;
+
+        CharArraySequence(char[] chars) {
+            this.chars = chars;
+        }
+
+        void setRange(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return chars[start + index];
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return new String(chars, start + from, to - from);
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, start, end - start);
         }
     }
 }
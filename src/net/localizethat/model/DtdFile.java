@@ -52,6 +52,11 @@ public class DtdFile extends ParseableFileAdapter {
         return parsedContentList;
     }
 
+    @Override
+    public DtdFileAccess createFileAccess() {
+        return new DtdFileAccess(getFilePath());
+    }
+
     @Override
     protected void afterParsingHook(LineNumberReader fileReader) {
         throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
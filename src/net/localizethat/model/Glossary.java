@@ -9,7 +9,8 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
-import java.util.Iterator;
+import java.util.HashMap;
+import java.util.Map;
 import javax.persistence.Basic;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
@@ -26,6 +27,7 @@ import javax.persistence.Table;
 import javax.persistence.TableGenerator;
 import javax.persistence.Temporal;
 import javax.persistence.TemporalType;
+import javax.persistence.Transient;
 import javax.persistence.UniqueConstraint;
 import javax.persistence.Version;
 import javax.xml.bind.annotation.XmlRootElement;
@@ -80,6 +82,8 @@ public class Glossary implements Serializable {
     @Column(name = "ENTITYVERSION")
     @Version
     private int entityVersion;
+    @Transient
+    private transient Map<Object, GlsEntry> entryIndex;
 
     public Glossary() {
         this.glsEntryCollection = new ArrayList<>(Glossary.GLS_INITIAL_SIZE);
@@ -144,6 +148,65 @@ public class Glossary implements Serializable {
 
     public void setGlsEntryCollection(Collection<GlsEntry> glsEntryCollection) {
         this.glsEntryCollection = glsEntryCollection;
+        invalidateEntryIndex();
+    }
+
+    /**
+     * Adds a GlsEntry to the entries collection, keeping the index of entries in sync
+     * @param ge the GlsEntry to be added
+     */
+    public void addGlsEntry(GlsEntry ge) {
+        glsEntryCollection.add(ge);
+        if (entryIndex != null) {
+            entryIndex.putIfAbsent(ge.equivalenceKey(), ge);
+        }
+    }
+
+    /**
+     * Removes a GlsEntry from the entries collection, keeping the index of entries in sync
+     * @param ge the GlsEntry to be removed
+     * @return true if the entry was in the collection
+     */
+    public boolean removeGlsEntry(GlsEntry ge) {
+        boolean removed = glsEntryCollection.remove(ge);
+
+        if (removed) {
+            // Other entry equivalent to the removed one might exist
+            invalidateEntryIndex();
+        }
+        return removed;
+    }
+
+    /**
+     * Discards the index of entries, so it will be rebuilt the next time it is needed
+     */
+    void invalidateEntryIndex() {
+        entryIndex = null;
+    }
+
+    /**
+     * Called when an entry changes its term or part of speech. Entries not yet added
+     * to this glossary (no ID and not indexed) can't make the index stale
+     * @param ge the modified entry
+     * @param oldKey the equivalence key of the entry before the change
+     */
+    void entryKeyChanged(GlsEntry ge, Object oldKey) {
+        if (entryIndex != null && (entryIndex.get(oldKey) == ge || ge.getId() != null)) {
+            invalidateEntryIndex();
+        }
+    }
+
+    private Map<Object, GlsEntry> getEntryIndex() {
+        if (entryIndex == null) {
+            Map<Object, GlsEntry> index = new HashMap<>(
+                    Math.max(16, (glsEntryCollection.size() * 4) / 3 + 1));
+            for(GlsEntry ge : glsEntryCollection) {
+                // Keep the first one, like a linear search would do
+                index.putIfAbsent(ge.equivalenceKey(), ge);
+            }
+            entryIndex = index;
+        }
+        return entryIndex;
     }
 
     public L10n getL10nId() {
@@ -197,16 +260,7 @@ public class Glossary implements Serializable {
      * @return true if ge is considered to already exist in the Glossary entries collection, false otherwise
      */
     public boolean glsEntryExists(GlsEntry ge) {
-        Iterator<GlsEntry> ig = glsEntryCollection.iterator();
-        
-        while (ig.hasNext()) {
-            GlsEntry glsEntry = ig.next();
-            
-            if (glsEntry.isEquivalent(ge)) {
-                return true;
-            }
-        }
-        return false;
+        return findGlsEntry(ge) != null;
     }
     
     /**
@@ -218,16 +272,7 @@ public class Glossary implements Serializable {
      * @return the equivalent GlsEntry, or null if no entry is found in this Glossary
      */
     public GlsEntry findGlsEntry(GlsEntry ge) {
-        Iterator<GlsEntry> ig = glsEntryCollection.iterator();
-        
-        while (ig.hasNext()) {
-            GlsEntry glsEntry = ig.next();
-            
-            if (glsEntry.isEquivalent(ge)) {
-                return glsEntry;
-            }
-        }
-        return null;
+        return (ge == null) ? null : getEntryIndex().get(ge.equivalenceKey());
     }
 
 }
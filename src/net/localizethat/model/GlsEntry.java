@@ -8,8 +8,10 @@ package net.localizethat.model;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.AbstractMap;
 import java.util.Date;
-import java.util.Iterator;
+import java.util.HashMap;
+import java.util.Map;
 import javax.persistence.Basic;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
@@ -29,6 +31,7 @@ import javax.persistence.Table;
 import javax.persistence.TableGenerator;
 import javax.persistence.Temporal;
 import javax.persistence.TemporalType;
+import javax.persistence.Transient;
 import javax.persistence.Version;
 import javax.xml.bind.annotation.XmlRootElement;
 import javax.xml.bind.annotation.XmlTransient;
@@ -49,6 +52,7 @@ import javax.xml.bind.annotation.XmlTransient;
     @NamedQuery(name = "GlsEntry.findAllForGlossary", query = "SELECT ge FROM GlsEntry ge WHERE ge.glosId = :gid ORDER BY ge.term"),
     @NamedQuery(name = "GlsEntry.findById", query = "SELECT ge FROM GlsEntry ge WHERE ge.id = :id"),
     @NamedQuery(name = "GlsEntry.findByGlsTerm", query = "SELECT ge FROM GlsEntry ge WHERE ge.term = :glseterm"),
+    @NamedQuery(name = "GlsEntry.findIdAndTermByGlossary", query = "SELECT ge.id, ge.term FROM GlsEntry ge WHERE ge.glosId = :glosid"),
     @NamedQuery(name = "GlsEntry.findByGlsAndTerm", query = "SELECT ge FROM GlsEntry ge WHERE ge.glosId = :glosid AND ge.term = :glseterm"),
     @NamedQuery(name = "GlsEntry.findByGlsAndTermAndPoS", query = "SELECT ge FROM GlsEntry ge WHERE ge.glosId = :glosid AND ge.term = :glseterm AND ge.partOfSpeech = :partofspeech"),
     @NamedQuery(name = "GlsEntry.findByGlsTermLoCase", query = "SELECT ge FROM GlsEntry ge WHERE LOWER(ge.term) = LOWER(:glseterm)"),
@@ -91,6 +95,8 @@ public class GlsEntry implements Serializable {
     @Column(name = "ENTITYVERSION")
     @Version
     private int entityVersion;
+    @Transient
+    private transient Map<Object, GlsTranslation> translationIndex;
 
     public GlsEntry() {
         this.glsTranslationCollection = new ArrayList<>(GlsEntry.GLSTRNS_INITIAL_SIZE);
@@ -120,7 +126,9 @@ public class GlsEntry implements Serializable {
     }
 
     public void setTerm(String term) {
+        Object oldKey = equivalenceKey();
         this.term = term.substring(0, Math.min(term.length(), GLSETERM_LENGTH));
+        notifyKeyChange(oldKey);
     }
 
     public String getComment() {
@@ -162,6 +170,77 @@ public class GlsEntry implements Serializable {
 
     public void setGlsTranslationCollection(Collection<GlsTranslation> glsTranslationCollection) {
         this.glsTranslationCollection = glsTranslationCollection;
+        invalidateTranslationIndex();
+    }
+
+    /**
+     * Adds a GlsTranslation to the translations collection, keeping the index of
+     * translations in sync
+     * @param gt the GlsTranslation to be added
+     */
+    public void addGlsTranslation(GlsTranslation gt) {
+        glsTranslationCollection.add(gt);
+        if (translationIndex != null) {
+            translationIndex.putIfAbsent(gt.equivalenceKey(), gt);
+        }
+    }
+
+    /**
+     * Removes a GlsTranslation from the translations collection, keeping the index of
+     * translations in sync
+     * @param gt the GlsTranslation to be removed
+     * @return true if the translation was in the collection
+     */
+    public boolean removeGlsTranslation(GlsTranslation gt) {
+        boolean removed = glsTranslationCollection.remove(gt);
+
+        if (removed) {
+            // Other translation equivalent to the removed one might exist
+            invalidateTranslationIndex();
+        }
+        return removed;
+    }
+
+    /**
+     * Removes all translations from the translations collection
+     */
+    public void clearGlsTranslations() {
+        glsTranslationCollection.clear();
+        invalidateTranslationIndex();
+    }
+
+    /**
+     * Discards the index of translations, so it will be rebuilt the next time it is
+     * needed
+     */
+    void invalidateTranslationIndex() {
+        translationIndex = null;
+    }
+
+    /**
+     * Called when a translation changes its value or L10n. Translations not yet added
+     * to this entry (no ID and not indexed) can't make the index stale
+     * @param gt the modified translation
+     * @param oldKey the equivalence key of the translation before the change
+     */
+    void translationKeyChanged(GlsTranslation gt, Object oldKey) {
+        if (translationIndex != null
+                && (translationIndex.get(oldKey) == gt || gt.getId() != null)) {
+            invalidateTranslationIndex();
+        }
+    }
+
+    private Map<Object, GlsTranslation> getTranslationIndex() {
+        if (translationIndex == null) {
+            Map<Object, GlsTranslation> index = new HashMap<>(
+                    Math.max(8, (glsTranslationCollection.size() * 4) / 3 + 1));
+            for(GlsTranslation gt : glsTranslationCollection) {
+                // Keep the first one, like a linear search would do
+                index.putIfAbsent(gt.equivalenceKey(), gt);
+            }
+            translationIndex = index;
+        }
+        return translationIndex;
     }
 
     public PartOfSpeech getPartOfSpeech() {
@@ -169,7 +248,23 @@ public class GlsEntry implements Serializable {
     }
 
     public void setPartOfSpeech(PartOfSpeech partOfSpeech) {
+        Object oldKey = equivalenceKey();
         this.partOfSpeech = partOfSpeech;
+        notifyKeyChange(oldKey);
+    }
+
+    private void notifyKeyChange(Object oldKey) {
+        if (glosId != null) {
+            glosId.entryKeyChanged(this, oldKey);
+        }
+    }
+
+    /**
+     * Returns the key used to look up equivalent entries (see {@link #isEquivalent})
+     * @return an object whose equals and hashCode depend on the term and part of speech
+     */
+    public Object equivalenceKey() {
+        return new AbstractMap.SimpleImmutableEntry<>(term, partOfSpeech);
     }
 
     public int getEntityVersion() {
@@ -224,16 +319,7 @@ public class GlsEntry implements Serializable {
      * @return true if gt is considered to already exist in the GlsEntry translations collection, false otherwise
      */
     public boolean glsTranslationExists(GlsTranslation gt) {
-        Iterator<GlsTranslation> ig = glsTranslationCollection.iterator();
-
-        while (ig.hasNext()) {
-            GlsTranslation glsTranslation = ig.next();
-
-            if (glsTranslation.isEquivalent(gt)) {
-                return true;
-            }
-        }
-        return false;
+        return findGlsTranslation(gt) != null;
     }
 
     /**
@@ -245,16 +331,12 @@ public class GlsEntry implements Serializable {
      * @return the equivalent GlsTranslation, or null if no equivalent translation is found in this Glossary
      */
     public GlsTranslation findGlsTranslation(GlsTranslation gt) {
-        Iterator<GlsTranslation> ig = glsTranslationCollection.iterator();
-
-        while (ig.hasNext()) {
-            GlsTranslation glsTranslation = ig.next();
-
-            if (glsTranslation.isEquivalent(gt)) {
-                return glsTranslation;
-            }
+        if (gt == null) {
+            return null;
         }
-        return null;
+        GlsTranslation candidate = getTranslationIndex().get(gt.equivalenceKey());
+        // isEquivalent also compares the parent entries
+        return (candidate != null && candidate.isEquivalent(gt)) ? candidate : null;
     }
 
     @Override
@@ -6,6 +6,7 @@
 package net.localizethat.model;
 
 import java.io.Serializable;
+import java.util.AbstractMap;
 import java.util.Date;
 import javax.persistence.Basic;
 import javax.persistence.Column;
@@ -102,7 +103,9 @@ public class GlsTranslation implements Serializable {
     }
 
     public void setValue(String value) {
+        Object oldKey = equivalenceKey();
         this.value = value.substring(0, Math.min(value.length(), GLSTVALUE_LENGTH));
+        notifyKeyChange(oldKey);
     }
 
     public String getComment() {
@@ -134,7 +137,9 @@ public class GlsTranslation implements Serializable {
     }
 
     public void setL10nId(L10n l10nId) {
+        Object oldKey = equivalenceKey();
         this.l10nId = l10nId;
+        notifyKeyChange(oldKey);
     }
 
     public GlsEntry getGlseId() {
@@ -188,6 +193,21 @@ public class GlsTranslation implements Serializable {
                         && this.getGlseId().isEquivalent(gt.getGlseId())));
     }
 
+    private void notifyKeyChange(Object oldKey) {
+        if (glseId != null) {
+            glseId.translationKeyChanged(this, oldKey);
+        }
+    }
+
+    /**
+     * Returns the key used to look up equivalent translations inside an entry (see
+     * {@link #isEquivalent})
+     * @return an object whose equals and hashCode depend on the value and L10n
+     */
+    public Object equivalenceKey() {
+        return new AbstractMap.SimpleImmutableEntry<>(value, l10nId);
+    }
+
     @Override
     public String toString() {
         return "glossarymanager.model.GlsTranslation[ id=" + id + " ]";
@@ -43,6 +43,12 @@ import javax.xml.bind.annotation.XmlRootElement;
 @NamedQueries({
     @NamedQuery(name = "LocaleContent.countAll", query = "SELECT COUNT(lc) FROM LocaleContent lc"),
     @NamedQuery(name = "LocaleContent.countByL10n", query = "SELECT COUNT(lc) FROM LocaleContent lc WHERE lc.l10nId = :l10nid"),
+    @NamedQuery(name = "LocaleContent.findByIds", query = "SELECT lc FROM LocaleContent lc WHERE lc.id IN :ids"),
+    @NamedQuery(name = "LocaleContent.findByIdsWithParent", query = "SELECT lc FROM LocaleContent lc LEFT JOIN FETCH lc.parent WHERE lc.id IN :ids"),
+    @NamedQuery(name = "LocaleContent.deleteByParentIds", query = "DELETE FROM LocaleContent lc WHERE lc.parent.id IN :ids"),
+    @NamedQuery(name = "LocaleContent.findDefTwinIdsByParent", query = "SELECT lc.defLocaleTwin.id FROM LocaleContent lc WHERE lc.parent = :parent AND lc.defLocaleTwin IS NOT NULL"),
+    @NamedQuery(name = "LocaleContent.findIdsByParentId", query = "SELECT lc.id FROM LocaleContent lc WHERE lc.parent.id = :parentid ORDER BY lc.orderInFile"),
+    @NamedQuery(name = "LocaleContent.findTwinsByDefTwinIds", query = "SELECT lc FROM LocaleContent lc WHERE lc.l10nId = :l10nid AND lc.defLocaleTwin.id IN :ids"),
 })
 public class LTContent implements LocaleContent {
     private static final long serialVersionUID = 1L;
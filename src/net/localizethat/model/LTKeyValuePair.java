@@ -33,7 +33,24 @@ import javax.xml.bind.annotation.XmlRootElement;
     @NamedQuery(name = "LTKeyValuePair.countAll", query = "SELECT COUNT(lkvp) FROM LTKeyValuePair lkvp"),
     @NamedQuery(name = "LocaleContent.count", query = "SELECT COUNT(lc) FROM LocaleContent lc"),
     @NamedQuery(name = "LTKeyValuePair.allFromAFile",
-            query = "SELECT lkvp FROM LTKeyValuePair lkvp WHERE lkvp.parent = :parentfile ORDER BY lkvp.orderInFile")
+            query = "SELECT lkvp FROM LTKeyValuePair lkvp WHERE lkvp.parent = :parentfile ORDER BY lkvp.orderInFile"),
+    @NamedQuery(name = "LTKeyValuePair.findTranslationPairsByL10n",
+            query = "SELECT lkvp.id, deftwin.textValue, lkvp.textValue, lkvp.trnsStatus, lkvp.keepOriginal "
+                    + "FROM LTKeyValuePair lkvp JOIN lkvp.defLocaleTwin deftwin WHERE lkvp.l10nId = :l10nid"),
+    @NamedQuery(name = "LTKeyValuePair.findUntranslatedByIds",
+            query = "SELECT lkvp.id, deftwin.textValue FROM LTKeyValuePair lkvp JOIN lkvp.defLocaleTwin deftwin "
+                    + "WHERE lkvp.l10nId = :l10nid AND (lkvp.id IN :ids OR deftwin.id IN :ids) "
+                    + "AND lkvp.keepOriginal = FALSE AND lkvp.textValue = '' "
+                    + "AND (lkvp.trnsStatus IS NULL OR lkvp.trnsStatus = net.localizethat.model.TranslationStatus.Untranslated)"),
+    @NamedQuery(name = "LTKeyValuePair.findUntranslatedByDefParentIds",
+            query = "SELECT lkvp.id, deftwin.textValue FROM LTKeyValuePair lkvp JOIN lkvp.defLocaleTwin deftwin "
+                    + "WHERE lkvp.l10nId = :l10nid AND deftwin.parent.id IN :ids "
+                    + "AND lkvp.keepOriginal = FALSE AND lkvp.textValue = '' "
+                    + "AND (lkvp.trnsStatus IS NULL OR lkvp.trnsStatus = net.localizethat.model.TranslationStatus.Untranslated)"),
+    @NamedQuery(name = "LTKeyValuePair.findTwinRowsByDefParentIds",
+            query = "SELECT deftwin.parent.id, deftwin.name, deftwin.textValue, lkvp.id, lkvp.textValue, "
+                    + "lkvp.trnsStatus, lkvp.keepOriginal FROM LTKeyValuePair lkvp JOIN lkvp.defLocaleTwin deftwin "
+                    + "WHERE lkvp.l10nId = :l10nid AND deftwin.parent.id IN :ids")
 })
 public class LTKeyValuePair extends LTContent implements EditableLocaleContent {
     private static final long serialVersionUID = 1L;
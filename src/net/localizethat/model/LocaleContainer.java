@@ -41,6 +41,10 @@ import net.localizethat.Main;
 @NamedQueries({
     @NamedQuery(name = "LocaleContainer.countAll", query = "SELECT COUNT(lc) FROM LocaleContainer lc"),
     @NamedQuery(name = "LocaleContainer.countByL10n", query = "SELECT COUNT(lc) FROM LocaleContainer lc WHERE lc.l10nId = :l10nid"),
+    @NamedQuery(name = "LocaleContainer.findIdsByParentIds", query = "SELECT lc.id FROM LocaleContainer lc WHERE lc.parent.id IN :ids"),
+    @NamedQuery(name = "LocaleContainer.findNamesByParentIds", query = "SELECT lc.id, lc.name, lc.parent.id FROM LocaleContainer lc WHERE lc.parent.id IN :ids"),
+    @NamedQuery(name = "LocaleContainer.findIdsByDefTwinIds", query = "SELECT lc.id FROM LocaleContainer lc WHERE lc.defLocaleTwin.id IN :ids"),
+    @NamedQuery(name = "LocaleContainer.deleteByIds", query = "DELETE FROM LocaleContainer lc WHERE lc.id IN :ids"),
 })
 public class LocaleContainer implements LocaleNode, Serializable {
     private static final int LOCALENODENAME_LENGTH = 128;
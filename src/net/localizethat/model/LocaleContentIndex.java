@@ -0,0 +1,105 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.localizethat.model;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory index of the children of a LocaleFile, so looking them up by name or
+ * by order in file does not require scanning the whole children collection.
+ *
+ * The index is not persisted; LocaleFile builds it the first time it is needed
+ * and keeps it in sync as children are added, removed or moved to another line.
+ * @author rpalomares
+ */
+class LocaleContentIndex {
+    private final Set<LocaleContent> members;
+    private final Map<String, LocaleContent> byName;
+    private final Map<Integer, LocaleContent> byOrder;
+
+    LocaleContentIndex(Collection<? extends LocaleContent> children) {
+        int capacity = Math.max(16, (children.size() * 4) / 3 + 1);
+
+        members = new HashSet<>(capacity);
+        byName = new HashMap<>(capacity);
+        byOrder = new HashMap<>(capacity);
+        for(LocaleContent lc : children) {
+            add(lc);
+        }
+    }
+
+    /**
+     * Adds a LocaleContent to the index. If another child with the same name
+     * (ignoring case) is already indexed, the name lookups keep returning the
+     * existing one, just like the linear search over the children did
+     * @param lc the LocaleContent to be added
+     */
+    final void add(LocaleContent lc) {
+        members.add(lc);
+        if (lc.getName() != null) {
+            byName.putIfAbsent(nameKey(lc.getName()), lc);
+        }
+        byOrder.put(lc.getOrderInFile(), lc);
+    }
+
+    /**
+     * Removes a LocaleContent from the index
+     * @param lc the LocaleContent to be removed
+     * @return true if the index still is consistent; false if the removed child
+     *         shadowed other child with the same name, so the index should be rebuilt
+     */
+    boolean remove(LocaleContent lc) {
+        boolean consistent = true;
+
+        if (members.remove(lc)) {
+            if (lc.getName() != null) {
+                String key = nameKey(lc.getName());
+                if (byName.get(key) == lc) {
+                    byName.remove(key);
+                    // We don't know whether other child had the same name
+                    consistent = false;
+                }
+            }
+            if (byOrder.get(lc.getOrderInFile()) == lc) {
+                byOrder.remove(lc.getOrderInFile());
+            }
+        }
+        return consistent;
+    }
+
+    /**
+     * Updates the order in file of an indexed LocaleContent
+     * @param lc the LocaleContent whose order in file is changing
+     * @param newOrderInFile the new order in file
+     */
+    void move(LocaleContent lc, int newOrderInFile) {
+        if (byOrder.get(lc.getOrderInFile()) == lc) {
+            byOrder.remove(lc.getOrderInFile());
+        }
+        byOrder.put(newOrderInFile, lc);
+    }
+
+    boolean contains(LocaleContent lc) {
+        return members.contains(lc);
+    }
+
+    LocaleContent getByName(String name) {
+        return byName.get(nameKey(name));
+    }
+
+    LocaleContent getByOrderInFile(int orderInFile) {
+        return byOrder.get(orderInFile);
+    }
+
+    private static String nameKey(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.localizethat.model;
+
+import java.io.Serializable;
+
+/**
+ * Lightweight, immutable reference to a LocaleContent, holding just what is needed
+ * to find it again later (its ID, the ID of its parent file and its class). Used by
+ * long processes to report the contents they have added or modified without keeping
+ * the entities themselves (and the EntityManager that manages them) in memory
+ * @author rpalomares
+ */
+public class LocaleContentRef implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final int id;
+    private final int parentId;
+    private final Class<? extends LocaleContent> kind;
+
+    public LocaleContentRef(int id, int parentId, Class<? extends LocaleContent> kind) {
+        this.id = id;
+        this.parentId = parentId;
+        this.kind = kind;
+    }
+
+    /**
+     * Creates a reference to an existing LocaleContent, which must have already
+     * been persisted (so it has an ID)
+     * @param lc the LocaleContent to reference
+     * @return a reference to lc
+     */
+    public static LocaleContentRef of(LocaleContent lc) {
+        LocaleFile parent = lc.getParent();
+
+        return new LocaleContentRef(lc.getId(),
+                (parent == null || parent.getId() == null) ? 0 : parent.getId(),
+                lc.getClass());
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getParentId() {
+        return parentId;
+    }
+
+    public Class<? extends LocaleContent> getKind() {
+        return kind;
+    }
+
+    @Override
+    public int hashCode() {
+        return id;
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (!(object instanceof LocaleContentRef)) {
+            return false;
+        }
+        LocaleContentRef other = (LocaleContentRef) object;
+        return this.id == other.id;
+    }
+
+    @Override
+    public String toString() {
+        return kind.getSimpleName() + "[id=" + id + ", parentId=" + parentId + "]";
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.localizethat.model;
+
+/**
+ * Lightweight, immutable, read-only copy of what is needed to export a LocaleContent:
+ * its type (the discriminator value, ie., the simple name of its class), its name and
+ * the text value to be written, which is the one of its default locale twin if the
+ * content is marked as Keep Original. Used to render files without loading the
+ * entities
+ * @author rpalomares
+ */
+public class LocaleContentSnapshot {
+    private final String kind;
+    private final String name;
+    private final String textValue;
+
+    public LocaleContentSnapshot(String kind, String name, String textValue) {
+        this.kind = kind;
+        this.name = name;
+        this.textValue = (textValue == null) ? "" : textValue;
+    }
+
+    public String getKind() {
+        return kind;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getTextValue() {
+        return textValue;
+    }
+
+    /**
+     * Creates a transient (never persisted) LocaleContent with the values of this
+     * snapshot, suitable for the printLocaleContent methods of ParseableFile
+     * @return a new LocaleContent, or null if the kind is not exportable
+     */
+    public LocaleContent toLocaleContent() {
+        LocaleContent lc;
+
+        switch (kind) {
+            case "LTComment":
+                lc = new LTComment();
+                break;
+            case "LTExternalEntity":
+                lc = new LTExternalEntity();
+                break;
+            case "LTIniSection":
+                lc = new LTIniSection();
+                break;
+            case "LTKeyValuePair":
+                lc = new LTKeyValuePair();
+                break;
+            case "LTLicense":
+                lc = new LTLicense();
+                break;
+            case "LTWhitespace":
+                lc = new LTWhitespace();
+                break;
+            default:
+                return null;
+        }
+        lc.setName(name);
+        lc.setTextValue(textValue);
+        return lc;
+    }
+
+    @Override
+    public String toString() {
+        return kind + "[name=" + name + "]";
+    }
+}
@@ -13,10 +13,13 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.LineNumberReader;
 import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
@@ -41,6 +44,7 @@ import javax.persistence.Table;
 import javax.persistence.TableGenerator;
 import javax.persistence.Temporal;
 import javax.persistence.TemporalType;
+import javax.persistence.Transient;
 import javax.persistence.Version;
 import javax.xml.bind.annotation.XmlRootElement;
 
@@ -57,6 +61,9 @@ import javax.xml.bind.annotation.XmlRootElement;
 @NamedQueries({
     @NamedQuery(name = "LocaleFile.countAll", query = "SELECT COUNT(lf) FROM LocaleFile lf"),
     @NamedQuery(name = "LocaleFile.countByL10n", query = "SELECT COUNT(lf) FROM LocaleFile lf WHERE lf.l10nId = :l10nid"),
+    @NamedQuery(name = "LocaleFile.findIdsByParentIds", query = "SELECT lf.id FROM LocaleFile lf WHERE lf.parent.id IN :ids"),
+    @NamedQuery(name = "LocaleFile.findNamesByParentIds", query = "SELECT lf.id, lf.name, lf.parent.id FROM LocaleFile lf WHERE lf.parent.id IN :ids"),
+    @NamedQuery(name = "LocaleFile.deleteByIds", query = "DELETE FROM LocaleFile lf WHERE lf.id IN :ids"),
 })
 public class LocaleFile implements LocaleNode, Serializable {
     private static final int LOCALENODENAME_LENGTH = 128;
@@ -155,6 +162,8 @@ public class LocaleFile implements LocaleNode, Serializable {
     @Basic(optional = false)
     @Column(name = "LFILEDONTEXPORT", nullable = false)
     private boolean dontExport;
+    @Transient
+    private transient LocaleContentIndex childIndex;
 
     protected LocaleFile() {
         super();
@@ -215,11 +224,44 @@ public class LocaleFile implements LocaleNode, Serializable {
         return sb.toString();
     }
 
+    /**
+     * Returns the index of children by name and order in file, building it if needed
+     * @return the index of children
+     */
+    private LocaleContentIndex getChildIndex() {
+        if (childIndex == null) {
+            childIndex = new LocaleContentIndex(children);
+        }
+        return childIndex;
+    }
+
+    /**
+     * Discards the index of children, so it will be rebuilt the next time it is
+     * needed. Subclasses must call this method if they modify the children
+     * collection directly instead of through addChild/removeChild
+     */
+    protected void invalidateChildIndex() {
+        childIndex = null;
+    }
+
+    /**
+     * Changes the order in file of a child, keeping the index of children in sync
+     * @param lc the child whose order in file is changing
+     * @param orderInFile the new order in file
+     */
+    protected void setChildOrderInFile(LocaleContent lc, int orderInFile) {
+        if (childIndex != null && childIndex.contains(lc)) {
+            childIndex.move(lc, orderInFile);
+        }
+        lc.setOrderInFile(orderInFile);
+    }
+
     @Override
     public boolean addChild(LocaleNode node) {
         if ((node instanceof LTContent) && (!hasChild(node))) {
             LTContent e = (LTContent) node;
             children.add(e);
+            getChildIndex().add(e);
             return true;
         }
         return false;
@@ -228,7 +270,7 @@ public class LocaleFile implements LocaleNode, Serializable {
     @Override
     public boolean hasChild(LocaleNode node) {
         if (node instanceof LTContent) {
-            return children.contains((LTContent) node);
+            return getChildIndex().contains((LTContent) node);
         } else {
             return false;
         }
@@ -241,12 +283,7 @@ public class LocaleFile implements LocaleNode, Serializable {
 
     @Override
     public boolean hasChild(String name, boolean matchCase) {
-        boolean found = false;
-
-        for(LocaleContent l : children) {
-            found = found || ((matchCase) ? (l.getName().equals(name)) : (l.getName().equalsIgnoreCase(name)));
-        }
-        return found;
+        return getChildByName(name, matchCase) != null;
     }
 
     @Override
@@ -260,10 +297,14 @@ public class LocaleFile implements LocaleNode, Serializable {
             return null;
         }
 
+        LocaleContent indexed = getChildIndex().getByName(name);
+        if (indexed == null || !matchCase || name.equals(indexed.getName())) {
+            return indexed;
+        }
+
+        // There may be several children whose names only differ in case
         for(LocaleContent l : children) {
-            boolean found = (matchCase) ? (name.equals(l.getName()))
-                                        : (name.equalsIgnoreCase(l.getName()));
-            if (found) {
+            if (name.equals(l.getName())) {
                 return l;
             }
         }
@@ -271,13 +312,7 @@ public class LocaleFile implements LocaleNode, Serializable {
     }
 
     public LocaleContent getChildByOrderInFile(int orderInFile) {
-        for(LocaleContent l : children) {
-            boolean found = (l.getOrderInFile() == orderInFile);
-            if (found) {
-                return l;
-            }
-        }
-        return null;
+        return getChildIndex().getByOrderInFile(orderInFile);
     }
 
     @Override
@@ -304,7 +339,11 @@ public class LocaleFile implements LocaleNode, Serializable {
     @Override
     public boolean removeChild(LocaleNode node) {
         if (node instanceof LTContent) {
-            return children.remove((LTContent) node);
+            boolean removed = children.remove((LTContent) node);
+            if (removed && childIndex != null && !childIndex.remove((LTContent) node)) {
+                invalidateChildIndex();
+            }
+            return removed;
         } else {
             return false;
         }
@@ -314,6 +353,7 @@ public class LocaleFile implements LocaleNode, Serializable {
     public boolean clearChildren() {
         try {
             children.clear();
+            invalidateChildIndex();
             return true;
         } catch (UnsupportedOperationException e) {
             return false;
@@ -456,6 +496,23 @@ public class LocaleFile implements LocaleNode, Serializable {
         }
         return is;
     }
+
+    /**
+     * Like getAsLineNumberReader(File), but for a Path in any file system, like an
+     * entry of an archive (see ArchivePathResolver)
+     * @param p the path of the file to read
+     * @return a reader for the file, or null if it can't be opened
+     */
+    public LineNumberReader getAsLineNumberReader(Path p) {
+        LineNumberReader is;
+        try {
+            is = new LineNumberReader(new InputStreamReader(Files.newInputStream(p)));
+        } catch (IOException e) {
+            Logger.getLogger(LocaleFile.class.getName()).log(Level.SEVERE, null, e);
+            is = null;
+        }
+        return is;
+    }
     
     public OutputStream getAsOutputStream() {
         return getAsOutputStream(getFile());
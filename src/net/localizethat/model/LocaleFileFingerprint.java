@@ -0,0 +1,159 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.localizethat.model;
+
+import java.io.Serializable;
+import java.util.Date;
+import javax.persistence.Basic;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Fingerprint (size, last modification time and MD5 hash) of the file in disk
+ * corresponding to a LocaleFile, as it was the last time it was parsed in an update.
+ * If the file is an entry of an archive, it also keeps its CRC-32, as stored in the
+ * archive. It shares the ID with the LocaleFile it belongs to
+ * @author rpalomares
+ */
+@Entity
+@Table(name = "APP.LFILEFINGERPRINT")
+@XmlRootElement
+@NamedQueries({
+    @NamedQuery(name = "LocaleFileFingerprint.findAll",
+            query = "SELECT lff FROM LocaleFileFingerprint lff"),
+    @NamedQuery(name = "LocaleFileFingerprint.findById",
+            query = "SELECT lff FROM LocaleFileFingerprint lff WHERE lff.id = :id")
+})
+public class LocaleFileFingerprint implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final int MD5HASH_LENGTH = 32;
+    @Id
+    @Basic(optional = false)
+    @Column(name = "ID", nullable = false)
+    private Integer id;
+    @Basic(optional = false)
+    @Column(name = "LFPFILESIZE", nullable = false)
+    private long fileSize;
+    @Basic(optional = false)
+    @Column(name = "LFPLASTMODIFIED", nullable = false)
+    private long lastModified;
+    @Basic(optional = false)
+    @Column(name = "LFPMD5HASH", nullable = false, length = MD5HASH_LENGTH)
+    private String md5Hash;
+    @Column(name = "LFPCRC")
+    private Long crc;
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "LFPLASTUPDATE")
+    private Date lastUpdate;
+
+    public LocaleFileFingerprint() {
+    }
+
+    public LocaleFileFingerprint(Integer id) {
+        this.id = id;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public void setFileSize(long fileSize) {
+        this.fileSize = fileSize;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(long lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    public String getMd5Hash() {
+        return md5Hash;
+    }
+
+    public void setMd5Hash(String md5Hash) {
+        this.md5Hash = md5Hash;
+    }
+
+    public Long getCrc() {
+        return crc;
+    }
+
+    public void setCrc(Long crc) {
+        this.crc = crc;
+    }
+
+    public Date getLastUpdate() {
+        return lastUpdate;
+    }
+
+    public void setLastUpdate(Date lastUpdate) {
+        this.lastUpdate = lastUpdate;
+    }
+
+    /**
+     * Checks if the file in disk still has the same size and last modification time
+     * that were saved in this fingerprint, which is taken as a sign of the file being
+     * unchanged without needing to read it
+     * @param fileSize the current size of the file in disk
+     * @param lastModified the current last modification time of the file in disk, in ms
+     * @return true if both values match those in the fingerprint
+     */
+    public boolean matchesAttributes(long fileSize, long lastModified) {
+        return (this.fileSize == fileSize) && (this.lastModified == lastModified);
+    }
+
+    /**
+     * Checks if an archive entry still has the same size and CRC-32 that were saved in
+     * this fingerprint. Archives are usually rebuilt as a whole, so the modification
+     * time of their entries is not useful, but both values are read from the central
+     * directory of the archive, without decompressing the entry
+     * @param fileSize the current (uncompressed) size of the entry
+     * @param crc the current CRC-32 of the entry
+     * @return true if both values match those in the fingerprint
+     */
+    public boolean matchesArchiveEntry(long fileSize, long crc) {
+        return (this.fileSize == fileSize) && (this.crc != null) && (this.crc == crc);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        hash += (id != null ? id.hashCode() : 0);
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (!(object instanceof LocaleFileFingerprint)) {
+            return false;
+        }
+        LocaleFileFingerprint other = (LocaleFileFingerprint) object;
+        return !((this.id == null && other.id != null) || (this.id != null && !this.id.equals(other.id)));
+    }
+
+    @Override
+    public String toString() {
+        return "net.localizethat.model.LocaleFileFingerprint[ id=" + id + " ]";
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.localizethat.model;
+
+import java.io.Serializable;
+
+/**
+ * Lightweight, immutable reference to a LocaleContainer or a LocaleFile, holding just
+ * its ID, its name and its class. Used by the GUI to display trees of nodes without
+ * loading the entities until one of them is actually selected
+ * @author rpalomares
+ */
+public class LocaleNodeRef implements Serializable, Comparable<LocaleNodeRef> {
+    private static final long serialVersionUID = 1L;
+    private final int id;
+    private final String name;
+    private final Class<? extends LocaleNode> kind;
+
+    public LocaleNodeRef(int id, String name, Class<? extends LocaleNode> kind) {
+        this.id = id;
+        this.name = name;
+        this.kind = kind;
+    }
+
+    /**
+     * Creates a reference to an existing LocaleNode, which must have already been
+     * persisted (so it has an ID)
+     * @param ln the LocaleNode to reference
+     * @return a reference to ln
+     */
+    public static LocaleNodeRef of(LocaleNode ln) {
+        return new LocaleNodeRef(ln.getId(), ln.getName(),
+                (ln instanceof LocaleFile) ? LocaleFile.class : ln.getClass());
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Class<? extends LocaleNode> getKind() {
+        return kind;
+    }
+
+    /**
+     * Tells whether the referenced node is a LocaleContainer, so it may have children
+     * @return true if the referenced node is a LocaleContainer
+     */
+    public boolean isContainer() {
+        return LocaleContainer.class.isAssignableFrom(kind);
+    }
+
+    @Override
+    public int compareTo(LocaleNodeRef o) {
+        return name.compareTo(o.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return id;
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (!(object instanceof LocaleNodeRef)) {
+            return false;
+        }
+        LocaleNodeRef other = (LocaleNodeRef) object;
+        return this.id == other.id && this.kind.equals(other.kind);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
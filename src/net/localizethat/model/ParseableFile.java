@@ -8,10 +8,12 @@ package net.localizethat.model;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.file.Path;
 import java.text.ParseException;
 import java.util.Collection;
 import java.util.List;
 import javax.persistence.EntityManager;
+import net.localizethat.io.ParseableFileAccess;
 import net.localizethat.model.jpa.LocaleContentJPAHelper;
 
 /**
@@ -41,6 +43,51 @@ public interface ParseableFile extends LocaleNode {
     List<LocaleContent> update(EntityManager em, LocaleContentJPAHelper lcntHelper)
             throws ParseException;
 
+    /**
+     * "Merges" an already parsed list of contents (see parse(File)) with this
+     * ParseableFile, removing obsolete entries, adding new ones (only if ParseableFile
+     * is declared as default twin) and updating the remaining if they have changed
+     *
+     * @param em an EntityManager used to persist in DB new, modified and deleted records
+     * @param lcntHelper the helper used to remove obsolete contents
+     * @param parsedContentList the result of parsing the file in disk
+     * @return a list of LTContent objects added or modified
+     */
+    List<LocaleContent> update(EntityManager em, LocaleContentJPAHelper lcntHelper,
+            List<LocaleContent> parsedContentList);
+
+    /**
+     * Reads and parses a text file (like a DTD file, a Properties file, etc.) without
+     * touching the datamodel. This is the CPU bound part of update() and it does not
+     * need an EntityManager; to run it outside the thread owning the EntityManager,
+     * use createFileAccess() instead, as this object is a managed entity.
+     *
+     * @param f a pointer to the file that will be parsed
+     * @return a list of new, unmanaged LocaleContent objects representing the file, or
+     *         null if the file can't be read
+     * @throws ParseException in case the parsing fails
+     */
+    List<LocaleContent> parse(File f) throws ParseException;
+
+    /**
+     * Like parse(File), but for a Path in any file system, like an entry of an archive
+     *
+     * @param p the path of the file that will be parsed
+     * @return a list of new, unmanaged LocaleContent objects representing the file, or
+     *         null if the file can't be read
+     * @throws ParseException in case the parsing fails
+     */
+    List<LocaleContent> parse(Path p) throws ParseException;
+
+    /**
+     * Creates the object parsing the files of this kind. Unlike this ParseableFile, it
+     * holds no entity, so it can parse the file in a thread other than the one owning
+     * the EntityManager
+     *
+     * @return a ParseableFileAccess for files like this one
+     */
+    ParseableFileAccess createFileAccess();
+
     /**
      * Parses a text file (like a DTD file, a Properties file, etc.) and tries to apply
      * it to this ParseableFile. Unlike update(), import does not remove obsolete entries;
@@ -65,6 +112,23 @@ public interface ParseableFile extends LocaleNode {
      */
     boolean exportToFile(File f) throws IOException;
 
+    /**
+     * Exports a parseable file to a character stream, which is neither flushed nor
+     * closed
+     * @param pw the stream where the file is written
+     */
+    void exportTo(PrintWriter pw);
+
+    /**
+     * Exports a parseable file to a character stream, from a snapshot of its contents
+     * instead of the entities; the stream is neither flushed nor closed
+     * @param pw the stream where the file is written
+     * @param contents the contents to export, already in order and with the text
+     * values to be written
+     * @see net.localizethat.model.jpa.LocaleContainerJPAHelper#findExportSnapshot(LocaleContainer)
+     */
+    void exportTo(PrintWriter pw, List<LocaleContentSnapshot> contents);
+
     /**
      * Prints to the file identified by pw the comment identified by lc
      * @param pw the reference to the file that is being written
@@ -9,6 +9,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.LineNumberReader;
 import java.io.PrintWriter;
+import java.nio.file.Path;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -39,16 +40,34 @@ public abstract class ParseableFileAdapter extends LocaleFile implements Parseab
     @Override
     public List<LocaleContent> update(EntityManager em, LocaleContentJPAHelper lcntHelper)
                 throws ParseException {
-        List<LocaleContent> newAndModifiedList = new ArrayList<>(10);
         // We're parsing the original if this file has no default twin
+        List<LocaleContent> parsedContentList = parse(getFile());
+        if (parsedContentList == null) {
+            return null;
+        }
+        return update(em, lcntHelper, parsedContentList);
+    }
 
-        LineNumberReader fileReader = this.getAsLineNumberReader();
+    @Override
+    public List<LocaleContent> parse(File f) throws ParseException {
+        return parse(f.toPath());
+    }
+
+    @Override
+    public List<LocaleContent> parse(Path p) throws ParseException {
+        LineNumberReader fileReader = getAsLineNumberReader(p);
         if (fileReader == null) {
             return null;
         }
 
         // beforeParsingHook is where the actual parsing happens
-        List<LocaleContent> parsedContentList = beforeParsingHook(fileReader);
+        return beforeParsingHook(fileReader);
+    }
+
+    @Override
+    public List<LocaleContent> update(EntityManager em, LocaleContentJPAHelper lcntHelper,
+            List<LocaleContent> parsedContentList) {
+        List<LocaleContent> newAndModifiedList = new ArrayList<>(10);
 
         try {
             if (!em.getTransaction().isActive()) {
@@ -118,6 +137,7 @@ public abstract class ParseableFileAdapter extends LocaleFile implements Parseab
                     lcntHelper.removeRecursively(lc);
                 }
             }
+            invalidateChildIndex();
         } catch (Exception e) {
             if (em.isJoinedToTransaction()) {
                 em.getTransaction().rollback();
@@ -223,7 +243,7 @@ public abstract class ParseableFileAdapter extends LocaleFile implements Parseab
             changed = !((lcObject.getOrderInFile() == thisLicense.getOrderInFile()) &&
                         (lcObject.getTextValue().equals(thisLicense.getTextValue())));
             if (changed) {
-                thisLicense.setOrderInFile(lcObject.getOrderInFile());
+                setChildOrderInFile(thisLicense, lcObject.getOrderInFile());
                 thisLicense.setTextValue(lcObject.getTextValue());
                 thisLicense.setLastUpdate(lcObject.getLastUpdate());
                 newAndModifiedList.add(thisLicense);
@@ -260,7 +280,7 @@ public abstract class ParseableFileAdapter extends LocaleFile implements Parseab
                     && (lcObject.getCommentType().equals(existingComment.getCommentType()))
                     && (lcObject.getTextValue().equals(existingComment.getTextValue())));
             if (changed) {
-                existingComment.setOrderInFile(lcObject.getOrderInFile());
+                setChildOrderInFile(existingComment, lcObject.getOrderInFile());
                 existingComment.setCommentType(lcObject.getCommentType());
                 existingComment.setTextValue(lcObject.getTextValue());
                 existingComment.setLastUpdate(lcObject.getLastUpdate());
@@ -284,7 +304,7 @@ public abstract class ParseableFileAdapter extends LocaleFile implements Parseab
             changed = (lcObject.getOrderInFile() != existingIniSection.getOrderInFile());
 
             if (changed) {
-                existingIniSection.setOrderInFile(lcObject.getOrderInFile());
+                setChildOrderInFile(existingIniSection, lcObject.getOrderInFile());
                 existingIniSection.setLastUpdate(lcObject.getLastUpdate());
                 newAndModifiedList.add(existingIniSection);
             }
@@ -306,7 +326,7 @@ public abstract class ParseableFileAdapter extends LocaleFile implements Parseab
             changed = !((lcObject.getOrderInFile() == existingKey.getOrderInFile()) &&
                         (lcObject.getTextValue().equals(existingKey.getTextValue())));
             if (changed) {
-                existingKey.setOrderInFile(lcObject.getOrderInFile());
+                setChildOrderInFile(existingKey, lcObject.getOrderInFile());
                 existingKey.setTextValue(lcObject.getTextValue());
                 existingKey.setLastUpdate(lcObject.getLastUpdate());
                 newAndModifiedList.add(existingKey);
@@ -329,7 +349,7 @@ public abstract class ParseableFileAdapter extends LocaleFile implements Parseab
             changed = (lcObject.getOrderInFile() != existingWhitespace.getOrderInFile());
 
             if (changed) {
-                existingWhitespace.setOrderInFile(lcObject.getOrderInFile());
+                setChildOrderInFile(existingWhitespace, lcObject.getOrderInFile());
                 existingWhitespace.setLastUpdate(lcObject.getLastUpdate());
                 newAndModifiedList.add(existingWhitespace);
             }
@@ -351,7 +371,7 @@ public abstract class ParseableFileAdapter extends LocaleFile implements Parseab
             changed = !((lcObject.getOrderInFile() == existingEntity.getOrderInFile()) &&
                         (lcObject.getTextValue().equals(existingEntity.getTextValue())));
             if (changed) {
-                existingEntity.setOrderInFile(lcObject.getOrderInFile());
+                setChildOrderInFile(existingEntity, lcObject.getOrderInFile());
                 existingEntity.setTextValue(lcObject.getTextValue());
                 existingEntity.setLastUpdate(lcObject.getLastUpdate());
                 newAndModifiedList.add(existingEntity);
@@ -389,30 +409,46 @@ public abstract class ParseableFileAdapter extends LocaleFile implements Parseab
     public boolean exportToFile(File f) throws IOException {
         boolean result = false;
         PrintWriter pw;
-        List<LocaleContent> sortedChildren = new ArrayList<>(children.size());
         
         pw = getAsPrintWriter(f);
         
         if (pw != null) {
             result = true;
-            sortedChildren.addAll(children);
-            Collections.sort(sortedChildren, LTContent.orderInFileComparator);
-            
-            for(LocaleContent lc : sortedChildren) {
-                if (!lc.isDontExport()) {
-                    if (lc.isKeepOriginal()) {
-                        printLocaleContent(pw, lc.getDefLocaleTwin());
-                    } else {
-                        printLocaleContent(pw, lc);
-                    }
-                }
-            }
+            exportTo(pw);
             pw.flush();
             pw.close();
         }
         return result;
     }
+
+    @Override
+    public void exportTo(PrintWriter pw) {
+        List<LocaleContent> sortedChildren = new ArrayList<>(children.size());
+
+        sortedChildren.addAll(children);
+        Collections.sort(sortedChildren, LTContent.orderInFileComparator);
+
+        for(LocaleContent lc : sortedChildren) {
+            if (!lc.isDontExport()) {
+                if (lc.isKeepOriginal()) {
+                    printLocaleContent(pw, lc.getDefLocaleTwin());
+                } else {
+                    printLocaleContent(pw, lc);
+                }
+            }
+        }
+    }
     
+    @Override
+    public void exportTo(PrintWriter pw, List<LocaleContentSnapshot> contents) {
+        for(LocaleContentSnapshot lcs : contents) {
+            LocaleContent lc = lcs.toLocaleContent();
+            if (lc != null) {
+                printLocaleContent(pw, lc);
+            }
+        }
+    }
+
     private void printLocaleContent(PrintWriter pw, LocaleContent lc) {
         if (lc instanceof LTComment) {
             // TODO once we have a preference about exporting comments, check it
@@ -43,6 +43,11 @@ public class PropertiesFile extends ParseableFileAdapter {
         return parsedContentList;
     }
 
+    @Override
+    public PropertiesFileAccess createFileAccess() {
+        return new PropertiesFileAccess(getFilePath());
+    }
+
     @Override
     protected void afterParsingHook(LineNumberReader fileReader) {
         throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
@@ -9,6 +9,8 @@ import java.io.File;
 import java.io.IOException;
 import java.io.LineNumberReader;
 import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
@@ -147,16 +149,32 @@ public class TextFile extends LocaleFile {
     }
 
     public List<LocaleContent> update(EntityManager em) {
+        return update(em, getFile().toPath());
+    }
+
+    /**
+     * Like update(EntityManager), but reading the file from a Path in any file system,
+     * like an entry of an archive (see ArchivePathResolver)
+     * @param em an EntityManager used to persist the changes
+     * @param p the path of the file in disk (or in the archive)
+     * @return a list with the content of this file if it has been added or modified,
+     *         or null if the file can't be read
+     */
+    public List<LocaleContent> update(EntityManager em, Path p) {
         List<LocaleContent> newAndModifiedList = new ArrayList<>(1);
         String line;
         StringBuilder sb;
 
-        LineNumberReader fileReader = this.getAsLineNumberReader();
+        LineNumberReader fileReader = this.getAsLineNumberReader(p);
         if (fileReader == null) {
             return null;
         }
 
-        sb = new StringBuilder((int) getFile().length());
+        try {
+            sb = new StringBuilder((int) Files.size(p));
+        } catch (IOException ex) {
+            sb = new StringBuilder(1024);
+        }
 
         try {
             line = fileReader.readLine();
@@ -246,14 +264,22 @@ public class TextFile extends LocaleFile {
 
         if (pw != null) {
             result = true;
-            if (getChildByName(CHILDNAME).isKeepOriginal()) {
-                pw.print(((TextFile) getDefLocaleTwin()).getFileContent());
-            } else {
-                pw.print(getFileContent());
-            }
+            exportTo(pw);
             pw.flush();
             pw.close();
         }
         return result;
     }
+
+    /**
+     * Exports this file to a character stream, which is neither flushed nor closed
+     * @param pw the stream where the file is written
+     */
+    public void exportTo(PrintWriter pw) {
+        if (getChildByName(CHILDNAME).isKeepOriginal()) {
+            pw.print(((TextFile) getDefLocaleTwin()).getFileContent());
+        } else {
+            pw.print(getFileContent());
+        }
+    }
 }
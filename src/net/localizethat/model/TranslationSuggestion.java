@@ -0,0 +1,79 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.localizethat.model;
+
+/**
+ * A translation suggested by the translation memory for an original text, along
+ * with the original text it was translated from and how similar it is to the one
+ * we want to translate
+ * @author rpalomares
+ */
+public class TranslationSuggestion {
+    private final String sourceText;
+    private final String targetText;
+    private final int similarity;
+    private final int occurrences;
+    private final TranslationStatus trnsStatus;
+
+    public TranslationSuggestion(String sourceText, String targetText, int similarity,
+            int occurrences, TranslationStatus trnsStatus) {
+        this.sourceText = sourceText;
+        this.targetText = targetText;
+        this.similarity = similarity;
+        this.occurrences = occurrences;
+        this.trnsStatus = trnsStatus;
+    }
+
+    /**
+     * Returns the original text of the memorized translation
+     * @return the original text of the memorized translation
+     */
+    public String getSourceText() {
+        return sourceText;
+    }
+
+    public String getTargetText() {
+        return targetText;
+    }
+
+    /**
+     * Returns the similarity between the original text of the memorized translation
+     * and the one we want to translate, as a percentage
+     * @return 100 for exact matches, lower values for fuzzy ones
+     */
+    public int getSimilarity() {
+        return similarity;
+    }
+
+    /**
+     * Returns how many times this translation appears in the memory for the same
+     * original text
+     * @return the number of occurrences of this translation
+     */
+    public int getOccurrences() {
+        return occurrences;
+    }
+
+    /**
+     * Returns the translation status that a content should have if this suggestion
+     * is used as its translation: Copied or Proposed for exact matches (depending on
+     * whether there are other translations for the same original text), and
+     * Approximated for fuzzy ones
+     * @return the translation status for this suggestion
+     */
+    public TranslationStatus getTrnsStatus() {
+        return trnsStatus;
+    }
+
+    public boolean isExactMatch() {
+        return similarity == 100;
+    }
+
+    @Override
+    public String toString() {
+        return targetText + " (" + similarity + "%)";
+    }
+}
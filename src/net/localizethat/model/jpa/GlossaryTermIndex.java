@@ -0,0 +1,296 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.localizethat.model.jpa;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import net.localizethat.model.FailedEntry;
+import net.localizethat.model.Glossary;
+import net.localizethat.model.GlsEntry;
+import net.localizethat.util.AhoCorasickMatcher;
+
+/**
+ * This Singleton class keeps, for every glossary, an in-memory index of the terms of
+ * its entries, so looking up a word (matching case or not) does not require querying
+ * the database.
+ *
+ * The index of a glossary is loaded the first time it is needed, with a single query,
+ * and then kept up to date by the code modifying glossary entries through
+ * entryChanged, entryRemoved, glossaryRemoved and invalidate. Only entry IDs are kept,
+ * so the entries themselves are always retrieved from the caller's EntityManager.
+ *
+ * To find the terms present in a text, including those with several words, an
+ * Aho-Corasick automaton is built over the terms of the requested glossaries. It is
+ * kept until any glossary changes, and then rebuilt the next time it is needed
+ *
+ * @author rpalomares
+ */
+public class GlossaryTermIndex {
+    private static final GlossaryTermIndex instance = new GlossaryTermIndex();
+    private final Map<Integer, TermIndex> glossaryIndexes;
+    // Incremented on every change to any glossary, so a cached matcher knows it is stale
+    private final AtomicInteger modificationCount;
+    private volatile CachedMatcher cachedMatcher;
+
+    /**
+     * Returns the singleton instance of this class
+     *
+     * @return The singleton instance of this class
+     */
+    public static GlossaryTermIndex getInstance() {
+        return instance;
+    }
+
+    private GlossaryTermIndex() {
+        glossaryIndexes = new ConcurrentHashMap<>(8);
+        modificationCount = new AtomicInteger();
+    }
+
+    /**
+     * Finds the occurrences of glossary terms in a text. When several terms overlap,
+     * the leftmost and longest one is chosen. For every glossary, the entries whose
+     * term matches the occurrence exactly are preferred; if there are none, those
+     * matching it ignoring case are used instead, and the FailedEntry is marked as
+     * not matching case
+     * @param text the text to search into
+     * @param glossaries the glossaries whose terms are to be searched
+     * @param em the EntityManager used to load glossary indexes and entries
+     * @return a list of (potential) failed entries, ordered by position in the text
+     */
+    public List<FailedEntry> findTerms(String text, List<Glossary> glossaries, EntityManager em) {
+        List<FailedEntry> failedEntries = new ArrayList<>(5);
+        List<TermIndex> termIndexes = new ArrayList<>(glossaries.size());
+
+        for(Glossary g : glossaries) {
+            termIndexes.add(getTermIndex(g, em));
+        }
+
+        for(AhoCorasickMatcher.Match m : getMatcher(glossaries, termIndexes).findLongestNonOverlapping(text)) {
+            String word = text.substring(m.getStart(), m.getEnd());
+            FailedEntry fe = new FailedEntry(word, m.getStart(), true, null);
+
+            for(TermIndex ti : termIndexes) {
+                List<Integer> entryIds = ti.findExact(word);
+
+                if (entryIds.isEmpty()) {
+                    fe.setMatchCase(false);
+                    entryIds = ti.findFolded(word);
+                }
+                for(Integer entryId : entryIds) {
+                    // Entries are likely in the persistence context or the shared cache
+                    fe.addGe(em.find(GlsEntry.class, entryId));
+                }
+            }
+
+            if (fe.getGlsEntriesList().size() > 0) {
+                failedEntries.add(fe);
+            }
+        }
+        return failedEntries;
+    }
+
+    /**
+     * Adds a new entry, or updates the term of an existing one. It must be called once
+     * the entry has been persisted (so it has an ID)
+     * @param ge the added or modified glossary entry
+     */
+    public void entryChanged(GlsEntry ge) {
+        TermIndex ti = (ge.getGlosId() == null) ? null
+                : glossaryIndexes.get(ge.getGlosId().getId());
+
+        // If the glossary index is not loaded, it will include the entry when loaded
+        if (ti != null && ge.getId() != null) {
+            ti.put(ge.getId(), ge.getTerm());
+            modificationCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Removes an entry from the index
+     * @param ge the removed glossary entry
+     */
+    public void entryRemoved(GlsEntry ge) {
+        TermIndex ti = (ge.getGlosId() == null) ? null
+                : glossaryIndexes.get(ge.getGlosId().getId());
+
+        if (ti != null && ge.getId() != null) {
+            ti.remove(ge.getId());
+            modificationCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Discards the index of a removed glossary
+     * @param g the removed glossary
+     */
+    public void glossaryRemoved(Glossary g) {
+        invalidate(g);
+    }
+
+    /**
+     * Discards the index of a glossary, so it will be reloaded the next time it is
+     * needed. Intended for operations changing a glossary in ways that are not easily
+     * tracked entry by entry, like a rolled back import
+     * @param g the glossary
+     */
+    public void invalidate(Glossary g) {
+        if (g != null && g.getId() != null) {
+            glossaryIndexes.remove(g.getId());
+            modificationCount.incrementAndGet();
+        }
+    }
+
+    private TermIndex getTermIndex(Glossary g, EntityManager em) {
+        TermIndex ti = glossaryIndexes.get(g.getId());
+
+        if (ti == null) {
+            TypedQuery<Object[]> termsQuery = em.createNamedQuery("GlsEntry.findIdAndTermByGlossary",
+                    Object[].class);
+            termsQuery.setParameter("glosid", g);
+            List<Object[]> terms = termsQuery.getResultList();
+
+            ti = new TermIndex(terms.size());
+            for(Object[] idAndTerm : terms) {
+                ti.put((Integer) idAndTerm[0], (String) idAndTerm[1]);
+            }
+            // If another thread has loaded it meanwhile, keep that one
+            TermIndex existing = glossaryIndexes.putIfAbsent(g.getId(), ti);
+            if (existing != null) {
+                ti = existing;
+            }
+        }
+        return ti;
+    }
+
+    private AhoCorasickMatcher getMatcher(List<Glossary> glossaries, List<TermIndex> termIndexes) {
+        Set<Integer> glossaryIds = new HashSet<>(glossaries.size() * 2);
+        CachedMatcher cm = cachedMatcher;
+        int modCount = modificationCount.get();
+
+        for(Glossary g : glossaries) {
+            glossaryIds.add(g.getId());
+        }
+        if (cm == null || cm.modCount != modCount || !cm.glossaryIds.equals(glossaryIds)) {
+            List<String> terms = new ArrayList<>(256);
+            for(TermIndex ti : termIndexes) {
+                ti.collectFoldedTerms(terms);
+            }
+            cm = new CachedMatcher(glossaryIds, modCount, new AhoCorasickMatcher(terms, false));
+            cachedMatcher = cm;
+        }
+        return cm.matcher;
+    }
+
+    /**
+     * The automaton built for a set of glossaries, valid while modificationCount
+     * doesn't change
+     */
+    private static class CachedMatcher {
+        private final Set<Integer> glossaryIds;
+        private final int modCount;
+        private final AhoCorasickMatcher matcher;
+
+        CachedMatcher(Set<Integer> glossaryIds, int modCount, AhoCorasickMatcher matcher) {
+            this.glossaryIds = glossaryIds;
+            this.modCount = modCount;
+            this.matcher = matcher;
+        }
+    }
+
+    /**
+     * The index of a single glossary, with a map for the exact terms and another one
+     * for the terms in lower case
+     */
+    private static class TermIndex {
+        private final Map<String, List<Integer>> exactTerms;
+        private final Map<String, List<Integer>> foldedTerms;
+        private final Map<Integer, String> termsById;
+
+        TermIndex(int size) {
+            int capacity = Math.max(16, (size * 4) / 3 + 1);
+
+            exactTerms = new HashMap<>(capacity);
+            foldedTerms = new HashMap<>(capacity);
+            termsById = new HashMap<>(capacity);
+        }
+
+        synchronized List<Integer> findExact(String term) {
+            return copyOf(exactTerms.get(term));
+        }
+
+        synchronized List<Integer> findFolded(String term) {
+            return copyOf(foldedTerms.get(fold(term)));
+        }
+
+        synchronized void put(Integer id, String term) {
+            String oldTerm = termsById.put(id, term);
+
+            if (oldTerm != null) {
+                if (oldTerm.equals(term)) {
+                    return;
+                }
+                removeFrom(exactTerms, oldTerm, id);
+                removeFrom(foldedTerms, fold(oldTerm), id);
+            }
+            if (term != null) {
+                addTo(exactTerms, term, id);
+                addTo(foldedTerms, fold(term), id);
+            }
+        }
+
+        synchronized void remove(Integer id) {
+            String oldTerm = termsById.remove(id);
+
+            if (oldTerm != null) {
+                removeFrom(exactTerms, oldTerm, id);
+                removeFrom(foldedTerms, fold(oldTerm), id);
+            }
+        }
+
+        private static void addTo(Map<String, List<Integer>> map, String key, Integer id) {
+            List<Integer> ids = map.get(key);
+
+            if (ids == null) {
+                ids = new ArrayList<>(1);
+                map.put(key, ids);
+            }
+            ids.add(id);
+        }
+
+        private static void removeFrom(Map<String, List<Integer>> map, String key, Integer id) {
+            List<Integer> ids = map.get(key);
+
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    map.remove(key);
+                }
+            }
+        }
+
+        private static List<Integer> copyOf(List<Integer> ids) {
+            return (ids == null) ? Collections.<Integer>emptyList() : new ArrayList<>(ids);
+        }
+
+        synchronized void collectFoldedTerms(Collection<String> terms) {
+            terms.addAll(foldedTerms.keySet());
+        }
+
+        private static String fold(String term) {
+            return AhoCorasickMatcher.foldCase(term);
+        }
+    }
+}
@@ -5,14 +5,24 @@
  */
 package net.localizethat.model.jpa;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
 import net.localizethat.Main;
 import net.localizethat.model.L10n;
 import net.localizethat.model.LocaleContainer;
+import net.localizethat.model.LocaleContentSnapshot;
 import net.localizethat.model.LocaleFile;
 
 /**
@@ -21,6 +31,10 @@ import net.localizethat.model.LocaleFile;
  * @author rpalomares
  */
 public class LocaleContainerJPAHelper {
+    /**
+     * Maximum number of IDs passed in a single IN clause in the bulk removal queries
+     */
+    private static final int BULK_IN_CLAUSE_SIZE = 500;
     private int transactMaxCount;
     private int transactCounter;
     private EntityManager em;
@@ -253,4 +267,254 @@ public class LocaleContainerJPAHelper {
         }
         return result;
     }
+
+    /**
+     * Removes the LocaleContainers in lcList, along with all their descendants
+     * (LocaleContainers, LocaleFiles and LocaleContents) and all their twins, using
+     * a few set-based DELETE statements instead of removing every entity.
+     *
+     * The IDs of the subtrees are collected level by level with one query per level,
+     * and then the contents, files and containers are deleted by ID in chunks. The
+     * in-memory structure is updated only for the roots (and their twins), which are
+     * detached from the EntityManager along with their loaded descendants; the caller
+     * must not keep references to any removed entity.
+     *
+     * This method neither begins nor commits a transaction if one is already active
+     * @param lcList the LocaleContainers to be removed
+     * @return true if the operation ended successfully
+     */
+    public boolean removeInBulk(Collection<LocaleContainer> lcList) {
+        List<LocaleContainer> roots = new ArrayList<>(lcList.size() * 2);
+        Set<Integer> containerIds = new HashSet<>(64);
+        Set<Integer> fileIds = new HashSet<>(256);
+        boolean result = true;
+
+        if (lcList.isEmpty()) {
+            return result;
+        }
+
+        try {
+            if (!em.isJoinedToTransaction()) {
+                em.getTransaction().begin();
+            }
+
+            // Take the roots and their twins out of the in-memory structure
+            for(LocaleContainer lc : lcList) {
+                lc = em.merge(lc);
+                roots.add(lc);
+                for(LocaleContainer lcTwin : lc.getTwins()) {
+                    roots.add(em.merge(lcTwin));
+                }
+            }
+            for(LocaleContainer lc : roots) {
+                if (lc.getParent() != null) {
+                    lc.getParent().removeChild(lc);
+                }
+            }
+            em.flush();
+
+            // Collect the IDs of the subtrees, one level at a time
+            Set<Integer> levelIds = new HashSet<>(roots.size() * 2);
+            for(LocaleContainer lc : roots) {
+                levelIds.add(lc.getId());
+            }
+            while (!levelIds.isEmpty()) {
+                containerIds.addAll(levelIds);
+                fileIds.addAll(findIds("LocaleFile.findIdsByParentIds", levelIds));
+
+                Set<Integer> nextLevelIds = findIds("LocaleContainer.findIdsByParentIds", levelIds);
+                // Twins should be inside the subtrees of the roots twins, but we make sure
+                nextLevelIds.addAll(findIds("LocaleContainer.findIdsByDefTwinIds", nextLevelIds));
+                nextLevelIds.removeAll(containerIds);
+                levelIds = nextLevelIds;
+            }
+
+            // Delete from the leaves up to the roots (file fingerprints go away by cascade)
+            executeDelete("LocaleContent.deleteByParentIds", fileIds);
+            deleteFileLobs(fileIds);
+            executeDelete("LocaleFile.deleteByIds", fileIds);
+            executeDelete("LocaleContainer.deleteByIds", containerIds);
+
+            // The removed entities still managed by the EntityManager are no longer valid
+            for(LocaleContainer lc : roots) {
+                em.detach(lc);
+            }
+            em.getEntityManagerFactory().getCache().evictAll();
+        } catch (Exception e) {
+            Logger.getLogger(LocaleContainerJPAHelper.class.getName()).log(Level.SEVERE, null, e);
+            if (em.isJoinedToTransaction()) {
+                em.getTransaction().rollback();
+                em.getTransaction().begin();
+            }
+            result = false;
+        }
+        return result;
+    }
+
+    /**
+     * Collects the IDs of the LocaleFiles inside the LocaleContainers in lcList and all
+     * their descendants, with one query per level of the subtrees instead of walking
+     * the in-memory structure
+     * @param lcList the LocaleContainers (already persisted) whose files we want
+     * @return the IDs of the LocaleFiles in the subtrees
+     */
+    public Set<Integer> findFileIdsInSubtrees(Collection<LocaleContainer> lcList) {
+        Set<Integer> containerIds = new HashSet<>(64);
+        Set<Integer> fileIds = new HashSet<>(256);
+        Set<Integer> levelIds = new HashSet<>(lcList.size() * 2);
+
+        for(LocaleContainer lc : lcList) {
+            levelIds.add(lc.getId());
+        }
+        while (!levelIds.isEmpty()) {
+            containerIds.addAll(levelIds);
+            fileIds.addAll(findIds("LocaleFile.findIdsByParentIds", levelIds));
+
+            Set<Integer> nextLevelIds = findIds("LocaleContainer.findIdsByParentIds", levelIds);
+            nextLevelIds.removeAll(containerIds);
+            levelIds = nextLevelIds;
+        }
+        return fileIds;
+    }
+
+    /**
+     * Builds the paths of the LocaleFiles inside some LocaleContainers and all their
+     * descendants, with one query per level of the subtrees instead of walking the
+     * in-memory structure. The path of a file is the path given for its root followed
+     * by the names of the containers down to it and its own name, separated by "/"
+     * @param rootPaths the paths to use for the root LocaleContainers, by their ID
+     * (an empty path means the names start right below the root)
+     * @return a map from the ID of every LocaleFile in the subtrees to its path
+     */
+    public Map<Integer, String> findFilePathsInSubtrees(Map<Integer, String> rootPaths) {
+        Map<Integer, String> containerPaths = new HashMap<>(rootPaths);
+        Map<Integer, String> filePaths = new HashMap<>(256);
+        Set<Integer> levelIds = new HashSet<>(rootPaths.keySet());
+
+        while (!levelIds.isEmpty()) {
+            for(Object[] row : findNames("LocaleFile.findNamesByParentIds", levelIds)) {
+                filePaths.put((Integer) row[0], childPath(containerPaths.get((Integer) row[2]),
+                        (String) row[1]));
+            }
+
+            Set<Integer> nextLevelIds = new HashSet<>(levelIds.size() * 2);
+            for(Object[] row : findNames("LocaleContainer.findNamesByParentIds", levelIds)) {
+                Integer id = (Integer) row[0];
+                if (!containerPaths.containsKey(id)) {
+                    containerPaths.put(id, childPath(containerPaths.get((Integer) row[2]),
+                            (String) row[1]));
+                    nextLevelIds.add(id);
+                }
+            }
+            levelIds = nextLevelIds;
+        }
+        return filePaths;
+    }
+
+    /**
+     * Reads, with a single native query, what is needed to export the ParseableFiles
+     * directly inside a LocaleContainer: the type, name and text value (or the one of
+     * its default locale twin, if marked as Keep Original) of every exportable
+     * content, in the order they have in their files. The entities are not loaded, so
+     * the result can be used from other threads
+     * @param lc the LocaleContainer
+     * @return a map from the ID of every LocaleFile having exportable contents to the
+     * list of snapshots of its contents, ordered by orderInFile
+     */
+    public Map<Integer, List<LocaleContentSnapshot>> findExportSnapshot(LocaleContainer lc) {
+        Map<Integer, List<LocaleContentSnapshot>> result = new HashMap<>(32);
+        Query snapshotQuery = em.createNativeQuery("SELECT C.LNODEPARENT, C.LC_TYPE, C.LNODENAME, "
+                + "C.LCONTENTTEXTVALUE, C.LCONTENTKEEPORIG, T.LCONTENTTEXTVALUE "
+                + "FROM APP.LOCALECONTENT C "
+                + "JOIN APP.LOCALEFILE F ON C.LNODEPARENT = F.ID "
+                + "LEFT JOIN APP.LOCALECONTENT T ON C.LNODETWIN = T.ID "
+                + "WHERE F.LNODEPARENT = ? AND C.LCONTENTDONTEXPORT = FALSE "
+                + "ORDER BY C.LNODEPARENT, C.LCONTENTORDERINFILE");
+        snapshotQuery.setParameter(1, lc.getId());
+
+        for(Object row : snapshotQuery.getResultList()) {
+            Object[] columns = (Object[]) row;
+            Integer fileId = ((Number) columns[0]).intValue();
+            boolean keepOriginal = Boolean.TRUE.equals(columns[4]);
+
+            // Like exportToFile, skip the contents to be kept as original without twin
+            if (keepOriginal && columns[5] == null) {
+                continue;
+            }
+            List<LocaleContentSnapshot> contents = result.get(fileId);
+            if (contents == null) {
+                contents = new ArrayList<>(64);
+                result.put(fileId, contents);
+            }
+            contents.add(new LocaleContentSnapshot((String) columns[1], (String) columns[2],
+                    (String) (keepOriginal ? columns[5] : columns[3])));
+        }
+        return result;
+    }
+
+    private static String childPath(String parentPath, String name) {
+        return (parentPath.isEmpty()) ? name : parentPath + "/" + name;
+    }
+
+    private List<Object[]> findNames(String namedQuery, Set<Integer> ids) {
+        List<Object[]> result = new ArrayList<>(ids.size() * 2);
+
+        for(List<Integer> chunk : splitInChunks(ids)) {
+            TypedQuery<Object[]> namesQuery = em.createNamedQuery(namedQuery, Object[].class);
+            namesQuery.setParameter("ids", chunk);
+            result.addAll(namesQuery.getResultList());
+        }
+        return result;
+    }
+
+    private Set<Integer> findIds(String namedQuery, Set<Integer> ids) {
+        Set<Integer> result = new HashSet<>(ids.size() * 2);
+
+        for(List<Integer> chunk : splitInChunks(ids)) {
+            TypedQuery<Integer> idsQuery = em.createNamedQuery(namedQuery, Integer.class);
+            idsQuery.setParameter("ids", chunk);
+            result.addAll(idsQuery.getResultList());
+        }
+        return result;
+    }
+
+    private void executeDelete(String namedQuery, Set<Integer> ids) {
+        for(List<Integer> chunk : splitInChunks(ids)) {
+            Query deleteQuery = em.createNamedQuery(namedQuery);
+            deleteQuery.setParameter("ids", chunk);
+            deleteQuery.executeUpdate();
+        }
+    }
+
+    /**
+     * Deletes the rows of the secondary table of TextFile and ImageFile, which is not
+     * linked to LOCALEFILE by a foreign key
+     * @param ids the IDs of the LocaleFiles being deleted
+     */
+    private void deleteFileLobs(Set<Integer> ids) {
+        for(List<Integer> chunk : splitInChunks(ids)) {
+            StringBuilder sb = new StringBuilder(32 + chunk.size() * 8);
+            sb.append("DELETE FROM APP.LFILELOBS WHERE ID IN (");
+            for(int i = 0; i < chunk.size(); i++) {
+                sb.append((i == 0) ? "?" : ", ?");
+            }
+            sb.append(")");
+
+            Query deleteQuery = em.createNativeQuery(sb.toString());
+            for(int i = 0; i < chunk.size(); i++) {
+                deleteQuery.setParameter(i + 1, chunk.get(i));
+            }
+            deleteQuery.executeUpdate();
+        }
+    }
+
+    private List<List<Integer>> splitInChunks(Set<Integer> ids) {
+        List<Integer> idList = new ArrayList<>(ids);
+        List<List<Integer>> chunks = new ArrayList<>(idList.size() / BULK_IN_CLAUSE_SIZE + 1);
+
+        for(int i = 0; i < idList.size(); i += BULK_IN_CLAUSE_SIZE) {
+            chunks.add(idList.subList(i, Math.min(i + BULK_IN_CLAUSE_SIZE, idList.size())));
+        }
+        return chunks;
+    }
 }
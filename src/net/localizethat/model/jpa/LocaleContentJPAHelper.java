@@ -6,10 +6,14 @@
 package net.localizethat.model.jpa;
 
 import java.util.Date;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
 import net.localizethat.Main;
 import net.localizethat.model.L10n;
 import net.localizethat.model.LTComment;
@@ -22,6 +26,7 @@ import net.localizethat.model.LTTextContent;
 import net.localizethat.model.LTWhitespace;
 import net.localizethat.model.LocaleContent;
 import net.localizethat.model.LocaleFile;
+import net.localizethat.model.ParseableFile;
 
 /**
  * This class provides helper methods to interact with LTContent persistence.
@@ -122,58 +127,7 @@ public class LocaleContentJPAHelper {
                         em.getTransaction().begin();
                     }
 
-                    if (defaultTwin instanceof LTExternalEntity) {
-                        LTExternalEntity origEe = (LTExternalEntity) defaultTwin;
-                        LTExternalEntity newEe = new LTExternalEntity(defaultTwin.getName(),
-                                null, origEe.getTextValue());
-                        newSibling = newEe;
-                    } else if (defaultTwin instanceof LTComment) {
-                        LTComment origLtc = (LTComment) defaultTwin;
-                        LTComment newLtc = new LTComment();
-                        newLtc.setCommentType(origLtc.getCommentType());
-                        newLtc.setEntityName(origLtc.getEntityName());
-                        // By default, we mark comments as Keep Original
-                        newLtc.setKeepOriginal(true);
-                        newSibling = newLtc;
-                    } else if (defaultTwin instanceof LTIniSection) {
-                        LTIniSection origLis = (LTIniSection) defaultTwin;
-                        LTIniSection newLis = new LTIniSection();
-                        // By default, we mark INI sections as Keep Original
-                        newLis.setKeepOriginal(true);
-                        newSibling = newLis;
-                    } else if (defaultTwin instanceof LTKeyValuePair) {
-                        LTKeyValuePair origKvp = (LTKeyValuePair) defaultTwin;
-                        LTKeyValuePair newKvp = new LTKeyValuePair();
-                        newKvp.setTextValue("");
-                        newSibling = newKvp;
-                    } else if (defaultTwin instanceof LTLicense) {
-                        LTLicense origLic = (LTLicense) defaultTwin;
-                        LTLicense newLic = new LTLicense();
-                        newLic.setTextValue("");
-                        newSibling = newLic;
-                    } else if (defaultTwin instanceof LTTextContent) {
-                        LTTextContent origText = (LTTextContent) defaultTwin;
-                        LTTextContent newText = new LTTextContent();
-                        newSibling = newText;
-                        Logger.getLogger(LocaleContentJPAHelper.class.getName()).log(Level.WARNING,
-                                "New LTTextContent object created outside of TextFile constructor: {0}, parent {1}",
-                                new Object[]{origText.getName(), twinParent.getName()});
-                    } else if (defaultTwin instanceof LTWhitespace) {
-                        LTWhitespace origWs = (LTWhitespace) defaultTwin;
-                        LTWhitespace newWs = new LTWhitespace();
-                        // By default, we mark whitespaces as Keep Original
-                        newWs.setKeepOriginal(true);
-                        newSibling = newWs;
-                    } else { // Default case
-                        newSibling = new LTContent();
-                    }
-                    newSibling.setName(defaultTwin.getName());
-                    newSibling.setParent(twinParent);
-                    newSibling.setCreationDate(opTimeStamp);
-                    newSibling.setDefLocaleTwin(defaultTwin);
-                    newSibling.setL10nId(targetLocale);
-                    newSibling.setLastUpdate(opTimeStamp);
-                    newSibling.setOrderInFile(defaultTwin.getOrderInFile());
+                    newSibling = createSibling(defaultTwin, twinParent, targetLocale, opTimeStamp);
 
                     // Connect the parent with newSibling
                     twinParent.addChild(newSibling);
@@ -189,6 +143,124 @@ public class LocaleContentJPAHelper {
         return result;
     }
 
+    /**
+     * Creates the siblings for targetLocale of all the contents of defaultFile that
+     * don't have one yet (except those marked as not to be exported), creating also the
+     * sibling of defaultFile itself if needed.
+     *
+     * Unlike calling createRecursively for every content, the parent chain is checked
+     * only once, and the existing siblings are found with a single query instead of
+     * looking in the twins of every content
+     * @param defaultFile the ParseableFile of the original locale
+     * @param targetLocale the L10n for which we want to create the siblings
+     * @return true on success, false if something went wrong (like defaultFile not
+     * being really the default twin)
+     */
+    public boolean createTwinsForFile(ParseableFile defaultFile, L10n targetLocale) {
+        LocaleFile defaultParent = (LocaleFile) defaultFile;
+        LocaleFile twinParent;
+        Date opTimeStamp = new Date();
+
+        if (defaultParent.getDefLocaleTwin() != null
+                || !lfHelper.createRecursively(defaultParent, targetLocale, false)) {
+            return false;
+        }
+
+        if (!em.getTransaction().isActive()) {
+            em.getTransaction().begin();
+        }
+        twinParent = em.merge(defaultParent.getTwinByLocale(targetLocale));
+
+        TypedQuery<Integer> twinnedQuery = em.createNamedQuery(
+                "LocaleContent.findDefTwinIdsByParent", Integer.class);
+        twinnedQuery.setParameter("parent", twinParent);
+        List<Integer> twinnedIds = twinnedQuery.getResultList();
+        Set<Integer> twinnedIdSet = new HashSet<>((twinnedIds.size() * 4) / 3 + 1);
+        twinnedIdSet.addAll(twinnedIds);
+
+        for(LocaleContent defaultTwin : defaultFile.getChildren()) {
+            // If the original locale content is set to not be exported
+            // we don't want to create sibling for it
+            if (defaultTwin.isDontExport() || twinnedIdSet.contains(defaultTwin.getId())) {
+                continue;
+            }
+
+            LocaleContent newSibling = createSibling(defaultTwin, twinParent, targetLocale,
+                    opTimeStamp);
+            twinParent.addChild(newSibling);
+            em.persist(newSibling);
+        }
+        return true;
+    }
+
+    /**
+     * Creates (but does not persist nor add to twinParent) a new LTContent for
+     * targetLocale as a sibling of defaultTwin
+     * @param defaultTwin the LTContent of the original locale
+     * @param twinParent the LocaleFile of the target locale that will hold the sibling
+     * @param targetLocale the L10n for which we want to create the sibling
+     * @param opTimeStamp the creation timestamp of the sibling
+     * @return the new sibling
+     */
+    private LocaleContent createSibling(LocaleContent defaultTwin, LocaleFile twinParent,
+            L10n targetLocale, Date opTimeStamp) {
+        LocaleContent newSibling;
+
+        if (defaultTwin instanceof LTExternalEntity) {
+            LTExternalEntity origEe = (LTExternalEntity) defaultTwin;
+            LTExternalEntity newEe = new LTExternalEntity(defaultTwin.getName(),
+                    null, origEe.getTextValue());
+            newSibling = newEe;
+        } else if (defaultTwin instanceof LTComment) {
+            LTComment origLtc = (LTComment) defaultTwin;
+            LTComment newLtc = new LTComment();
+            newLtc.setCommentType(origLtc.getCommentType());
+            newLtc.setEntityName(origLtc.getEntityName());
+            // By default, we mark comments as Keep Original
+            newLtc.setKeepOriginal(true);
+            newSibling = newLtc;
+        } else if (defaultTwin instanceof LTIniSection) {
+            LTIniSection origLis = (LTIniSection) defaultTwin;
+            LTIniSection newLis = new LTIniSection();
+            // By default, we mark INI sections as Keep Original
+            newLis.setKeepOriginal(true);
+            newSibling = newLis;
+        } else if (defaultTwin instanceof LTKeyValuePair) {
+            LTKeyValuePair origKvp = (LTKeyValuePair) defaultTwin;
+            LTKeyValuePair newKvp = new LTKeyValuePair();
+            newKvp.setTextValue("");
+            newSibling = newKvp;
+        } else if (defaultTwin instanceof LTLicense) {
+            LTLicense origLic = (LTLicense) defaultTwin;
+            LTLicense newLic = new LTLicense();
+            newLic.setTextValue("");
+            newSibling = newLic;
+        } else if (defaultTwin instanceof LTTextContent) {
+            LTTextContent origText = (LTTextContent) defaultTwin;
+            LTTextContent newText = new LTTextContent();
+            newSibling = newText;
+            Logger.getLogger(LocaleContentJPAHelper.class.getName()).log(Level.WARNING,
+                    "New LTTextContent object created outside of TextFile constructor: {0}, parent {1}",
+                    new Object[]{origText.getName(), twinParent.getName()});
+        } else if (defaultTwin instanceof LTWhitespace) {
+            LTWhitespace origWs = (LTWhitespace) defaultTwin;
+            LTWhitespace newWs = new LTWhitespace();
+            // By default, we mark whitespaces as Keep Original
+            newWs.setKeepOriginal(true);
+            newSibling = newWs;
+        } else { // Default case
+            newSibling = new LTContent();
+        }
+        newSibling.setName(defaultTwin.getName());
+        newSibling.setParent(twinParent);
+        newSibling.setCreationDate(opTimeStamp);
+        newSibling.setDefLocaleTwin(defaultTwin);
+        newSibling.setL10nId(targetLocale);
+        newSibling.setLastUpdate(opTimeStamp);
+        newSibling.setOrderInFile(defaultTwin.getOrderInFile());
+        return newSibling;
+    }
+
     /**
      * Removes the LTContent lcnt from database and in-memory structure.
      *
@@ -0,0 +1,215 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.localizethat.model.jpa;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import net.localizethat.model.L10n;
+import net.localizethat.model.LTKeyValuePair;
+import net.localizethat.model.LocaleContent;
+import net.localizethat.model.TranslationStatus;
+import net.localizethat.model.TranslationSuggestion;
+
+/**
+ * This Singleton class keeps, for every locale, a translation memory built from the
+ * key-value pairs already translated: for every LTKeyValuePair of the locale, the text
+ * of its default locale twin and its own text.
+ *
+ * The memory of a locale is loaded the first time it is needed, with a single query,
+ * and then kept up to date by the code modifying translations through
+ * translationChanged. Only translations that are not empty, not marked as Keep
+ * Original and whose status is neither Untranslated, Modified nor Approximated are
+ * memorized (a fuzzy match is a guess, and it should not be suggested again as if it
+ * were a translation).
+ *
+ * Suggestions can be requested from several threads at the same time, like
+ * PreTranslateWorker does
+ *
+ * @author rpalomares
+ */
+public class TranslationMemory {
+    private static final TranslationMemory instance = new TranslationMemory();
+    private final Map<Integer, TranslationMemoryIndex> memories;
+    private final Map<Integer, Object> loadLocks;
+
+    /**
+     * Returns the singleton instance of this class
+     *
+     * @return The singleton instance of this class
+     */
+    public static TranslationMemory getInstance() {
+        return instance;
+    }
+
+    private TranslationMemory() {
+        memories = new ConcurrentHashMap<>(4);
+        loadLocks = new ConcurrentHashMap<>(4);
+    }
+
+    /**
+     * Finds translations for a text, using the memory of the given locale
+     * @param sourceText the text (in the default locale) to be translated
+     * @param l10n the target locale
+     * @param minSimilarity the minimum similarity (as a percentage) of fuzzy matches
+     * @param maxResults the maximum number of suggestions
+     * @param excluded a content whose own translation must not be suggested (usually,
+     * the one being translated), or null
+     * @param em the EntityManager used to load the memory
+     * @return a list of suggestions, exact matches first, maybe empty
+     * @see TranslationMemoryIndex#suggest(String, int, int, Integer)
+     */
+    public List<TranslationSuggestion> suggest(String sourceText, L10n l10n, int minSimilarity,
+            int maxResults, LocaleContent excluded, EntityManager em) {
+        if (sourceText == null || l10n == null) {
+            return Collections.emptyList();
+        }
+
+        TranslationMemoryIndex tmi = getMemory(l10n, em);
+        tmi.getLock().readLock().lock();
+        try {
+            return tmi.suggest(sourceText, minSimilarity, maxResults,
+                    (excluded == null) ? null : excluded.getId());
+        } finally {
+            tmi.getLock().readLock().unlock();
+        }
+    }
+
+    /**
+     * Loads the memory of a locale if not loaded yet, so it is ready when suggestions
+     * are requested. Intended to be called from a background task
+     * @param l10n the locale
+     * @param em the EntityManager used to load the memory
+     */
+    public void preload(L10n l10n, EntityManager em) {
+        if (l10n != null) {
+            getMemory(l10n, em);
+        }
+    }
+
+    /**
+     * Tells whether the memory of a locale is already loaded
+     * @param l10n the locale
+     * @return true if the memory is loaded, so suggest will not query the DB
+     */
+    public boolean isLoaded(L10n l10n) {
+        return l10n != null && l10n.getId() != null && memories.containsKey(l10n.getId());
+    }
+
+    /**
+     * Adds, updates or removes the translation of a key-value pair in the memory of its
+     * locale. It must be called once the change has been persisted (so it has an ID)
+     * @param trns the modified (non default locale) key-value pair
+     */
+    public void translationChanged(LTKeyValuePair trns) {
+        TranslationMemoryIndex tmi = (trns.getL10nId() == null) ? null
+                : memories.get(trns.getL10nId().getId());
+
+        // If the memory is not loaded, it will include the translation when loaded
+        if (tmi != null && trns.getId() != null) {
+            LocaleContent defTwin = trns.getDefLocaleTwin();
+
+            tmi.getLock().writeLock().lock();
+            try {
+                if (defTwin != null && isMemorizable(defTwin.getTextValue(), trns.getTextValue(),
+                        trns.getTrnsStatus(), trns.isKeepOriginal())) {
+                    tmi.put(trns.getId(), defTwin.getTextValue(), trns.getTextValue());
+                } else {
+                    tmi.remove(trns.getId());
+                }
+            } finally {
+                tmi.getLock().writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Discards the memory of a locale, so it will be reloaded the next time it is
+     * needed. Intended for operations changing many translations at once, like
+     * updating or importing products
+     * @param l10n the locale
+     */
+    public void invalidate(L10n l10n) {
+        if (l10n != null && l10n.getId() != null) {
+            memories.remove(l10n.getId());
+        }
+    }
+
+    /**
+     * Discards the memories of every locale
+     */
+    public void invalidateAll() {
+        memories.clear();
+    }
+
+    private TranslationMemoryIndex getMemory(L10n l10n, EntityManager em) {
+        TranslationMemoryIndex tmi = memories.get(l10n.getId());
+
+        if (tmi == null) {
+            tmi = loadMemory(l10n, em);
+        }
+        return tmi;
+    }
+
+    /**
+     * Loads the memory of a locale. Loads of the same locale are serialized, so callers
+     * sharing an EntityManager (like the parallel lookups of PreTranslateWorker) don't
+     * use it at the same time, and a memory is only loaded once; loading a locale does
+     * not block the callers asking for another one
+     * @param l10n the locale
+     * @param em the EntityManager used to load the memory
+     * @return the memory of the locale
+     */
+    private TranslationMemoryIndex loadMemory(L10n l10n, EntityManager em) {
+        Object loadLock = loadLocks.computeIfAbsent(l10n.getId(), id -> new Object());
+
+        synchronized (loadLock) {
+            TranslationMemoryIndex tmi = memories.get(l10n.getId());
+            if (tmi == null) {
+                tmi = readMemory(l10n, em);
+                memories.put(l10n.getId(), tmi);
+            }
+            return tmi;
+        }
+    }
+
+    /**
+     * Reads the translated pairs of a locale and builds its memory
+     * @param l10n the locale
+     * @param em the EntityManager used to read the pairs
+     * @return the memory of the locale
+     */
+    private static TranslationMemoryIndex readMemory(L10n l10n, EntityManager em) {
+        TypedQuery<Object[]> pairsQuery = em.createNamedQuery("LTKeyValuePair.findTranslationPairsByL10n",
+                Object[].class);
+        pairsQuery.setParameter("l10nid", l10n);
+        List<Object[]> pairs = pairsQuery.getResultList();
+
+        TranslationMemoryIndex tmi = new TranslationMemoryIndex(pairs.size());
+        for(Object[] pair : pairs) {
+            String sourceText = (String) pair[1];
+            String targetText = (String) pair[2];
+            if (isMemorizable(sourceText, targetText, (TranslationStatus) pair[3],
+                    Boolean.TRUE.equals(pair[4]))) {
+                tmi.put((Integer) pair[0], sourceText, targetText);
+            }
+        }
+        return tmi;
+    }
+
+    private static boolean isMemorizable(String sourceText, String targetText,
+            TranslationStatus trnsStatus, boolean keepOriginal) {
+        return sourceText != null && !sourceText.trim().isEmpty()
+                && targetText != null && !targetText.trim().isEmpty()
+                && !keepOriginal
+                && trnsStatus != TranslationStatus.Untranslated
+                && trnsStatus != TranslationStatus.Modified
+                && trnsStatus != TranslationStatus.Approximated;
+    }
+}
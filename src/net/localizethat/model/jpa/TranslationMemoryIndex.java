@@ -0,0 +1,533 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.localizethat.model.jpa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import net.localizethat.model.TranslationStatus;
+import net.localizethat.model.TranslationSuggestion;
+import net.localizethat.util.AhoCorasickMatcher;
+import net.localizethat.util.EditDistance;
+
+/**
+ * The translation memory of a single locale: a list of segments (pairs of original
+ * and translated texts) with two indexes over their original texts.
+ *
+ * Exact matches are looked up in a hash map keyed by the normalized original text
+ * (trimmed and with whitespace runs collapsed). Fuzzy matches are looked up in an
+ * inverted index of the char trigrams of the normalized, case folded original texts,
+ * with separate postings for every text length, so only texts with a length close
+ * enough to the one to be translated are ever visited. Candidates are taken from the
+ * postings of the rarest trigrams of the text to be translated, filtered by number of
+ * shared trigrams, and the best of them are re-ranked with a bounded edit distance.
+ *
+ * Segment numbers only grow, so postings are kept sorted. Replaced or removed
+ * segments are just marked as removed and skipped when found in the postings.
+ * Queries use per thread scratch space, so several of them can run at the same time,
+ * but not while the index is being modified. TranslationMemory guards the access to
+ * it with the read/write lock of the index
+ * @author rpalomares
+ */
+class TranslationMemoryIndex {
+    private static final int NGRAM_SIZE = 3;
+    // How many candidates, at most, are re-ranked with the edit distance
+    private static final int MAX_RERANKED_CANDIDATES = 64;
+    // How many candidates, at most, get all their shared trigrams counted
+    private static final int MAX_COUNTED_CANDIDATES = 512;
+    // How many postings, at most, are scanned looking for candidates
+    private static final int MAX_SCANNED_POSTINGS = 50000;
+    private final List<String> sources;
+    private final List<String> targets;
+    private int[] contentIds;
+    private int[] foldedLengths;
+    private final BitSet removed;
+    private final Map<Integer, Integer> segmentByContentId;
+    private final Map<String, Postings> exactIndex;
+    private final PostingsMap ngramIndex;
+    // Scratch space for queries, to avoid allocating an array as large as the memory
+    private final ThreadLocal<QueryScratch> queryScratch;
+    private final ReadWriteLock lock;
+
+    TranslationMemoryIndex(int size) {
+        int capacity = Math.max(16, (size * 4) / 3 + 1);
+
+        sources = new ArrayList<>(size);
+        targets = new ArrayList<>(size);
+        contentIds = new int[Math.max(16, size)];
+        foldedLengths = new int[Math.max(16, size)];
+        removed = new BitSet();
+        segmentByContentId = new HashMap<>(capacity);
+        exactIndex = new HashMap<>(capacity);
+        ngramIndex = new PostingsMap(Math.max(1024, size * 4));
+        queryScratch = new ThreadLocal<QueryScratch>() {
+            @Override
+            protected QueryScratch initialValue() {
+                return new QueryScratch();
+            }
+        };
+        lock = new ReentrantReadWriteLock();
+    }
+
+    /**
+     * Returns the lock guarding this index: the read lock for queries, the write lock
+     * for modifications
+     * @return the lock guarding this index
+     */
+    ReadWriteLock getLock() {
+        return lock;
+    }
+
+    /**
+     * Adds a segment, replacing the one previously added for the same content, if any
+     * @param contentId the ID of the translated content
+     * @param sourceText the original text
+     * @param targetText the translated text
+     */
+    void put(int contentId, String sourceText, String targetText) {
+        String normalized = normalize(sourceText);
+        String folded = AhoCorasickMatcher.foldCase(normalized);
+        Integer existing = segmentByContentId.get(contentId);
+
+        if (existing != null) {
+            if (sources.get(existing).equals(normalized) && targets.get(existing).equals(targetText)) {
+                return;
+            }
+            remove(contentId);
+        }
+
+        int segment = sources.size();
+        if (segment == contentIds.length) {
+            contentIds = Arrays.copyOf(contentIds, segment * 2);
+            foldedLengths = Arrays.copyOf(foldedLengths, segment * 2);
+        }
+        sources.add(normalized);
+        targets.add(targetText);
+        contentIds[segment] = contentId;
+        foldedLengths[segment] = folded.length();
+        segmentByContentId.put(contentId, segment);
+
+        Postings exact = exactIndex.get(normalized);
+        if (exact == null) {
+            exact = new Postings();
+            exactIndex.put(normalized, exact);
+        }
+        exact.add(segment);
+
+        for(int i = 0; i + NGRAM_SIZE <= folded.length(); i++) {
+            long key = ngramKey(folded, i, folded.length());
+            Postings p = ngramIndex.get(key);
+            if (p == null) {
+                p = new Postings();
+                ngramIndex.put(key, p);
+            }
+            // The same segment is added only once for every distinct trigram
+            if (p.size == 0 || p.data[p.size - 1] != segment) {
+                p.add(segment);
+            }
+        }
+    }
+
+    /**
+     * Removes the segment added for a content, if any
+     * @param contentId the ID of the translated content
+     */
+    void remove(int contentId) {
+        Integer segment = segmentByContentId.remove(contentId);
+
+        if (segment != null) {
+            removed.set(segment);
+            Postings exact = exactIndex.get(sources.get(segment));
+            if (exact != null) {
+                exact.removeValue(segment);
+                if (exact.size == 0) {
+                    exactIndex.remove(sources.get(segment));
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the translations of texts equal or similar to a given one. Exact matches
+     * go first, the most repeated translation first, followed by fuzzy matches in
+     * descending order of similarity. A translation appears only once in the list
+     * @param sourceText the text to be translated
+     * @param minSimilarity the minimum similarity (as a percentage) of fuzzy matches
+     * @param maxResults the maximum number of suggestions
+     * @param excludedContentId the ID of a content whose own translation must not be
+     * suggested (usually, the one being translated), or null
+     * @return a list of suggestions, maybe empty
+     */
+    List<TranslationSuggestion> suggest(String sourceText, int minSimilarity, int maxResults,
+            Integer excludedContentId) {
+        List<TranslationSuggestion> suggestions = new ArrayList<>(maxResults);
+        Map<String, Integer> exactTargets = new LinkedHashMap<>(8);
+        String normalized = normalize(sourceText);
+        int excludedSegment = -1;
+
+        if (normalized.isEmpty() || maxResults <= 0) {
+            return suggestions;
+        }
+        if (excludedContentId != null && segmentByContentId.containsKey(excludedContentId)) {
+            excludedSegment = segmentByContentId.get(excludedContentId);
+        }
+
+        // Exact matches, grouped by translation
+        Postings exact = exactIndex.get(normalized);
+        if (exact != null) {
+            for(int i = 0; i < exact.size; i++) {
+                if (exact.data[i] != excludedSegment) {
+                    String target = targets.get(exact.data[i]);
+                    Integer count = exactTargets.get(target);
+                    exactTargets.put(target, (count == null) ? 1 : count + 1);
+                }
+            }
+        }
+        List<Map.Entry<String, Integer>> sortedTargets = new ArrayList<>(exactTargets.entrySet());
+        Collections.sort(sortedTargets, new Comparator<Map.Entry<String, Integer>>() {
+            @Override
+            public int compare(Map.Entry<String, Integer> o1, Map.Entry<String, Integer> o2) {
+                return Integer.compare(o2.getValue(), o1.getValue());
+            }
+        });
+        TranslationStatus exactStatus = (sortedTargets.size() > 1)
+                ? TranslationStatus.Proposed : TranslationStatus.Copied;
+        for(Map.Entry<String, Integer> e : sortedTargets) {
+            if (suggestions.size() < maxResults) {
+                suggestions.add(new TranslationSuggestion(normalized, e.getKey(), 100,
+                        e.getValue(), exactStatus));
+            }
+        }
+
+        if (suggestions.size() < maxResults) {
+            addFuzzySuggestions(normalized, minSimilarity, maxResults, excludedSegment,
+                    exactTargets, suggestions);
+        }
+        return suggestions;
+    }
+
+    private void addFuzzySuggestions(String normalized, int minSimilarity, int maxResults,
+            int excludedSegment, Map<String, Integer> exactTargets,
+            List<TranslationSuggestion> suggestions) {
+        String folded = AhoCorasickMatcher.foldCase(normalized);
+        int length = folded.length();
+
+        if (length < NGRAM_SIZE) {
+            return;
+        }
+
+        // Every edit changes at most NGRAM_SIZE trigrams, so a text within maxDistance
+        // must share at least minShared of them. Any such text will be in the
+        // postings of the (ngramCount - minShared + 1) rarest trigrams
+        int maxDistance = (length * (100 - minSimilarity)) / 100;
+        int minLength = Math.max(NGRAM_SIZE, length - maxDistance);
+        int maxLength = length + maxDistance;
+
+        // Distinct trigrams of the text, with their postings for the lengths in range,
+        // sorted by ascending number of postings
+        Map<Long, QueryNgram> queryNgrams = new HashMap<>(length * 2);
+        for(int i = 0; i + NGRAM_SIZE <= length; i++) {
+            long ngram = ngramKey(folded, i, 0);
+            if (!queryNgrams.containsKey(ngram)) {
+                QueryNgram qn = new QueryNgram(maxLength - minLength + 1);
+                for(int l = minLength; l <= maxLength; l++) {
+                    Postings p = ngramIndex.get(ngram | lengthKey(l));
+                    qn.byLength[l - minLength] = p;
+                    qn.total += (p == null) ? 0 : p.size;
+                }
+                queryNgrams.put(ngram, qn);
+            }
+        }
+        List<QueryNgram> ngramList = new ArrayList<>(queryNgrams.values());
+        Collections.sort(ngramList, new Comparator<QueryNgram>() {
+            @Override
+            public int compare(QueryNgram o1, QueryNgram o2) {
+                return Integer.compare(o1.total, o2.total);
+            }
+        });
+
+        int ngramCount = ngramList.size();
+        int minShared = Math.max(1, ngramCount - NGRAM_SIZE * maxDistance);
+        int prefixLength = ngramCount - minShared + 1;
+
+        // Scan the postings of the rarest trigrams, up to prefixLength of them, but
+        // stopping earlier if too many postings are involved (for long texts with a
+        // low minimum similarity the bound above is weak). In that case, texts sharing
+        // only frequent trigrams with the one to be translated might be missed
+        QueryScratch qs = queryScratch.get();
+        if (qs.candidateCounts.length < sources.size()) {
+            qs.candidateCounts = new int[Math.max(sources.size(), qs.candidateCounts.length * 2)];
+        }
+        int[] candidateCounts = qs.candidateCounts;
+        Postings touchedSegments = qs.touchedSegments;
+        touchedSegments.size = 0;
+        int scanned = 0;
+        long scannedPostings = 0;
+        while (scanned < prefixLength && (scanned == 0
+                || scannedPostings + ngramList.get(scanned).total <= MAX_SCANNED_POSTINGS)) {
+            scannedPostings += ngramList.get(scanned).total;
+            for(Postings p : ngramList.get(scanned).byLength) {
+                for(int j = 0; p != null && j < p.size; j++) {
+                    int segment = p.data[j];
+                    if (candidateCounts[segment] == 0) {
+                        if (removed.get(segment) || segment == excludedSegment) {
+                            continue;
+                        }
+                        touchedSegments.add(segment);
+                    }
+                    candidateCounts[segment]++;
+                }
+            }
+            scanned++;
+        }
+
+        // Keep the candidates sharing more of the scanned trigrams, choosing the
+        // minimum count so there are no more than MAX_COUNTED_CANDIDATES
+        int minPartial = Math.max(1, minShared - (ngramCount - scanned));
+        int[] countHistogram = new int[scanned + 1];
+        for(int i = 0; i < touchedSegments.size; i++) {
+            countHistogram[candidateCounts[touchedSegments.data[i]]]++;
+        }
+        int selected = 0;
+        int threshold = scanned;
+        while (threshold > minPartial
+                && selected + countHistogram[threshold] <= MAX_COUNTED_CANDIDATES) {
+            selected += countHistogram[threshold];
+            threshold--;
+        }
+        if (selected + countHistogram[threshold] <= MAX_COUNTED_CANDIDATES) {
+            minPartial = threshold;
+        } else {
+            minPartial = threshold + 1;
+        }
+
+        // Count the remaining, more frequent, trigrams only for the selected candidates
+        List<int[]> candidates = new ArrayList<>(MAX_COUNTED_CANDIDATES);
+        for(int i = 0; i < touchedSegments.size; i++) {
+            int segment = touchedSegments.data[i];
+            int shared = candidateCounts[segment];
+            candidateCounts[segment] = 0;
+            if (shared < minPartial) {
+                continue;
+            }
+            for(int j = scanned; j < ngramCount && shared + ngramCount - j >= minShared; j++) {
+                Postings[] byLength = ngramList.get(j).byLength;
+                int l = foldedLengths[segment] - minLength;
+                if (l >= 0 && l < byLength.length && byLength[l] != null
+                        && byLength[l].contains(segment)) {
+                    shared++;
+                }
+            }
+            if (shared >= minShared) {
+                candidates.add(new int[] {segment, shared});
+            }
+        }
+        Collections.sort(candidates, new Comparator<int[]>() {
+            @Override
+            public int compare(int[] o1, int[] o2) {
+                return Integer.compare(o2[1], o1[1]);
+            }
+        });
+
+        // Re-rank the best candidates by edit distance
+        List<int[]> ranked = new ArrayList<>(Math.min(candidates.size(), MAX_RERANKED_CANDIDATES));
+        for(int i = 0; i < candidates.size() && i < MAX_RERANKED_CANDIDATES; i++) {
+            int segment = candidates.get(i)[0];
+            String candidateSource = sources.get(segment);
+            int longest = Math.max(normalized.length(), candidateSource.length());
+            int distance = EditDistance.bounded(normalized, candidateSource, maxDistance);
+            if (distance <= maxDistance) {
+                int similarity = 100 - (distance * 100 + longest - 1) / longest;
+                // An exact match would have been found in exactIndex
+                similarity = Math.min(similarity, 99);
+                if (similarity >= minSimilarity) {
+                    ranked.add(new int[] {segment, similarity});
+                }
+            }
+        }
+        Collections.sort(ranked, new Comparator<int[]>() {
+            @Override
+            public int compare(int[] o1, int[] o2) {
+                return Integer.compare(o2[1], o1[1]);
+            }
+        });
+
+        Map<String, TranslationSuggestion> fuzzyTargets = new HashMap<>(ranked.size() * 2);
+        for(int[] r : ranked) {
+            String target = targets.get(r[0]);
+            if (!exactTargets.containsKey(target) && !fuzzyTargets.containsKey(target)
+                    && suggestions.size() < maxResults) {
+                TranslationSuggestion ts = new TranslationSuggestion(sources.get(r[0]), target,
+                        r[1], 1, TranslationStatus.Approximated);
+                fuzzyTargets.put(target, ts);
+                suggestions.add(ts);
+            }
+        }
+    }
+
+    /**
+     * Packs the trigram at a given position of a text, and the length of the text,
+     * in a long
+     */
+    private static long ngramKey(String s, int pos, int length) {
+        return lengthKey(length) | ((long) s.charAt(pos) << 32)
+                | ((long) s.charAt(pos + 1) << 16) | s.charAt(pos + 2);
+    }
+
+    private static long lengthKey(int length) {
+        // Lengths beyond 32767 share postings; they are checked again when re-ranking
+        return (long) Math.min(length, Short.MAX_VALUE) << 48;
+    }
+
+    /**
+     * Trims a text and replaces every run of whitespace inside it by a single space
+     * @param text the text to normalize
+     * @return the normalized text
+     */
+    static String normalize(String text) {
+        StringBuilder sb = new StringBuilder(text.length());
+        boolean pendingSpace = false;
+
+        for(int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                pendingSpace = (sb.length() > 0);
+            } else {
+                if (pendingSpace) {
+                    sb.append(' ');
+                    pendingSpace = false;
+                }
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Working space reused by the queries run by a thread
+     */
+    private static class QueryScratch {
+        private int[] candidateCounts = new int[0];
+        private final Postings touchedSegments = new Postings();
+    }
+
+    /**
+     * A trigram of the text to be translated, with its postings for every length
+     * in range
+     */
+    private static class QueryNgram {
+        private final Postings[] byLength;
+        private int total;
+
+        QueryNgram(int lengths) {
+            byLength = new Postings[lengths];
+        }
+    }
+
+    /**
+     * A growable list of segment numbers, sorted in ascending order
+     */
+    private static class Postings {
+        private int[] data;
+        private int size;
+
+        Postings() {
+            data = new int[2];
+        }
+
+        void add(int segment) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = segment;
+        }
+
+        boolean contains(int segment) {
+            return Arrays.binarySearch(data, 0, size, segment) >= 0;
+        }
+
+        void removeValue(int segment) {
+            int i = Arrays.binarySearch(data, 0, size, segment);
+
+            if (i >= 0) {
+                System.arraycopy(data, i + 1, data, i, size - i - 1);
+                size--;
+            }
+        }
+    }
+
+    /**
+     * Open addressing hash map from packed trigram keys to postings, to avoid boxing
+     * a Long for every trigram of every segment
+     */
+    private static class PostingsMap {
+        private long[] keys;
+        private Postings[] values;
+        private int size;
+
+        PostingsMap(int expectedSize) {
+            int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2) - 1) << 1;
+
+            keys = new long[capacity];
+            values = new Postings[capacity];
+        }
+
+        Postings get(long key) {
+            int mask = keys.length - 1;
+
+            for(int i = hash(key) & mask; values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+            }
+            return null;
+        }
+
+        void put(long key, Postings value) {
+            int mask = keys.length - 1;
+            int i = hash(key) & mask;
+
+            while (values[i] != null && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (values[i] == null) {
+                size++;
+            }
+            keys[i] = key;
+            values[i] = value;
+            if (size * 2 > keys.length) {
+                resize();
+            }
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            Postings[] oldValues = values;
+
+            keys = new long[oldKeys.length * 2];
+            values = new Postings[oldValues.length * 2];
+            size = 0;
+            for(int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != null) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
@@ -0,0 +1,32 @@
+--
+-- This Source Code Form is subject to the terms of the Mozilla Public
+-- License, v. 2.0. If a copy of the MPL was not distributed with this
+-- file, You can obtain one at http://mozilla.org/MPL/2.0/.
+--
+
+--------------------------------------------------------------------------------
+-- SQL SCRIPT TO UPDATE DATABASE FROM 0.9.a1 TO 0.9.a2 IN A DERBY ENVIRONMENT --
+--------------------------------------------------------------------------------
+
+------------------------------------------------------------------------------
+-- ADD TABLE LFILEFINGERPRINT, KEEPING THE SIZE, LAST MODIFICATION TIME AND --
+-- MD5 HASH OF EVERY LOCALEFILE AS IT WAS IN THE DISK IN THE LAST UPDATE,   --
+-- SO UNCHANGED FILES CAN BE SKIPPED IN THE NEXT ONE                        --
+------------------------------------------------------------------------------
+
+CREATE TABLE "APP"."LFILEFINGERPRINT"
+(
+    ID int CONSTRAINT LFILEFINGERPRINT_PK PRIMARY KEY NOT NULL,
+    LFPFILESIZE bigint NOT NULL,
+    LFPLASTMODIFIED bigint NOT NULL,
+    LFPMD5HASH VARCHAR(32) NOT NULL,
+    LFPLASTUPDATE timestamp
+)
+;
+ALTER TABLE "APP"."LFILEFINGERPRINT"
+    ADD CONSTRAINT LOCALEFILE_FK
+    FOREIGN KEY (ID)
+    REFERENCES "APP"."LOCALEFILE"(ID) ON DELETE CASCADE
+;
+
+UPDATE "APP"."CONFIG" SET CONFIGVALUE = '0.9.a2' WHERE ID = 'DB_VERSION';
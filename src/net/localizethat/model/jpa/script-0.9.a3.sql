@@ -0,0 +1,20 @@
+--
+-- This Source Code Form is subject to the terms of the Mozilla Public
+-- License, v. 2.0. If a copy of the MPL was not distributed with this
+-- file, You can obtain one at http://mozilla.org/MPL/2.0/.
+--
+
+--------------------------------------------------------------------------------
+-- SQL SCRIPT TO UPDATE DATABASE FROM 0.9.a2 TO 0.9.a3 IN A DERBY ENVIRONMENT --
+--------------------------------------------------------------------------------
+
+------------------------------------------------------------------------------
+-- ADD COLUMN LFPCRC TO LFILEFINGERPRINT, KEEPING THE CRC-32 OF THE FILES   --
+-- READ FROM ARCHIVES (NULL FOR FILES IN DISK)                              --
+------------------------------------------------------------------------------
+
+ALTER TABLE "APP"."LFILEFINGERPRINT"
+    ADD COLUMN LFPCRC bigint
+;
+
+UPDATE "APP"."CONFIG" SET CONFIGVALUE = '0.9.a3' WHERE ID = 'DB_VERSION';
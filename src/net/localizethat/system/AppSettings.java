@@ -97,6 +97,20 @@ public class AppSettings {
     public static final String PREF_LOGGING_FILENAME = "logging.filename";
     public static final String PREF_LOGGING_LOGLEVEL = "logging.loglevel";
 
+    /**
+     * Keys for parser preferences. PREF_PARSER_DTD selects the DTD parser, either
+     * "tokenizer" (DTDTokenizerReadHelper) or "sax" (DTDReadHelper)
+     */
+    public static final String PREF_PARSER_DTD = "parser.dtd";
+    public static final String PARSER_DTD_TOKENIZER = "tokenizer";
+    public static final String PARSER_DTD_SAX = "sax";
+
+    /**
+     * Keys for translation memory preferences. PREF_TM_MIN_SIMILARITY is the minimum
+     * similarity, as a percentage, of the fuzzy matches suggested
+     */
+    public static final String PREF_TM_MIN_SIMILARITY = "tm.fuzzy.minsimilarity";
+
 
     private Properties prefValues;
     private String pathToPrefsFile;
@@ -328,6 +342,12 @@ public class AppSettings {
         defaultPrefs.setProperty(PREF_CONN_LABEL_CASESENSE, "false");
         defaultPrefs.setProperty(PREF_CONN_AKEYS_CASESENSE, "false");
         defaultPrefs.setProperty(PREF_CONN_CKEYS_CASESENSE, "false");
+
+        // Parser preferences
+        defaultPrefs.setProperty(PREF_PARSER_DTD, PARSER_DTD_TOKENIZER);
+
+        // Translation memory preferences
+        defaultPrefs.setProperty(PREF_TM_MIN_SIMILARITY, "70");
         
         return defaultPrefs;
     }
@@ -13,10 +13,10 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Date;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.persistence.EntityManager;
@@ -35,6 +35,7 @@ import net.localizethat.model.GlsEntry;
 import net.localizethat.model.GlsTranslation;
 import net.localizethat.model.L10n;
 import net.localizethat.model.PartOfSpeech;
+import net.localizethat.model.jpa.GlossaryTermIndex;
 import net.localizethat.util.DateToStringConverter;
 import net.localizethat.util.gui.JStatusBar;
 
@@ -51,6 +52,7 @@ public class CSVImporterWorker extends SwingWorker<List<String>, Void> {
     private final CSVImportSettings cis;
     private final CSVImportResults cir;
     private final JStatusBar statusBar;
+    private volatile boolean stopRequested;
 
     public CSVImporterWorker(CSVImportSettings cis, JStatusBar statusBar) {
         super();
@@ -61,7 +63,7 @@ public class CSVImporterWorker extends SwingWorker<List<String>, Void> {
                 .skipLines(cis.getSkippedLines()) // UI control counts from 1, file rows counts from 0
                 .create();
         this.testMode = cis.isTestMode();
-        this.em = Main.emf.createEntityManager();
+        this.em = Main.bulkEmf.createEntityManager();
         this.glossary = em.find(Glossary.class, cis.getGlossary().getId());
         this.cis = cis;
         this.statusBar = statusBar;
@@ -72,23 +74,31 @@ public class CSVImporterWorker extends SwingWorker<List<String>, Void> {
 
     @Override
     protected List<String> doInBackground() throws Exception {
-        List<GlsEntry> entriesPool;
+        Map<Object, GlsEntry> entriesPool;
+        List<GlsEntry> uncommittedEntries;
         String[] valuesFromCSVLine;
         boolean foundInDB;
         boolean foundInPool;
-        int indexPool;
-        int transactCount = 0;
+        GlsEntry pooledGe;
+        long startTime;
+        int rowsSinceCommit = 0;
         int processedLines;
 
-        entriesPool = new ArrayList<>(cis.getFileLines());
+        entriesPool = new HashMap<>((cis.getFileLines() * 4) / 3 + 1);
+        uncommittedEntries = new ArrayList<>(cis.getCommitChunkSize());
+        startTime = System.nanoTime();
         try (CSVReader csvr = csvEnvironment.reader(csvFile)) {
             processedLines = skipLines(cis, csvr);
+            if (!this.testMode && cis.getCheckpointLine() > processedLines) {
+                processedLines = skipToCheckpoint(cis.getCheckpointLine(), processedLines, csvr);
+                cir.setResumedFromLine(processedLines);
+            }
             this.setProgress(processedLines*100/cis.getFileLines());
 
             valuesFromCSVLine = csvr.readNext();
-            while (valuesFromCSVLine != null) {
+            while (valuesFromCSVLine != null && !isStopped()) {
                 processedLines++;
-                if (!this.testMode && transactCount == 0 && !em.isJoinedToTransaction()) {
+                if (!this.testMode && !em.isJoinedToTransaction()) {
                     em.getTransaction().begin();
                 }
                 // foundInDB = false;
@@ -107,29 +117,29 @@ public class CSVImporterWorker extends SwingWorker<List<String>, Void> {
                     GlsEntry builtGe = fillGlsEntry(valuesFromCSVLine);
                     GlsEntry ge = builtGe;
 
-                    foundInDB = (glossary.glsEntryExists(builtGe));
+                    GlsEntry existingGe = glossary.findGlsEntry(builtGe);
+                    foundInDB = (existingGe != null);
                     if (foundInDB) {
                         cir.incrementExistingEntries();
-                        ge = glossary.findGlsEntry(builtGe);
+                        ge = existingGe;
                     } else {
                         cir.incrementAddedEntries();
-                        indexPool = findGlsEntryInPool(entriesPool, ge);
-                        foundInPool = (indexPool != -1);
+                        pooledGe = entriesPool.get(ge.equivalenceKey());
+                        foundInPool = (pooledGe != null);
                         if (foundInPool) {
-                            ge = entriesPool.get(indexPool);
+                            ge = pooledGe;
                         }
                     }
 
                     if (!foundInDB) {
                         if (!this.testMode) {
-                            glossary.getGlsEntryCollection().add(ge);
+                            glossary.addGlsEntry(ge);
                             em.persist(ge);
-                            ge = glossary.findGlsEntry(ge);
-                            transactCount++;
+                            uncommittedEntries.add(ge);
                         }
 
                         if (!foundInPool) {
-                            entriesPool.add(ge);
+                            entriesPool.put(ge.equivalenceKey(), ge);
                         }
                     }
 
@@ -143,10 +153,9 @@ public class CSVImporterWorker extends SwingWorker<List<String>, Void> {
                             for(GlsTranslation gt : lstGT) {
                                 if (!ge.glsTranslationExists(gt)) {
                                     cir.incrementAddedTranslations();
-                                    ge.getGlsTranslationCollection().add(gt);
+                                    ge.addGlsTranslation(gt);
                                     if (!this.testMode) {
                                         em.persist(gt);
-                                        transactCount++;
                                     }
                                 } else {
                                     cir.incrementExistingTranslations();
@@ -161,17 +170,11 @@ public class CSVImporterWorker extends SwingWorker<List<String>, Void> {
                                 ge.setComment(builtGe.getComment());
                             }
 
-                            // Only if we have found the GlsEntry in DB and we're not in test mode,
-                            // we'd be doing one more change to the DB
-                            if (foundInDB && !this.testMode) {
-                                transactCount++;
-                            }
-
                             for(GlsTranslation builtGt : lstGT) {
                                 if (!ge.glsTranslationExists(builtGt)) {
                                     cir.incrementAddedTranslations();
                                     builtGt.setGlseId(ge);
-                                    ge.getGlsTranslationCollection().add(builtGt);
+                                    ge.addGlsTranslation(builtGt);
                                     if (!this.testMode) {
                                         em.persist(builtGt);
                                     }
@@ -185,9 +188,6 @@ public class CSVImporterWorker extends SwingWorker<List<String>, Void> {
                                     gt.setLastUpdate(builtGt.getLastUpdate());
                                     cir.incrementExistingTranslations();
                                 }
-                                if (!this.testMode) {
-                                    transactCount++;
-                                }
                             }
                             break;
                         case REPLACE:
@@ -198,34 +198,23 @@ public class CSVImporterWorker extends SwingWorker<List<String>, Void> {
                             }
                             ge.setLastUpdate(builtGe.getLastUpdate());
 
-                            // Only if we have found the GlsEntry in DB and we're not in test mode,
-                            // we'd be doing one more change to the DB
-                            if (foundInDB && !this.testMode) {
-                                transactCount++;
-                            }
-
                             // Remove existing translations
-                            Collection<GlsTranslation> geGlsTCollection = ge.getGlsTranslationCollection();
-                            Iterator<GlsTranslation> gtColIter = geGlsTCollection.iterator();
-                            while (gtColIter.hasNext()) {
-                                GlsTranslation gtToRemove = gtColIter.next();
-                                gtColIter.remove();
-                                if (foundInDB && !this.testMode) {
+                            if (foundInDB && !this.testMode) {
+                                for(GlsTranslation gtToRemove : ge.getGlsTranslationCollection()) {
                                     em.remove(gtToRemove);
-                                    transactCount++;
                                 }
                             }
+                            ge.clearGlsTranslations();
 
                             for(GlsTranslation gt : lstGT) {
                                 // The following condition will likely be true always, since we
                                 // have just wiped out the existing list
                                 if (!ge.glsTranslationExists(gt)) {
                                     gt.setGlseId(ge);
-                                    geGlsTCollection.add(gt);
+                                    ge.addGlsTranslation(gt);
                                     cir.incrementOverridenTranslations();
                                     if (!this.testMode) {
                                         em.persist(gt);
-                                        transactCount++;
                                     }
                                 }
                             }
@@ -237,36 +226,107 @@ public class CSVImporterWorker extends SwingWorker<List<String>, Void> {
                     }
                 }
 
-                if (transactCount > 50) {
-                    em.getTransaction().commit();
-                    transactCount = 0;
+                rowsSinceCommit++;
+                if (!this.testMode && rowsSinceCommit >= cis.getCommitChunkSize()) {
+                    commitChunk(uncommittedEntries, processedLines);
+                    rowsSinceCommit = 0;
                 }
 
                 valuesFromCSVLine = csvr.readNext();
                 this.setProgress(processedLines*100/cis.getFileLines());
             }
 
-            if (em.isJoinedToTransaction() && transactCount > 0) {
-                em.getTransaction().commit();
+            if (!this.testMode) {
+                // If stopped, the rows already processed are kept and the import can
+                // be resumed from the next one
+                commitChunk(uncommittedEntries, processedLines);
+                if (!isStopped()) {
+                    saveCheckpoint(0);
+                }
             }
         } catch (Exception e) {
             Logger.getLogger(CSVImporterWorker.class.getName()).log(Level.SEVERE, null, e);
             if (em.isJoinedToTransaction()) {
                 em.getTransaction().rollback();
+                // We don't know which entries made it to the DB
+                GlossaryTermIndex.getInstance().invalidate(glossary);
             }
         } finally {
             em.close();
+            cir.setElapsedMillis((System.nanoTime() - startTime) / 1000000L);
+            cir.setCheckpointLine(this.testMode ? 0 : cis.getCheckpointLine());
         }
         this.setProgress(100);
         return null;
     }
 
+    /**
+     * Asks the import to stop after the current row. Unlike cancel, the worker is not
+     * done until the rows already processed have been committed and the checkpoint
+     * saved, so done() (and the listeners of the state property) run after that
+     */
+    public void requestStop() {
+        stopRequested = true;
+    }
+
+    /**
+     * Tells whether requestStop has been called
+     * @return true if the import has been asked to stop
+     */
+    public boolean isStopRequested() {
+        return stopRequested;
+    }
+
+    private boolean isStopped() {
+        return stopRequested || isCancelled();
+    }
+
     @Override
     protected void done() {
+        Main.bulkOperationFinished();
         statusBar.logMessage(JStatusBar.LogMsgType.INFO, cir.getResultsShortMessage(),
                 cir.getResultsLongMessage());
     }
 
+    /**
+     * Commits the current transaction, if any, and records the CSV line up to which
+     * the file has been imported, so a failed or cancelled import can be resumed
+     * @param uncommittedEntries the list of entries created in the transaction
+     * @param processedLines the number of CSV lines read so far
+     */
+    private void commitChunk(List<GlsEntry> uncommittedEntries, int processedLines) {
+        if (em.isJoinedToTransaction()) {
+            em.getTransaction().commit();
+        }
+        updateTermIndex(uncommittedEntries);
+        saveCheckpoint(processedLines);
+    }
+
+    /**
+     * Stores the checkpoint in the import settings and saves them, so the dialog can
+     * offer to resume the import later
+     * @param checkpointLine the number of CSV lines already imported, or 0 if the
+     * import has finished
+     */
+    private void saveCheckpoint(int checkpointLine) {
+        cis.setCheckpointLine(checkpointLine);
+        cis.serializeToXML(CSVImportSettings.SAVED_SETTINGS_FILE);
+    }
+
+    /**
+     * Adds the entries created in the last committed transaction to the in-memory
+     * glossary term index
+     * @param committedEntries the list of created entries, that will be emptied
+     */
+    private void updateTermIndex(List<GlsEntry> committedEntries) {
+        GlossaryTermIndex termIndex = GlossaryTermIndex.getInstance();
+
+        for(GlsEntry ge : committedEntries) {
+            termIndex.entryChanged(ge);
+        }
+        committedEntries.clear();
+    }
+
     /**
      * Skips the calculated number of lines not relevant at the beginning of the CSV file
      * @param cis the settings object, that include the number of lines to skip and if there are headers
@@ -296,6 +356,24 @@ public class CSVImporterWorker extends SwingWorker<List<String>, Void> {
         return result;
     }
 
+    /**
+     * Skips the CSV lines already imported by a previous, unfinished import
+     * @param checkpointLine the number of lines imported by the previous import
+     * @param processedLines the number of lines already skipped
+     * @param csvr the CSVReader
+     * @return the number of skipped lines
+     * @throws IOException in case of an error while reading (EoF is dealt without raising exceptions)
+     */
+    private int skipToCheckpoint(int checkpointLine, int processedLines, CSVReader csvr)
+            throws IOException {
+        int lineCounter = processedLines;
+
+        while (lineCounter < checkpointLine && csvr.readNext() != null) {
+            lineCounter++;
+        }
+        return lineCounter;
+    }
+
     /**
      * Creates and fills a GlsEntry with the data received from the CSV file
      * @param valuesFromCSVLine an array of String objects with the field data for the CSV imported line
@@ -399,18 +477,11 @@ public class CSVImporterWorker extends SwingWorker<List<String>, Void> {
         return lstGT;
     }
 
-    private int findGlsEntryInPool(List<GlsEntry> entriesPool, GlsEntry ge) {
-        for(GlsEntry e : entriesPool) {
-            if ((e != null) && (e.getTerm().equals(ge.getTerm()))
-                    && (e.getPartOfSpeech() == ge.getPartOfSpeech())) {
-                return entriesPool.indexOf(e);
-            }
-        }
-        return -1;
-    }
-
     @XmlRootElement
     public static class CSVImportSettings {
+        public static final String SAVED_SETTINGS_FILE = "savedCis.xml";
+        public static final int DEFAULT_COMMIT_CHUNK_SIZE = 500;
+
         public static CSVImportSettings recreateFromXML(String fileName) {
             try {
                 JAXBContext jc = JAXBContext.newInstance (CSVImportSettings.class);
@@ -450,6 +521,8 @@ public class CSVImporterWorker extends SwingWorker<List<String>, Void> {
         private int trnsCommentColumn;
         private int trnsCreationDateColumn;
         private int trnsLastUpdateColumn;
+        private int commitChunkSize;
+        private int checkpointLine;
 
         public void serializeToXML(String fileName) {
             try {
@@ -555,6 +628,35 @@ public class CSVImporterWorker extends SwingWorker<List<String>, Void> {
             return trnsLastUpdateColumn;
         }
 
+        /**
+         * Returns the number of CSV rows imported in every transaction. Matches the
+         * JDBC batch size of the bulk persistence unit by default, so every commit
+         * sends full batches to the database
+         * @return the number of CSV rows per transaction
+         */
+        public int getCommitChunkSize() {
+            return (commitChunkSize > 0) ? commitChunkSize : DEFAULT_COMMIT_CHUNK_SIZE;
+        }
+
+        /**
+         * Returns the number of CSV lines (including the skipped ones and the headers)
+         * already imported by an unfinished import, or 0 if there is nothing to resume
+         * @return the number of CSV lines already imported
+         */
+        public int getCheckpointLine() {
+            return checkpointLine;
+        }
+
+        public CSVImportSettings setCommitChunkSize(int commitChunkSize) {
+            this.commitChunkSize = commitChunkSize;
+            return this;
+        }
+
+        public CSVImportSettings setCheckpointLine(int checkpointLine) {
+            this.checkpointLine = checkpointLine;
+            return this;
+        }
+
         public CSVImportSettings setFileToImport(File fileToImport) {
             this.fileToImport = fileToImport;
             return this;
@@ -704,6 +806,9 @@ public class CSVImporterWorker extends SwingWorker<List<String>, Void> {
         private int existingTranslations;
         private int failedTranslations;
         private int overridenTranslations;
+        private int resumedFromLine;
+        private int checkpointLine;
+        private long elapsedMillis;
 
         public CSVImportResults(File f, boolean testMode,
                 int skippedLines, String glossaryName) {
@@ -817,6 +922,34 @@ public class CSVImporterWorker extends SwingWorker<List<String>, Void> {
             return ++overridenTranslations;
         }
 
+        public int getResumedFromLine() {
+            return resumedFromLine;
+        }
+
+        public void setResumedFromLine(int resumedFromLine) {
+            this.resumedFromLine = resumedFromLine;
+        }
+
+        public int getCheckpointLine() {
+            return checkpointLine;
+        }
+
+        public void setCheckpointLine(int checkpointLine) {
+            this.checkpointLine = checkpointLine;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        public void setElapsedMillis(long elapsedMillis) {
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public long getRowsPerSecond() {
+            return (elapsedMillis > 0) ? (processedLines * 1000L) / elapsedMillis : processedLines;
+        }
+
         public String getResultsShortMessage() {
             StringBuilder sb = new StringBuilder(128);
 
@@ -830,7 +963,12 @@ public class CSVImporterWorker extends SwingWorker<List<String>, Void> {
             sb.append(getExistingTranslations());
             sb.append(" existed, ");
             sb.append(getFailedTranslations());
-            sb.append(" failed.");
+            sb.append(" failed (");
+            sb.append(getRowsPerSecond());
+            sb.append(" rows/s).");
+            if (checkpointLine > 0) {
+                sb.append(" Import not finished, it can be resumed.");
+            }
             return sb.toString();
         }
 
@@ -894,6 +1032,22 @@ public class CSVImporterWorker extends SwingWorker<List<String>, Void> {
             sb.append("Translations failed to import........: ");
             sb.append(getFailedTranslations()).append(System.lineSeparator());
 
+            sb.append("Elapsed time (ms)....................: ");
+            sb.append(elapsedMillis).append(System.lineSeparator());
+
+            sb.append("Rows per second......................: ");
+            sb.append(getRowsPerSecond()).append(System.lineSeparator());
+
+            if (resumedFromLine > 0) {
+                sb.append("Resumed after line...................: ");
+                sb.append(resumedFromLine).append(System.lineSeparator());
+            }
+
+            if (checkpointLine > 0) {
+                sb.append("Import not finished, lines imported..: ");
+                sb.append(checkpointLine).append(System.lineSeparator());
+            }
+
             sb.append(System.lineSeparator());
             return sb.toString();
         }
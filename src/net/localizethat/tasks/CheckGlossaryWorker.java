@@ -8,10 +8,8 @@ package net.localizethat.tasks;
 
 import java.awt.Color;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
-import java.util.StringTokenizer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.ImageIcon;
@@ -25,7 +23,7 @@ import net.localizethat.model.FailedEntry;
 import net.localizethat.model.GlsEntry;
 import net.localizethat.model.GlsTranslation;
 import net.localizethat.model.L10n;
-import net.localizethat.util.NoCaseStringComparator;
+import net.localizethat.util.AhoCorasickMatcher;
 
 /**
  * SwingWorker task to check two strings (one in the original language and the other in a
@@ -70,8 +68,7 @@ public class CheckGlossaryWorker
         int lastStringPos = 0; // Position in original text right after last word was found
         long start = System.currentTimeMillis();
         long finish;
-        List<String> translatedWords;
-        NoCaseStringComparator ncsComp = new NoCaseStringComparator();
+        List<AhoCorasickMatcher.Match> translatedTerms;
 
         // Define style for regular text (not failed or not a glossary entry)
         StyleConstants.setBold(regularStyle, false);
@@ -80,15 +77,14 @@ public class CheckGlossaryWorker
         StyleConstants.setBold(failedCheckStyle, true);
         StyleConstants.setForeground(failedCheckStyle, Color.red);
 
-        translatedWords = slicePhrase(translated);
-        Collections.sort(translatedWords, ncsComp);
+        translatedTerms = findTranslations(translated, failedEntriesList);
         doc = origStrPane.getStyledDocument();
         doc.remove(0, doc.getLength());
         docPos = 0;
 
-        // For each original word, we must search if any of the possible translations is in the
-        // list of translated words. If it is, we remove the "potentially failed entry" and the
-        // translated word; otherwise, the "potentially" failed entry turns into real failed
+        // For each original term, we must search if any of the possible translations is in the
+        // list of translated terms. If it is, we remove the "potentially failed entry" and the
+        // translated term; otherwise, the "potentially" failed entry turns into real failed
         // entry, being kept in the list
         Iterator<FailedEntry> feIterator = failedEntriesList.iterator();
         while (feIterator.hasNext()) {
@@ -105,14 +101,10 @@ public class CheckGlossaryWorker
                 for(GlsTranslation gt : ge.getGlsTranslationCollection()) {
                     // Check only if this translation belongs to the wanted L10n
                     if (gt.getL10nId().equals(locale)) {
-                        int index;
-                        if (fe.isMatchCase()) {
-                            index = Collections.binarySearch(translatedWords, gt.getValue());
-                        } else {
-                            index = Collections.binarySearch(translatedWords, gt.getValue(), ncsComp);
-                        }
+                        int index = indexOfTranslation(translatedTerms, gt.getValue(),
+                                fe.isMatchCase());
                         if (index >= 0) {
-                            translatedWords.remove(index);
+                            translatedTerms.remove(index);
                             translationFound = true;
                             break;
                         }
@@ -180,13 +172,43 @@ public class CheckGlossaryWorker
         origStrPane.repaint();
     }
 
-    private List<String> slicePhrase(String phrase) {
-        List<String> words = new ArrayList<>(5);
+    /**
+     * Finds in the translated text the occurrences of the translations (for the wanted
+     * L10n) of every potential failed entry, including those with several words
+     * @param translated the translated text
+     * @param feList the list of potential failed entries
+     * @return a list of occurrences, that may overlap
+     */
+    private List<AhoCorasickMatcher.Match> findTranslations(String translated,
+            List<FailedEntry> feList) {
+        List<String> translations = new ArrayList<>(feList.size() * 2);
 
-        StringTokenizer st = new StringTokenizer(phrase, " \\.,'");
-        while (st.hasMoreTokens()) {
-            words.add(st.nextToken());
+        for(FailedEntry fe : feList) {
+            for(GlsEntry ge : fe.getGlsEntriesList()) {
+                for(GlsTranslation gt : ge.getGlsTranslationCollection()) {
+                    if (gt.getL10nId().equals(locale)) {
+                        translations.add(gt.getValue());
+                    }
+                }
+            }
+        }
+        // Case sensitiveness is checked later, per failed entry
+        return new AhoCorasickMatcher(translations, false).findAll(translated);
+    }
+
+    private int indexOfTranslation(List<AhoCorasickMatcher.Match> translatedTerms, String value,
+            boolean matchCase) {
+        String foldedValue = matchCase ? value : AhoCorasickMatcher.foldCase(value);
+
+        for(int i = 0; i < translatedTerms.size(); i++) {
+            AhoCorasickMatcher.Match m = translatedTerms.get(i);
+            String found = translated.substring(m.getStart(), m.getEnd());
+
+            if (matchCase ? found.equals(value)
+                    : AhoCorasickMatcher.foldCase(found).equals(foldedValue)) {
+                return i;
+            }
         }
-        return words;
+        return -1;
     }
 }
@@ -5,57 +5,135 @@
  */
 package net.localizethat.tasks;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
 import javax.swing.JTextArea;
 import javax.swing.SwingWorker;
 import net.localizethat.Main;
+import net.localizethat.io.DirectoryReconciler;
+import net.localizethat.io.ExportBuffer;
 import net.localizethat.model.L10n;
 import net.localizethat.model.LocaleContainer;
+import net.localizethat.model.LocaleContentSnapshot;
 import net.localizethat.model.LocaleFile;
 import net.localizethat.model.LocalePath;
 import net.localizethat.model.ParseableFile;
 import net.localizethat.model.TextFile;
 import net.localizethat.model.jpa.JPAHelperBundle;
-import net.localizethat.model.jpa.LocaleContainerJPAHelper;
-import net.localizethat.model.jpa.LocaleFileJPAHelper;
 import net.localizethat.util.gui.JStatusBar;
 
 /**
  * SwingWorker task that performs an export process in the locale paths passed
- * in the constructor
+ * in the constructor.
+ *
+ * The folders of every path are traversed (and created) in this worker thread. For
+ * every folder, a snapshot of the contents of all its parseable files is read with a
+ * single query (see LocaleContainerJPAHelper.findExportSnapshot), so rendering them
+ * does not touch the entities; then the files are rendered and written concurrently
+ * in a pool of threads, each one with its own ExportBuffer, while the traversal goes
+ * on. The counters of a path are reported once all its files have been written.
+ *
+ * If skipUnchangedFiles is true, files are only written (atomically) if they differ
+ * from the ones in disk, so unchanged files keep their modification times.
+ *
+ * Instead of the locale paths in disk, the files can be exported into a zip archive
+ * (like an XPI language pack). Then nothing is written in the locale paths: the files
+ * are rendered concurrently as above, and added to the archive by this worker thread
+ * in the same order they were submitted. The entries of every path are placed below a
+ * folder given by the archive layout, where {locale} is replaced by the code of the
+ * target locale and {path} by the name of the target locale path directory; for
+ * instance, "chrome/{locale}/locale/{path}". If any file fails to export, the
+ * archive is discarded, so an existing one is never replaced by an incomplete one
  * @author rpalomares
  */
 public class ExportProductWorker extends SwingWorker<Void, String> {
+    private static final int ARCHIVE_BUFFER_SIZE = 256 * 1024;
     private final JTextArea feedbackArea;
     private final JStatusBar statusBar;
     private final Iterator<LocalePath> localePathIterator;
     private final EntityManager em;
     private final JPAHelperBundle jhb;
     private final boolean removeObsoleteFiles;
+    private final boolean skipUnchangedFiles;
+    private final ThreadLocal<ExportBuffer> exportBuffers;
+    private final Deque<FileExport> pendingExports;
+    private final Path archiveFile;
+    private final String archiveLayout;
+    private ZipOutputStream archive;
+    private boolean archiveFailed;
+    private ExecutorService exportPool;
     private final L10n targetLocale;
     private int filesExportedNew;
     private int filesExportedExisting;
     private int filesDeleted;
+    private int filesUnchanged;
+    private int filesFailed;
     private int foldersExportedNew;
     private int foldersExportedExisting;
     private int foldersDeleted;
 
     public ExportProductWorker(JTextArea feedbackArea, Iterator<LocalePath> localePathIterator,
-            boolean removeObsoleteFiles, L10n targetLocale) {
+            boolean removeObsoleteFiles, boolean skipUnchangedFiles, L10n targetLocale) {
+        this(feedbackArea, localePathIterator, removeObsoleteFiles, skipUnchangedFiles,
+                targetLocale, null, null);
+    }
+
+    /**
+     * Creates a worker that exports the files into a zip archive instead of the locale
+     * paths in disk
+     * @param feedbackArea the text area where progress is reported
+     * @param localePathIterator the original paths to export
+     * @param targetLocale the locale to export
+     * @param archiveFile the archive to create (replaced if it exists)
+     * @param archiveLayout the folder of the entries of every path inside the archive
+     */
+    public ExportProductWorker(JTextArea feedbackArea, Iterator<LocalePath> localePathIterator,
+            L10n targetLocale, Path archiveFile, String archiveLayout) {
+        this(feedbackArea, localePathIterator, false, false, targetLocale, archiveFile,
+                archiveLayout);
+    }
+
+    private ExportProductWorker(JTextArea feedbackArea, Iterator<LocalePath> localePathIterator,
+            boolean removeObsoleteFiles, boolean skipUnchangedFiles, L10n targetLocale,
+            Path archiveFile, String archiveLayout) {
         this.feedbackArea = feedbackArea;
         this.localePathIterator = localePathIterator;
         this.statusBar = Main.mainWindow.getStatusBar();
         this.em = Main.emf.createEntityManager();
         this.jhb = JPAHelperBundle.getInstance(em);
         this.removeObsoleteFiles = removeObsoleteFiles;
+        this.skipUnchangedFiles = skipUnchangedFiles;
+        this.exportBuffers = ThreadLocal.withInitial(ExportBuffer::new);
+        this.pendingExports = new ArrayDeque<>(256);
         this.targetLocale = targetLocale;
+        this.archiveFile = archiveFile;
+        this.archiveLayout = archiveLayout;
     }
 
     @Override
@@ -63,49 +141,94 @@ public class ExportProductWorker extends SwingWorker<Void, String> {
         int totalFilesExportedNew = 0;
         int totalFilesExportedExisting = 0;
         int totalFilesDeleted = 0;
+        int totalFilesUnchanged = 0;
+        int totalFilesFailed = 0;
         int totalFoldersExportedNew = 0;
         int totalFoldersExportedExisting = 0;
         int totalFoldersDeleted = 0;
 
-        em.getTransaction().begin();
-        while (localePathIterator.hasNext()) {
-            if (isCancelled()) {
-                break;
+        Path tempArchive = null;
+        try {
+            if (archiveFile != null) {
+                try {
+                    tempArchive = ExportBuffer.createTempFileFor(archiveFile);
+                    archive = new ZipOutputStream(new BufferedOutputStream(
+                            Files.newOutputStream(tempArchive), ARCHIVE_BUFFER_SIZE));
+                } catch (IOException ex) {
+                    Logger.getLogger(ExportProductWorker.class.getName()).log(Level.SEVERE, null, ex);
+                    publish("Error: " + archiveFile + " could not be created");
+                    if (tempArchive != null) {
+                        Files.deleteIfExists(tempArchive);
+                    }
+                    return null;
+                }
             }
-            LocalePath lp = localePathIterator.next();
 
-            publish("Processing " + lp.getFilePath());
+            exportPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                    (Runnable r) -> {
+                        // Don't keep the application alive if the pool is not shut down
+                        Thread t = new Thread(r, "ExportProductWorker pool");
+                        t.setDaemon(true);
+                        return t;
+                    });
+            em.getTransaction().begin();
+            while (localePathIterator.hasNext()) {
+                if (isCancelled()) {
+                    break;
+                }
+                LocalePath lp = localePathIterator.next();
+
+                publish("Processing " + lp.getFilePath());
+
+                processPath(lp);
+                if (isCancelled()) {
+                    publish("Export process cancelled, work done until now can't be undone");
+                    if (em.isJoinedToTransaction()) {
+                        em.getTransaction().rollback();
+                    }
+                    break;
+                } else {
+                    totalFilesExportedNew += filesExportedNew;
+                    totalFilesExportedExisting += filesExportedExisting;
+                    totalFilesDeleted += filesDeleted;
+                    totalFilesUnchanged += filesUnchanged;
+                    totalFilesFailed += filesFailed;
+                    totalFoldersExportedNew += foldersExportedNew;
+                    totalFoldersExportedExisting += foldersExportedExisting;
+                    totalFoldersDeleted += foldersDeleted;
 
-            processPath(lp);
-            if (isCancelled()) {
-                publish("Export process cancelled, work done until now can't be undone");
-                if (em.isJoinedToTransaction()) {
-                    em.getTransaction().rollback();
+                    publish("  Files... Added: " + filesExportedNew + "; Modified: " + filesExportedExisting
+                            + "; Deleted: " + filesDeleted + "; Unchanged: " + filesUnchanged
+                            + "; Failed: " + filesFailed);
+                    publish("  Folders... Added: " + foldersExportedNew + "; Modified: " + foldersExportedExisting
+                            + "; Deleted: " + foldersDeleted);
                 }
-                break;
-            } else {
-                totalFilesExportedNew += filesExportedNew;
-                totalFilesExportedExisting += filesExportedExisting;
-                totalFilesDeleted += filesDeleted;
-                totalFoldersExportedNew += foldersExportedNew;
-                totalFoldersExportedExisting += foldersExportedExisting;
-                totalFoldersDeleted += foldersDeleted;
-
-                publish("  Files... Added: " + filesExportedNew + "; Modified: " + filesExportedExisting
-                        + "; Deleted: " + filesDeleted);
-                publish("  Folders... Added: " + foldersExportedNew + "; Modified: " + foldersExportedExisting
-                        + "; Deleted: " + foldersDeleted);
             }
-        }
 
-        if (em.isJoinedToTransaction()) {
-            em.getTransaction().commit();
+            if (em.isJoinedToTransaction()) {
+                em.getTransaction().commit();
+            }
+            publish("Total Files... Added: " + totalFilesExportedNew + "; Modified: " + totalFilesExportedExisting
+                    + "; Deleted: " + totalFilesDeleted + "; Unchanged: " + totalFilesUnchanged
+                    + "; Failed: " + totalFilesFailed);
+            publish("Total Folders... Added: " + totalFoldersExportedNew + "; Modified: " + totalFoldersExportedExisting
+                    + "; Deleted: " + totalFoldersDeleted);
+        } catch (IOException | RuntimeException ex) {
+            Logger.getLogger(ExportProductWorker.class.getName()).log(Level.SEVERE, null, ex);
+            publish("Export failed: " + ex.getMessage());
+            archiveFailed = true;
+            if (em.isJoinedToTransaction()) {
+                em.getTransaction().rollback();
+            }
+        } finally {
+            if (exportPool != null) {
+                exportPool.shutdownNow();
+            }
+            if (archive != null) {
+                closeArchive(tempArchive);
+            }
+            em.close();
         }
-        em.close();
-        publish("Total Files... Added: " + totalFilesExportedNew + "; Modified: " + totalFilesExportedExisting
-                + "; Deleted: " + totalFilesDeleted);
-        publish("Total Folders... Added: " + totalFoldersExportedNew + "; Modified: " + totalFoldersExportedExisting
-                + "; Deleted: " + totalFoldersDeleted);
         return null;
     }
 
@@ -122,11 +245,41 @@ public class ExportProductWorker extends SwingWorker<Void, String> {
         statusBar.endProgress();
     }
 
+    /**
+     * Closes the archive and moves it to its final location, unless the export has
+     * been cancelled or has failed to write it
+     * @param tempArchive the temporary file where the archive has been written
+     */
+    private void closeArchive(Path tempArchive) {
+        try {
+            archive.close();
+            if (isCancelled() || archiveFailed) {
+                Files.deleteIfExists(tempArchive);
+                if (archiveFailed) {
+                    publish("Error: " + archiveFile + " could not be written");
+                }
+                return;
+            }
+            try {
+                Files.move(tempArchive, archiveFile, StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tempArchive, archiveFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            publish("Archive written to " + archiveFile);
+        } catch (IOException ex) {
+            Logger.getLogger(ExportProductWorker.class.getName()).log(Level.SEVERE, null, ex);
+            publish("Error: " + archiveFile + " could not be written");
+        }
+    }
+
     private void processPath(LocalePath lp) {
         // Initialize the counters for each path
         filesExportedNew = 0;
         filesExportedExisting = 0;
         filesDeleted = 0;
+        filesUnchanged = 0;
+        filesFailed = 0;
         foldersExportedNew = 0;
         foldersExportedExisting = 0;
         foldersDeleted = 0;
@@ -137,17 +290,19 @@ public class ExportProductWorker extends SwingWorker<Void, String> {
                 LocalePath.class);
             lpQuery.setParameter("localecontainer", lc);
             LocalePath targetLp = lpQuery.getSingleResult();
-            processContainer(targetLp.getFilePath(), lc);
+            if (archive != null) {
+                processArchiveContainer(archiveFolder(targetLp), lc);
+            } else {
+                processContainer(targetLp.getFilePath(), lc);
+            }
+            collectExports(true);
         } else {
             publish("There is no content for " + targetLocale.getCode());
         }
     }
 
     private void processContainer(String currentPath, LocaleContainer lc) {
-        File curDir = new File(currentPath);
-        File[] childFiles = curDir.listFiles();
-        LocaleContainerJPAHelper lcHelper = jhb.getLocaleContainerJPAHelper();
-        LocaleFileJPAHelper lfHelper = jhb.getLocaleFileJPAHelper();
+        DirectoryReconciler dr;
 
         if (isCancelled()) {
             return;
@@ -155,106 +310,283 @@ public class ExportProductWorker extends SwingWorker<Void, String> {
         
         publish("    Processing " + currentPath);
 
+        try {
+            dr = DirectoryReconciler.reconcile(Paths.get(currentPath), lc, true);
+        } catch (IOException ex) {
+            Logger.getLogger(ExportProductWorker.class.getName()).log(Level.SEVERE, null, ex);
+            publish("Error: " + currentPath + " could not be read");
+            return;
+        }
+
         /*
-         * Traverse LocaleContainer list, comparing the list with existing
-         * folders in disk, to end with a list of obsolete folders, in
-         * case the user has checked to remove them
+         * Traverse LocaleContainer list, creating the folders missing in disk;
+         * the folders in disk not matched by any LocaleContainer are obsolete,
+         * and they will be removed if the user has checked to do so
          */
         for(LocaleContainer lcChild : lc.getChildren()) {
-            File f = new File(currentPath + "/" + lcChild.getName());
-            
-            if (!f.exists()) {
-                f.mkdirs();
-            } else {
-                if (!f.isDirectory()) {
-                    publish("Error: " + currentPath + "/" + lcChild.getName()
-                            + " exists but it is not a directory");
-                    return;
+            BasicFileAttributes attrs = dr.getAttributes(lcChild.getName());
+
+            if (attrs == null) {
+                if (new File(currentPath + "/" + lcChild.getName()).mkdirs()) {
+                    foldersExportedNew++;
                 }
-                f = fileExistsInArray(childFiles, f.getName());
-                removeFileFromArray(childFiles, f);
+            } else if (!attrs.isDirectory()) {
+                publish("Error: " + currentPath + "/" + lcChild.getName()
+                        + " exists but it is not a directory");
+                return;
             }
             processContainer(currentPath + "/" + lcChild.getName(), lcChild);
         }
         
         /*
-         * Traverse LocaleFile list, comparing the list with existing files
-         * in disk, to end with a list of obsolete files, in
-         * case the user has checked to remove them
+         * Traverse LocaleFile list, exporting them; the files in disk not
+         * matched by any LocaleFile are obsolete, and they will be removed if
+         * the user has checked to do so
          */
+        List<FileExport> fileExports = new ArrayList<>(lc.getFileChildren().size());
+        boolean hasParseableFiles = false;
         for(LocaleFile lfChild : lc.getFileChildren()) {
-            File f = new File(currentPath + "/" + lfChild.getName());
-            
-            if (f.exists()) {
-                if (f.isDirectory()) {
-                    publish("Error: " + currentPath + "/" + lfChild.getName()
-                            + " exists but it is a directory");
-                    return;
-                }
-                f = fileExistsInArray(childFiles, f.getName());
-                removeFileFromArray(childFiles, f);
+            BasicFileAttributes attrs = dr.getAttributes(lfChild.getName());
+
+            if (attrs != null && attrs.isDirectory()) {
+                publish("Error: " + currentPath + "/" + lfChild.getName()
+                        + " exists but it is a directory");
+                return;
             }
             
             if (!lfChild.isDontExport()) {
-                processFile(currentPath + "/" + lfChild.getName(), lfChild);
+                fileExports.add(new FileExport(currentPath + "/" + lfChild.getName(), lfChild,
+                        attrs != null));
+                hasParseableFiles = hasParseableFiles || (lfChild instanceof ParseableFile);
             }
         }
+        submitFiles(lc, fileExports, hasParseableFiles);
         
         if (removeObsoleteFiles) {
-            for(int i = 0; i < childFiles.length; i++) {
-                File f = childFiles[i];
-                if (f != null) {
-                    if (!f.delete()) {
-                        publish("Error attempting to delete " +
-                                f.getAbsolutePath());
-                    }
-                    childFiles[i] = null;
+            for(Path p : dr.getUnmatchedEntries()) {
+                if (!p.toFile().delete()) {
+                    publish("Error attempting to delete " + p.toAbsolutePath());
+                } else if (isDirectoryEntry(dr, p)) {
+                    foldersDeleted++;
+                } else {
+                    filesDeleted++;
                 }
             }
         }
     }
 
-    private boolean processFile(String filePath, LocaleFile lf) {
-        boolean result = false;
+    private static boolean isDirectoryEntry(DirectoryReconciler dr, Path p) {
+        BasicFileAttributes attrs = dr.getAttributes(p.getFileName().toString());
+        return attrs != null && attrs.isDirectory();
+    }
 
-        File exportedFile = new File(filePath);
+    /**
+     * Returns the folder inside the archive for the files of a locale path
+     * @param targetLp the target locale path
+     * @return the folder, without leading or trailing slashes
+     */
+    private String archiveFolder(LocalePath targetLp) {
+        Path dir = Paths.get(targetLp.getFilePath()).getFileName();
+        String folder = archiveLayout.replace("{locale}", targetLocale.getCode())
+                .replace("{path}", (dir == null) ? "" : dir.toString());
+        return folder.replaceAll("/+", "/").replaceAll("^/|/$", "");
+    }
 
-        try {
-            if (lf instanceof ParseableFile) {
-                ParseableFile plf = (ParseableFile) lf;
-                result = plf.exportToFile(exportedFile);
-            } else if (lf instanceof TextFile) {
-                ((TextFile) lf).exportToFile(exportedFile);
+    /**
+     * Like processContainer, but adding the files to the archive
+     * @param currentFolder the folder of lc inside the archive
+     * @param lc the LocaleContainer to export
+     */
+    private void processArchiveContainer(String currentFolder, LocaleContainer lc) {
+        String prefix = currentFolder.isEmpty() ? "" : currentFolder + "/";
+
+        if (isCancelled()) {
+            return;
+        }
+
+        publish("    Processing " + prefix);
+
+        for(LocaleContainer lcChild : lc.getChildren()) {
+            processArchiveContainer(prefix + lcChild.getName(), lcChild);
+        }
+
+        List<FileExport> fileExports = new ArrayList<>(lc.getFileChildren().size());
+        boolean hasParseableFiles = false;
+        for(LocaleFile lfChild : lc.getFileChildren()) {
+            if (!lfChild.isDontExport()) {
+                fileExports.add(new FileExport(prefix + lfChild.getName(), lfChild, false));
+                hasParseableFiles = hasParseableFiles || (lfChild instanceof ParseableFile);
             }
-        } catch (IOException ex) {
-            Logger.getLogger(ExportProductWorker.class.getName()).log(Level.SEVERE, null, ex);
-            result = false;
         }
-        return result;
+        submitFiles(lc, fileExports, hasParseableFiles);
+        // Add to the archive the files already rendered, to keep memory usage low
+        collectExports(false);
     }
 
-    private File fileExistsInArray(File[] fileArray, String filename) {
-        File result = null;
+    /**
+     * Submits the files of a folder to the export pool, along with the snapshot of
+     * their contents. Rendering must not trigger any lazy load, as the EntityManager
+     * is only used from this thread
+     * @param lc the folder
+     * @param fileExports the files to export
+     * @param hasParseableFiles true if any of the files is a ParseableFile
+     */
+    private void submitFiles(LocaleContainer lc, List<FileExport> fileExports,
+            boolean hasParseableFiles) {
+        if (fileExports.isEmpty() || isCancelled()) {
+            return;
+        }
+
+        Map<Integer, List<LocaleContentSnapshot>> snapshot = hasParseableFiles
+                ? jhb.getLocaleContainerJPAHelper().findExportSnapshot(lc)
+                : Collections.<Integer, List<LocaleContentSnapshot>>emptyMap();
 
-        for(File f : fileArray) {
-            if ((f != null) && (f.getName().equals(filename))) {
-                result = f;
-                break;
+        for(FileExport fe : fileExports) {
+            if (fe.lf instanceof ParseableFile) {
+                List<LocaleContentSnapshot> contents = snapshot.get(fe.lf.getId());
+                fe.contents = (contents == null)
+                        ? Collections.<LocaleContentSnapshot>emptyList() : contents;
+            } else if (fe.lf instanceof TextFile) {
+                prefetch((TextFile) fe.lf);
             }
+            fe.outcome = exportPool.submit(() -> exportFile(fe));
+            pendingExports.add(fe);
         }
-        return result;
     }
 
-    private boolean removeFileFromArray(File[] fileArray, File fileToRemove) {
-        boolean result = false;
+    /**
+     * Makes sure everything read while rendering a TextFile is already loaded
+     * @param tf the file to be rendered
+     */
+    private void prefetch(TextFile tf) {
+        // TextFile ignores the name, and creates its only child if missing
+        if (tf.getChildByName(tf.getName()).isKeepOriginal()) {
+            ((TextFile) tf.getDefLocaleTwin()).getFileContent();
+        } else {
+            tf.getFileContent();
+        }
+    }
 
-        for(int i = 0; i < fileArray.length; i++) {
-            if ((fileArray[i] != null) && (fileArray[i].equals(fileToRemove))) {
-                fileArray[i] = null;
-                result = true;
+    /**
+     * Adds the outcomes of the exported files to the counters of the current path, in
+     * the order they were submitted, and adds them to the archive if exporting to one
+     * @param waitForAll if true, waits for every pending file; otherwise, stops at the
+     * first one not rendered yet
+     */
+    private void collectExports(boolean waitForAll) {
+        while (!pendingExports.isEmpty()
+                && (waitForAll || pendingExports.peekFirst().outcome.isDone())) {
+            FileExport fe = pendingExports.pollFirst();
+            try {
+                switch (fe.outcome.get()) {
+                    case NEW:
+                        if (archive != null) {
+                            addToArchive(fe);
+                        }
+                        filesExportedNew++;
+                        break;
+                    case MODIFIED:
+                        filesExportedExisting++;
+                        break;
+                    case UNCHANGED:
+                        filesUnchanged++;
+                        break;
+                    case SKIPPED:
+                        break;
+                    default:
+                        // The error has already been reported by exportFile
+                        filesFailed++;
+                        // An archive missing a file must not replace the existing one
+                        archiveFailed = archiveFailed || (archive != null);
+                        break;
+                }
+            } catch (InterruptedException | CancellationException ex) {
+                // The export has been cancelled
                 break;
+            } catch (ExecutionException | IOException ex) {
+                Logger.getLogger(ExportProductWorker.class.getName()).log(Level.SEVERE, null, ex);
+                publish("Error: " + fe.filePath + " could not be exported");
+                filesFailed++;
+                // An archive missing a file must not replace the existing one
+                archiveFailed = archiveFailed || (archive != null);
+            }
+        }
+        if (isCancelled()) {
+            for(FileExport fe : pendingExports) {
+                fe.outcome.cancel(false);
             }
+            pendingExports.clear();
+        }
+    }
+
+    private void addToArchive(FileExport fe) throws IOException {
+        archive.putNextEntry(new ZipEntry(fe.filePath));
+        archive.write(fe.rendered);
+        archive.closeEntry();
+        fe.rendered = null;
+    }
+
+    /**
+     * Renders a file and writes it to disk, or keeps the result to be added to the
+     * archive. Runs in the export pool
+     * @param fe the file to export
+     * @return the outcome of the export
+     */
+    private FileOutcome exportFile(FileExport fe) {
+        if (isCancelled()) {
+            return FileOutcome.SKIPPED;
+        }
+
+        ExportBuffer buffer = exportBuffers.get();
+        PrintWriter pw = buffer.reset();
+
+        try {
+            if (fe.lf instanceof ParseableFile) {
+                ((ParseableFile) fe.lf).exportTo(pw, fe.contents);
+            } else if (fe.lf instanceof TextFile) {
+                ((TextFile) fe.lf).exportTo(pw);
+            } else {
+                // Binary files (like images) have never been exported, their contents
+                // are not stored in the datamodel
+                return FileOutcome.SKIPPED;
+            }
+
+            if (archive != null) {
+                fe.rendered = buffer.toByteArray();
+            } else if (skipUnchangedFiles) {
+                if (!buffer.writeIfChanged(Paths.get(fe.filePath))) {
+                    return FileOutcome.UNCHANGED;
+                }
+            } else {
+                buffer.write(Paths.get(fe.filePath));
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(ExportProductWorker.class.getName()).log(Level.SEVERE, null, ex);
+            publish("Error: " + fe.filePath + " could not be written");
+            return FileOutcome.FAILED;
+        }
+        return fe.existing ? FileOutcome.MODIFIED : FileOutcome.NEW;
+    }
+
+    private enum FileOutcome {
+        NEW, MODIFIED, UNCHANGED, SKIPPED, FAILED
+    }
+
+    /**
+     * A file waiting to be exported
+     */
+    private static class FileExport {
+        private final String filePath;
+        private final LocaleFile lf;
+        private final boolean existing;
+        private List<LocaleContentSnapshot> contents;
+        private Future<FileOutcome> outcome;
+        private byte[] rendered;
+
+        FileExport(String filePath, LocaleFile lf, boolean existing) {
+            this.filePath = filePath;
+            this.lf = lf;
+            this.existing = existing;
         }
-        return result;
     }
 }
@@ -6,6 +6,9 @@
 package net.localizethat.tasks;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -17,6 +20,7 @@ import javax.swing.JButton;
 import javax.swing.JTextArea;
 import javax.swing.SwingWorker;
 import net.localizethat.Main;
+import net.localizethat.io.DirectoryReconciler;
 import net.localizethat.model.L10n;
 import net.localizethat.model.LocaleContainer;
 import net.localizethat.model.LocaleContent;
@@ -26,6 +30,7 @@ import net.localizethat.model.ParseableFile;
 import net.localizethat.model.TextFile;
 import net.localizethat.model.jpa.JPAHelperBundle;
 import net.localizethat.model.jpa.LocaleFileJPAHelper;
+import net.localizethat.model.jpa.TranslationMemory;
 import net.localizethat.util.gui.JStatusBar;
 
 /**
@@ -59,7 +64,7 @@ public class ImportProductWorker extends SwingWorker<List<LocaleContent>, String
         this.targetLocale = targetLocale;
         this.localePathIterator = localePathIterator;
         this.statusBar = Main.mainWindow.getStatusBar();
-        this.em = Main.emf.createEntityManager();
+        this.em = Main.bulkEmf.createEntityManager();
         this.newAndModifiedList = new ArrayList<>(10);
         this.jhb = JPAHelperBundle.getInstance(em);
     }
@@ -125,6 +130,9 @@ public class ImportProductWorker extends SwingWorker<List<LocaleContent>, String
     protected void done() {
         statusBar.endProgress();
         editChangesButton.setEnabled(true);
+        Main.bulkOperationFinished();
+        // Translations may have been added or changed in any locale
+        TranslationMemory.getInstance().invalidateAll();
     }
 
     private void processPath(LocalePath lp) {
@@ -148,39 +156,47 @@ public class ImportProductWorker extends SwingWorker<List<LocaleContent>, String
     }
 
     private void processContainer(String currentPath, LocaleContainer lc) {
+        DirectoryReconciler dr;
+
         if (isCancelled()) {
             return;
         }
 
         publish("    Processing " + currentPath);
 
+        try {
+            dr = DirectoryReconciler.reconcile(Paths.get(currentPath), lc, true);
+        } catch (IOException ex) {
+            Logger.getLogger(ImportProductWorker.class.getName()).log(Level.SEVERE, null, ex);
+            publish("Error: " + currentPath + " could not be read");
+            return;
+        }
+
         if (!em.isJoinedToTransaction()) {
             em.getTransaction().begin();
         }
         /*
-         * Traverse LocaleContainer list, comparing the list with existing
-         * folders in disk, to end with a list of obsolete folders, in
-         * case the user has checked to remove them
+         * Traverse the LocaleContainer list of the default locale; only those
+         * with a matching folder in disk can have something to import
          */
-        for(LocaleContainer lcChild : lc.getChildren()) {
+        for(LocaleContainer lcChild : dr.getKeptContainers()) {
             processContainer(currentPath + "/" + lcChild.getName(), lcChild);
         }
 
         /*
-         * Traverse LocaleFile list, comparing the list with existing files
-         * in disk, to end with a list of obsolete files, in
-         * case the user has checked to remove them
+         * Traverse the LocaleFile list of the default locale, importing those
+         * with a matching file in disk
          */
         for(LocaleFile lfChild : lc.getFileChildren()) {
-            File f = new File(currentPath + "/" + lfChild.getName());
+            BasicFileAttributes attrs = dr.getAttributes(lfChild.getName());
 
-            if (f.exists()) {
-                if (f.isDirectory()) {
+            if (attrs != null) {
+                if (attrs.isDirectory()) {
                     publish("Error: " + currentPath + "/" + lfChild.getName()
                             + " is a directory in disk but a regular file in default locale");
                     return;
                 } else {
-                    processFile(f, lfChild);
+                    processFile(dr.getDirectory().resolve(lfChild.getName()).toFile(), lfChild);
                 }
             }
         }
@@ -228,29 +244,4 @@ public class ImportProductWorker extends SwingWorker<List<LocaleContent>, String
             return false;
         }
     }
-
-    private File fileExistsInArray(File[] fileArray, String filename) {
-        File result = null;
-
-        for(File f : fileArray) {
-            if ((f != null) && (f.getName().equals(filename))) {
-                result = f;
-                break;
-            }
-        }
-        return result;
-    }
-
-    private boolean removeFileFromArray(File[] fileArray, File fileToRemove) {
-        boolean result = false;
-
-        for(int i = 0; i < fileArray.length; i++) {
-            if ((fileArray[i] != null) && (fileArray[i].equals(fileToRemove))) {
-                fileArray[i] = null;
-                result = true;
-                break;
-            }
-        }
-        return result;
-    }
 }
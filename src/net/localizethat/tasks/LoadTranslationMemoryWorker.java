@@ -0,0 +1,54 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package net.localizethat.tasks;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.persistence.EntityManager;
+import javax.swing.SwingWorker;
+import net.localizethat.Main;
+import net.localizethat.gui.components.ContentEditionPanel;
+import net.localizethat.model.L10n;
+import net.localizethat.model.jpa.TranslationMemory;
+
+/**
+ * SwingWorker task that loads the translation memory of a locale, so the content
+ * edition panel does not have to wait for it when looking for suggestions
+ * @author rpalomares
+ */
+public class LoadTranslationMemoryWorker extends SwingWorker<Void, Void> {
+    private final L10n l10n;
+    private final ContentEditionPanel panel;
+
+    public LoadTranslationMemoryWorker(L10n l10n, ContentEditionPanel panel) {
+        this.l10n = l10n;
+        this.panel = panel;
+    }
+
+    @Override
+    protected Void doInBackground() throws Exception {
+        EntityManager em = Main.emf.createEntityManager();
+
+        try {
+            TranslationMemory.getInstance().preload(l10n, em);
+        } catch (Exception e) {
+            Logger.getLogger(LoadTranslationMemoryWorker.class.getName()).log(Level.SEVERE, null, e);
+        } finally {
+            em.close();
+        }
+        return null;
+    }
+
+    @Override
+    protected void done() {
+        // Show the suggestions for the content being edited, if any. If loading has
+        // failed, don't refresh them, as that would try to load the memory again
+        if (TranslationMemory.getInstance().isLoaded(l10n)) {
+            panel.refreshSuggestions();
+        }
+    }
+}
@@ -0,0 +1,298 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package net.localizethat.tasks;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import javax.swing.JButton;
+import javax.swing.JTextArea;
+import javax.swing.SwingWorker;
+import net.localizethat.Main;
+import net.localizethat.model.L10n;
+import net.localizethat.model.LTKeyValuePair;
+import net.localizethat.model.LocaleContainer;
+import net.localizethat.model.LocaleContent;
+import net.localizethat.model.LocaleContentRef;
+import net.localizethat.model.LocalePath;
+import net.localizethat.model.TranslationStatus;
+import net.localizethat.model.TranslationSuggestion;
+import net.localizethat.model.jpa.JPAHelperBundle;
+import net.localizethat.model.jpa.TranslationMemory;
+import net.localizethat.system.AppSettings;
+import net.localizethat.util.gui.JStatusBar;
+
+/**
+ * SwingWorker task that pre-translates the untranslated key-value pairs of a locale
+ * using its translation memory: exact matches are written as Copied or Proposed and
+ * fuzzy ones as Approximated, as described in TranslationStatus.
+ *
+ * The contents to pre-translate are either a list of references (like the one returned
+ * by UpdateProductWorker, which may include both original and translated contents) or
+ * the original paths of some products. The lookups of a batch run in parallel in a
+ * ForkJoinPool while the results of the previous batch are written to the DB, with a
+ * single transaction per batch
+ * @author rpalomares
+ */
+public class PreTranslateWorker extends SwingWorker<Integer, String> {
+    // How many contents are looked up and written in every batch (and transaction)
+    private static final int BATCH_SIZE = 500;
+    private final JTextArea feedbackArea;
+    private final JButton preTranslateButton;
+    private final L10n targetLocale;
+    private final Collection<LocaleContentRef> contentRefs;
+    private final Iterator<LocalePath> originalPaths;
+    private final JStatusBar statusBar;
+    private final int minSimilarity;
+    private EntityManager em;
+    private EntityManager lookupEm;
+    private int copied;
+    private int proposed;
+    private int approximated;
+
+    /**
+     * Creates a worker that pre-translates the contents referenced in a list, or their
+     * target locale twins if they are original contents
+     * @param feedbackArea the text area where progress is reported
+     * @param preTranslateButton the button launching this task, enabled again when done
+     * @param targetLocale the locale to pre-translate
+     * @param contentRefs the references to the contents to pre-translate
+     */
+    public PreTranslateWorker(JTextArea feedbackArea, JButton preTranslateButton,
+            L10n targetLocale, Collection<LocaleContentRef> contentRefs) {
+        this(feedbackArea, preTranslateButton, targetLocale, contentRefs, null);
+    }
+
+    /**
+     * Creates a worker that pre-translates the target locale twins of every content
+     * inside some original paths
+     * @param feedbackArea the text area where progress is reported
+     * @param preTranslateButton the button launching this task, enabled again when done
+     * @param targetLocale the locale to pre-translate
+     * @param originalPaths the paths of the default locale of the products
+     */
+    public PreTranslateWorker(JTextArea feedbackArea, JButton preTranslateButton,
+            L10n targetLocale, Iterator<LocalePath> originalPaths) {
+        this(feedbackArea, preTranslateButton, targetLocale, null, originalPaths);
+    }
+
+    private PreTranslateWorker(JTextArea feedbackArea, JButton preTranslateButton,
+            L10n targetLocale, Collection<LocaleContentRef> contentRefs,
+            Iterator<LocalePath> originalPaths) {
+        this.feedbackArea = feedbackArea;
+        this.preTranslateButton = preTranslateButton;
+        this.targetLocale = targetLocale;
+        this.contentRefs = contentRefs;
+        this.originalPaths = originalPaths;
+        this.statusBar = Main.mainWindow.getStatusBar();
+        this.minSimilarity = Main.appSettings.getInteger(AppSettings.PREF_TM_MIN_SIMILARITY);
+    }
+
+    @Override
+    protected Integer doInBackground() {
+        long startTime = System.currentTimeMillis();
+        ForkJoinPool lookupPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        int written = 0;
+
+        em = Main.bulkEmf.createEntityManager();
+        // Read-only EntityManager for the lookups, which run while em writes the results
+        lookupEm = Main.emf.createEntityManager();
+        try {
+            publish("Loading translation memory for " + targetLocale.getCode());
+            TranslationMemory.getInstance().preload(targetLocale, lookupEm);
+
+            List<Map.Entry<Integer, String>> untranslated = new ArrayList<>(
+                    findUntranslated().entrySet());
+            publish("Untranslated strings found: " + untranslated.size());
+
+            Future<Map<Integer, TranslationSuggestion>> nextLookup = null;
+            if (!untranslated.isEmpty()) {
+                nextLookup = lookUp(lookupPool, untranslated.subList(0,
+                        Math.min(BATCH_SIZE, untranslated.size())));
+            }
+            for(int i = 0; nextLookup != null && !isCancelled(); i += BATCH_SIZE) {
+                Map<Integer, TranslationSuggestion> results = nextLookup.get();
+
+                // Look up the next batch while this one is being written
+                int nextStart = i + BATCH_SIZE;
+                nextLookup = (nextStart < untranslated.size())
+                        ? lookUp(lookupPool, untranslated.subList(nextStart,
+                                Math.min(nextStart + BATCH_SIZE, untranslated.size())))
+                        : null;
+                written += write(results);
+                publish("  Processed " + Math.min(nextStart, untranslated.size()) + " of "
+                        + untranslated.size() + "; pre-translated: " + written);
+            }
+
+            if (isCancelled()) {
+                publish("Pre-translation cancelled, strings already written are kept");
+            }
+            publish("Pre-translated " + written + " strings (Copied: " + copied
+                    + "; Proposed: " + proposed + "; Approximated: " + approximated + ") in "
+                    + (System.currentTimeMillis() - startTime) + " ms");
+        } catch (Exception e) {
+            Logger.getLogger(PreTranslateWorker.class.getName()).log(Level.SEVERE, null, e);
+            publish("Pre-translation failed: " + e.getMessage());
+            if (em.isJoinedToTransaction()) {
+                em.getTransaction().rollback();
+            }
+        } finally {
+            lookupPool.shutdownNow();
+            lookupEm.close();
+            em.close();
+        }
+        return written;
+    }
+
+    @Override
+    protected void process(List<String> messages) {
+        for(String message : messages) {
+            feedbackArea.append(message);
+            feedbackArea.append(System.getProperty("line.separator"));
+        }
+    }
+
+    @Override
+    protected void done() {
+        statusBar.endProgress();
+        preTranslateButton.setEnabled(true);
+        Main.bulkOperationFinished();
+    }
+
+    /**
+     * Finds the untranslated key-value pairs of the target locale
+     * @return a map from content ID to the text of its default locale twin
+     */
+    private Map<Integer, String> findUntranslated() {
+        // A content may be found twice, by its own ID and by the ID of its twin
+        Map<Integer, String> result = new LinkedHashMap<>(256);
+        Set<Integer> ids;
+        String namedQuery;
+
+        if (contentRefs != null) {
+            ids = new HashSet<>(contentRefs.size() * 2);
+            for(LocaleContentRef lcr : contentRefs) {
+                if (LTKeyValuePair.class.isAssignableFrom(lcr.getKind())) {
+                    ids.add(lcr.getId());
+                }
+            }
+            namedQuery = "LTKeyValuePair.findUntranslatedByIds";
+        } else {
+            List<LocaleContainer> roots = new ArrayList<>(16);
+            while (originalPaths.hasNext()) {
+                roots.add(originalPaths.next().getLocaleContainer());
+            }
+            ids = JPAHelperBundle.getInstance(em).getLocaleContainerJPAHelper()
+                    .findFileIdsInSubtrees(roots);
+            namedQuery = "LTKeyValuePair.findUntranslatedByDefParentIds";
+        }
+
+        List<Integer> idList = new ArrayList<>(ids);
+        for(int i = 0; i < idList.size() && !isCancelled(); i += BATCH_SIZE) {
+            TypedQuery<Object[]> untranslatedQuery = em.createNamedQuery(namedQuery, Object[].class);
+            untranslatedQuery.setParameter("l10nid", targetLocale);
+            untranslatedQuery.setParameter("ids",
+                    idList.subList(i, Math.min(i + BATCH_SIZE, idList.size())));
+            for(Object[] row : untranslatedQuery.getResultList()) {
+                result.put((Integer) row[0], (String) row[1]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Looks up the best suggestion for every content of a batch, in parallel
+     * @param lookupPool the pool where the lookups run
+     * @param batch pairs of content ID and text of its default locale twin
+     * @return a future map from content ID to its best suggestion, for the contents
+     * having one
+     */
+    private Future<Map<Integer, TranslationSuggestion>> lookUp(ForkJoinPool lookupPool,
+            List<Map.Entry<Integer, String>> batch) {
+        TranslationMemory tm = TranslationMemory.getInstance();
+
+        // The memory is usually loaded already, but it might have been invalidated
+        // meanwhile, in which case suggest reloads it using lookupEm
+        return lookupPool.submit(() -> batch.parallelStream()
+                .map(row -> {
+                    List<TranslationSuggestion> suggestions = tm.suggest(row.getValue(),
+                            targetLocale, minSimilarity, 1, null, lookupEm);
+                    return suggestions.isEmpty() ? null
+                            : new AbstractMap.SimpleImmutableEntry<>(row.getKey(), suggestions.get(0));
+                })
+                .filter(r -> r != null)
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)));
+    }
+
+    /**
+     * Writes the suggestions of a batch in a single transaction
+     * @param results the best suggestion for every content ID
+     * @return how many contents have been pre-translated
+     */
+    private int write(Map<Integer, TranslationSuggestion> results) {
+        List<LTKeyValuePair> changed = new ArrayList<>(results.size());
+        Date now = new Date();
+
+        if (results.isEmpty()) {
+            return 0;
+        }
+
+        em.getTransaction().begin();
+        TypedQuery<LocaleContent> contentQuery = em.createNamedQuery("LocaleContent.findByIds",
+                LocaleContent.class);
+        contentQuery.setParameter("ids", new ArrayList<>(results.keySet()));
+        for(LocaleContent lc : contentQuery.getResultList()) {
+            TranslationSuggestion ts = results.get(lc.getId());
+            // Skip the contents translated since they were found
+            if (ts == null || !(lc instanceof LTKeyValuePair)
+                    || (lc.getTextValue() != null && !lc.getTextValue().isEmpty())) {
+                continue;
+            }
+
+            LTKeyValuePair lkvp = (LTKeyValuePair) lc;
+            lkvp.setTextValue(ts.getTargetText());
+            lkvp.setTrnsStatus(ts.getTrnsStatus());
+            lkvp.setLastUpdate(now);
+            changed.add(lkvp);
+        }
+        em.getTransaction().commit();
+
+        for(LTKeyValuePair lkvp : changed) {
+            countStatus(lkvp.getTrnsStatus());
+            TranslationMemory.getInstance().translationChanged(lkvp);
+        }
+        em.clear();
+        return changed.size();
+    }
+
+    private void countStatus(TranslationStatus trnsStatus) {
+        switch (trnsStatus) {
+            case Copied:
+                copied++;
+                break;
+            case Proposed:
+                proposed++;
+                break;
+            default:
+                approximated++;
+        }
+    }
+}
@@ -0,0 +1,326 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package net.localizethat.tasks;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import javax.swing.JButton;
+import javax.swing.JTextArea;
+import javax.swing.SwingWorker;
+import net.localizethat.Main;
+import net.localizethat.model.L10n;
+import net.localizethat.model.LTKeyValuePair;
+import net.localizethat.model.LocaleContent;
+import net.localizethat.model.LocaleContentRef;
+import net.localizethat.model.LocalePath;
+import net.localizethat.model.Product;
+import net.localizethat.model.TranslationStatus;
+import net.localizethat.model.jpa.JPAHelperBundle;
+import net.localizethat.model.jpa.LocaleContainerJPAHelper;
+import net.localizethat.model.jpa.TranslationMemory;
+import net.localizethat.util.gui.JStatusBar;
+
+/**
+ * SwingWorker task that copies the translations of a locale from a product to other
+ * products, typically the same product in another channel, without reading any file.
+ *
+ * The key-value pairs of both products are joined on their file path (relative to the
+ * original paths of the product) and their key, with a hash map built from the source
+ * product. A translation is copied when the original text is identical in both
+ * products; if the target already has a different translation, it is a conflict, and
+ * it is overwritten only if replaceExistingValues is true. Everything else (keys not
+ * found in the source product, different original texts, translations already equal
+ * or not worth copying) is skipped. The changes are written in batches, with a single
+ * transaction per batch
+ * @author rpalomares
+ */
+public class PropagateTranslationsWorker extends SwingWorker<List<LocaleContentRef>, String> {
+    // How many file IDs are passed to every query, and how many contents are written
+    // in every transaction
+    private static final int BATCH_SIZE = 500;
+    private final JTextArea feedbackArea;
+    private final JButton editChangesButton;
+    private final boolean replaceExistingValues;
+    private final L10n targetLocale;
+    private final Product sourceProduct;
+    private final Collection<Product> targetProducts;
+    private final JStatusBar statusBar;
+    private final List<LocaleContentRef> newAndModifiedList;
+    private EntityManager em;
+    private LocaleContainerJPAHelper lcntHelper;
+    private int copied;
+    private int conflicting;
+    private int skipped;
+
+    public PropagateTranslationsWorker(JTextArea feedbackArea, JButton editChangesButton,
+            boolean replaceExistingValues, L10n targetLocale, Product sourceProduct,
+            Collection<Product> targetProducts) {
+        this.feedbackArea = feedbackArea;
+        this.editChangesButton = editChangesButton;
+        this.replaceExistingValues = replaceExistingValues;
+        this.targetLocale = targetLocale;
+        this.sourceProduct = sourceProduct;
+        this.targetProducts = targetProducts;
+        this.statusBar = Main.mainWindow.getStatusBar();
+        this.newAndModifiedList = new ArrayList<>(10);
+    }
+
+    @Override
+    protected List<LocaleContentRef> doInBackground() {
+        long startTime = System.currentTimeMillis();
+
+        em = Main.bulkEmf.createEntityManager();
+        lcntHelper = JPAHelperBundle.getInstance(em).getLocaleContainerJPAHelper();
+        try {
+            publish("Reading translations of " + sourceProduct.getName());
+            Map<String, SourceTranslation> sourceTranslations = readSourceTranslations();
+            publish("  Translations found: " + sourceTranslations.size());
+
+            for(Product p : targetProducts) {
+                if (isCancelled()) {
+                    break;
+                }
+                if (p.equals(sourceProduct)) {
+                    continue;
+                }
+
+                int totalCopied = copied;
+                int totalConflicting = conflicting;
+                int totalSkipped = skipped;
+                publish("Propagating to " + p.getName());
+                propagateTo(p, sourceTranslations);
+                publish("  Copied: " + (copied - totalCopied) + "; Conflicting: "
+                        + (conflicting - totalConflicting)
+                        + (replaceExistingValues ? " (overwritten)" : " (kept)")
+                        + "; Skipped: " + (skipped - totalSkipped));
+            }
+
+            if (isCancelled()) {
+                publish("Propagation cancelled, translations already written are kept");
+            }
+            publish("Total... Copied: " + copied + "; Conflicting: " + conflicting
+                    + "; Skipped: " + skipped + " (" + (System.currentTimeMillis() - startTime)
+                    + " ms)");
+        } catch (Exception e) {
+            Logger.getLogger(PropagateTranslationsWorker.class.getName()).log(Level.SEVERE, null, e);
+            publish("Propagation failed: " + e.getMessage());
+            if (em.isJoinedToTransaction()) {
+                em.getTransaction().rollback();
+            }
+        } finally {
+            em.close();
+        }
+        return newAndModifiedList;
+    }
+
+    @Override
+    protected void process(List<String> messages) {
+        for(String message : messages) {
+            feedbackArea.append(message);
+            feedbackArea.append(System.getProperty("line.separator"));
+        }
+    }
+
+    @Override
+    protected void done() {
+        statusBar.endProgress();
+        editChangesButton.setEnabled(true);
+        Main.bulkOperationFinished();
+        TranslationMemory.getInstance().invalidate(targetLocale);
+    }
+
+    /**
+     * Builds the hash side of the join: the translations of the source product worth
+     * copying, keyed by file path and key
+     * @return a map from joinKey to the translation
+     */
+    private Map<String, SourceTranslation> readSourceTranslations() {
+        Map<Integer, String> filePaths = lcntHelper.findFilePathsInSubtrees(rootPaths(sourceProduct));
+        Map<String, SourceTranslation> result = new HashMap<>(filePaths.size() * 32);
+
+        List<Integer> fileIds = new ArrayList<>(filePaths.keySet());
+        for(int i = 0; i < fileIds.size() && !isCancelled(); i += BATCH_SIZE) {
+            for(Object[] row : findTwinRows(fileIds.subList(i,
+                    Math.min(i + BATCH_SIZE, fileIds.size())))) {
+                SourceTranslation st = new SourceTranslation((String) row[2], (String) row[4],
+                        (TranslationStatus) row[5], Boolean.TRUE.equals(row[6]));
+                if (st.isWorthCopying()) {
+                    result.put(joinKey(filePaths.get((Integer) row[0]), (String) row[1]), st);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Probes the translations of a target product against the source ones, writing
+     * the changes every BATCH_SIZE contents
+     * @param p the target product
+     * @param sourceTranslations the hash side of the join
+     */
+    private void propagateTo(Product p, Map<String, SourceTranslation> sourceTranslations) {
+        Map<Integer, String> filePaths = lcntHelper.findFilePathsInSubtrees(rootPaths(p));
+        Map<Integer, SourceTranslation> pending = new HashMap<>(BATCH_SIZE * 2);
+
+        List<Integer> fileIds = new ArrayList<>(filePaths.keySet());
+        for(int i = 0; i < fileIds.size() && !isCancelled(); i += BATCH_SIZE) {
+            for(Object[] row : findTwinRows(fileIds.subList(i,
+                    Math.min(i + BATCH_SIZE, fileIds.size())))) {
+                SourceTranslation st = sourceTranslations.get(
+                        joinKey(filePaths.get((Integer) row[0]), (String) row[1]));
+                String targetText = (String) row[4];
+                boolean targetKeepOriginal = Boolean.TRUE.equals(row[6]);
+
+                if (st == null || !st.originalText.equals(row[2])
+                        || (st.text.equals(targetText) && st.keepOriginal == targetKeepOriginal)) {
+                    skipped++;
+                    continue;
+                }
+                if ((targetText != null && !targetText.isEmpty()) || targetKeepOriginal) {
+                    conflicting++;
+                    if (!replaceExistingValues) {
+                        continue;
+                    }
+                } else {
+                    copied++;
+                }
+
+                pending.put((Integer) row[3], st);
+                if (pending.size() >= BATCH_SIZE) {
+                    write(pending);
+                    pending.clear();
+                }
+            }
+        }
+        write(pending);
+    }
+
+    private List<Object[]> findTwinRows(List<Integer> fileIds) {
+        TypedQuery<Object[]> twinsQuery = em.createNamedQuery("LTKeyValuePair.findTwinRowsByDefParentIds",
+                Object[].class);
+        twinsQuery.setParameter("l10nid", targetLocale);
+        twinsQuery.setParameter("ids", fileIds);
+        return twinsQuery.getResultList();
+    }
+
+    /**
+     * Writes some translations in a single transaction
+     * @param translations the translations to write, by ID of the target content
+     */
+    private void write(Map<Integer, SourceTranslation> translations) {
+        Date now = new Date();
+
+        if (translations.isEmpty()) {
+            return;
+        }
+
+        em.getTransaction().begin();
+        TypedQuery<LocaleContent> contentQuery = em.createNamedQuery("LocaleContent.findByIds",
+                LocaleContent.class);
+        contentQuery.setParameter("ids", new ArrayList<>(translations.keySet()));
+        for(LocaleContent lc : contentQuery.getResultList()) {
+            SourceTranslation st = translations.get(lc.getId());
+            if (st != null && lc instanceof LTKeyValuePair) {
+                LTKeyValuePair lkvp = (LTKeyValuePair) lc;
+                lkvp.setTextValue(st.text);
+                lkvp.setTrnsStatus(st.trnsStatus);
+                lkvp.setKeepOriginal(st.keepOriginal);
+                lkvp.setLastUpdate(now);
+                newAndModifiedList.add(LocaleContentRef.of(lkvp));
+            }
+        }
+        em.getTransaction().commit();
+        em.clear();
+    }
+
+    /**
+     * Computes the paths used for the original paths of a product when joining files.
+     * If the product has a single original path, files are named relative to it;
+     * otherwise, relative to the directory containing all of them, so files with the
+     * same name in different original paths (like browser/locales/en-US and
+     * toolkit/locales/en-US) are told apart
+     * @param p the product
+     * @return a map from the ID of the root LocaleContainer of every original path of
+     * p to its path
+     */
+    private static Map<Integer, String> rootPaths(Product p) {
+        List<LocalePath> originalPaths = new ArrayList<>(4);
+        List<String[]> components = new ArrayList<>(4);
+        Map<Integer, String> result = new HashMap<>(8);
+
+        for(LocalePath lp : p.getPathList()) {
+            if (lp.getL10nId().equals(p.getL10nId()) && lp.getLocaleContainer() != null) {
+                originalPaths.add(lp);
+                components.add(lp.getFilePath().split("[/\\\\]+"));
+            }
+        }
+
+        int common = (components.size() == 1) ? components.get(0).length : 0;
+        if (components.size() > 1) {
+            boolean allEqual = true;
+            while (allEqual && common < components.get(0).length) {
+                for(String[] c : components) {
+                    allEqual = allEqual && common < c.length
+                            && c[common].equals(components.get(0)[common]);
+                }
+                if (allEqual) {
+                    common++;
+                }
+            }
+        }
+
+        for(int i = 0; i < originalPaths.size(); i++) {
+            String[] c = components.get(i);
+            StringBuilder sb = new StringBuilder(64);
+            for(int j = common; j < c.length; j++) {
+                sb.append((sb.length() == 0) ? "" : "/").append(c[j]);
+            }
+            result.put(originalPaths.get(i).getLocaleContainer().getId(), sb.toString());
+        }
+        return result;
+    }
+
+    private static String joinKey(String filePath, String key) {
+        return filePath + '\u0000' + key;
+    }
+
+    /**
+     * A translation read from the source product, along with its original text
+     */
+    private static class SourceTranslation {
+        private final String originalText;
+        private final String text;
+        private final TranslationStatus trnsStatus;
+        private final boolean keepOriginal;
+
+        SourceTranslation(String originalText, String text, TranslationStatus trnsStatus,
+                boolean keepOriginal) {
+            this.originalText = originalText;
+            this.text = (text == null) ? "" : text;
+            this.trnsStatus = trnsStatus;
+            this.keepOriginal = keepOriginal;
+        }
+
+        /**
+         * Untranslated strings are not worth copying, and neither are those whose
+         * original text has changed since they were translated
+         */
+        boolean isWorthCopying() {
+            return originalText != null && (!text.isEmpty() || keepOriginal)
+                    && trnsStatus != TranslationStatus.Untranslated
+                    && trnsStatus != TranslationStatus.Modified;
+        }
+    }
+}
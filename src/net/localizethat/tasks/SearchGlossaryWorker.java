@@ -9,18 +9,14 @@ package net.localizethat.tasks;
 import net.localizethat.model.FailedEntry;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Iterator;
 import java.util.List;
-import java.util.StringTokenizer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.persistence.EntityManager;
-import javax.persistence.TypedQuery;
 import javax.swing.SwingWorker;
 import net.localizethat.Main;
 import net.localizethat.model.Glossary;
-import net.localizethat.model.GlsEntry;
-import net.localizethat.util.NoCaseStringComparator;
+import net.localizethat.model.jpa.GlossaryTermIndex;
 
 /**
  * SwingWorker task to check the string in original language against terms of any number
@@ -60,50 +56,11 @@ public class SearchGlossaryWorker
 
     @Override
     protected List<FailedEntry> doInBackground() throws Exception {
-        int stringPos = 0; // Position in original text where next word is found
-        int lastStringPos = 0; // Position in original text right after last word was found
-        List<String> originalWords;
-        List<GlsEntry> entries;
-        NoCaseStringComparator ncsComp = new NoCaseStringComparator();
-
-        TypedQuery<GlsEntry> glseQuery = em.createNamedQuery("GlsEntry.findByGlsAndTerm",
-                GlsEntry.class);
-        TypedQuery<GlsEntry> glse2Query = em.createNamedQuery("GlsEntry.findByGlsAndTermLoCase",
-                GlsEntry.class);
-
-        originalWords = slicePhrase(original);
-
         try {
-        // Build a list of words from the original text present in glossaries
-        Iterator<String> origWordsIt = originalWords.iterator();
-        while (origWordsIt.hasNext()) {
-            String word = origWordsIt.next();
-            stringPos = original.indexOf(word, stringPos);
-            FailedEntry fe = new FailedEntry(word, stringPos, true, null);
-            
-            glseQuery.setParameter("glseterm", word);
-            glse2Query.setParameter("glseterm", word);
-            stringPos += word.length();
-
-            for(Glossary g : glsToCheckList) {
-                glseQuery.setParameter("glosid", g);
-                entries = glseQuery.getResultList();
-
-                if (entries.isEmpty()) {
-                    fe.setMatchCase(false);
-                    glse2Query.setParameter("glosid", g);
-                    entries = glse2Query.getResultList();
-                }
-                for(GlsEntry ge : entries) {
-                    fe.addGe(ge);
-                }
-            }
-
-            if (fe.getGlsEntriesList().size() > 0) {
-                // Just a "potential" failed entry at the moment
-                failedEntriesList.add(fe);
-            }
-        }
+            // Build a list of terms (of one or several words) from the original text
+            // present in glossaries, with a single pass over the text
+            failedEntriesList = GlossaryTermIndex.getInstance().findTerms(original,
+                    glsToCheckList, em);
         } catch (Exception ex) {
                 Logger.getLogger(SearchGlossaryWorker.class.getName()).log(
                         Level.WARNING, "Error during glossary search", ex);
@@ -111,14 +68,4 @@ public class SearchGlossaryWorker
         }
         return failedEntriesList;
     }
-
-    private List<String> slicePhrase(String phrase) {
-        List<String> words = new ArrayList<>(5);
-
-        StringTokenizer st = new StringTokenizer(phrase, " \\.,'");
-        while (st.hasMoreTokens()) {
-            words.add(st.nextToken());
-        }
-        return words;
-    }
 }
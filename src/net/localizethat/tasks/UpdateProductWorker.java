@@ -5,22 +5,42 @@
  */
 package net.localizethat.tasks;
 
-import java.io.File;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.LineNumberReader;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
 import javax.swing.JButton;
 import javax.swing.JTextArea;
 import javax.swing.SwingWorker;
 import net.localizethat.Main;
+import net.localizethat.io.ArchivePathResolver;
+import net.localizethat.io.DirectoryReconciler;
+import net.localizethat.io.ParseableFileAccess;
 import net.localizethat.model.L10n;
 import net.localizethat.model.LocaleContainer;
 import net.localizethat.model.LocaleContent;
+import net.localizethat.model.LocaleContentRef;
 import net.localizethat.model.LocaleFile;
+import net.localizethat.model.LocaleFileFingerprint;
 import net.localizethat.model.LocalePath;
 import net.localizethat.model.ParseableFile;
 import net.localizethat.model.TextFile;
@@ -28,86 +48,143 @@ import net.localizethat.model.jpa.JPAHelperBundle;
 import net.localizethat.model.jpa.LocaleContainerJPAHelper;
 import net.localizethat.model.jpa.LocaleContentJPAHelper;
 import net.localizethat.model.jpa.LocaleFileJPAHelper;
+import net.localizethat.model.jpa.TranslationMemory;
+import net.localizethat.util.BlobChecker;
 import net.localizethat.util.gui.JStatusBar;
 
 /**
  * SwingWorker task that performs an update process in the locale paths passed in the constructor
+ *
+ * The update is split in two stages: parseable files are read and parsed in parallel
+ * by a ForkJoinPool, and the results are fed through a bounded queue to the worker
+ * thread, which is the only one using the EntityManager and, so, the only one
+ * persisting changes.
+ *
+ * Unless a full rescan is forced, parseable files whose fingerprint (size, last
+ * modification time and MD5 hash) has not changed since the last update are not
+ * parsed at all.
+ *
+ * The files of a locale path can also be read straight from a zip archive (like
+ * omni.ja or a jar file), if its file path has the "archive!/entry" syntax (see
+ * ArchivePathResolver). In that case, entries are considered unchanged if their size
+ * and CRC-32, read from the central directory of the archive, have not changed.
+ *
+ * To keep memory use bounded regardless of the product size, the work is committed
+ * after every file and the persistence context is cleared every few files; the
+ * added and modified contents are reported as LocaleContentRef items instead of
+ * managed entities
  * @author rpalomares
  */
-public class UpdateProductWorker extends SwingWorker<List<LocaleContent>, String> {
+public class UpdateProductWorker extends SwingWorker<List<LocaleContentRef>, String> {
+    private static final int PARSED_QUEUE_CAPACITY = 64;
+    private static final long QUEUE_POLL_TIMEOUT_MS = 100;
+    private static final int FILES_PER_CONTEXT_CLEAR = 25;
     private final JTextArea feedbackArea;
     private final JButton editChangesButton;
     private final JStatusBar statusBar;
     private final L10n targetLocale;
+    private final boolean forceFullRescan;
     private final Iterator<LocalePath> localePathIterator;
-    private final List<LocaleContent> newAndModifiedList;
+    private final List<LocaleContentRef> newAndModifiedList;
     private final EntityManager em;
     private final JPAHelperBundle jhb;
+    private final BlockingQueue<ParsedFile> parsedQueue;
+    private final Map<Integer, LocaleFileFingerprint> fingerprints;
+    private final ArchivePathResolver pathResolver;
+    private ForkJoinPool parserPool;
+    private int pendingParsedFiles;
+    private int filesSinceContextClear;
     private int filesAdded;
     private int filesModified;
+    private int filesUnchanged;
     private int filesDeleted;
     private int foldersAdded;
     private int foldersModified;
     private int foldersDeleted;
 
     public UpdateProductWorker(JTextArea feedbackArea, JButton editChangesButton,
-            L10n targetLocale, Iterator<LocalePath> localePathIterator) {
+            L10n targetLocale, Iterator<LocalePath> localePathIterator, boolean forceFullRescan) {
         this.feedbackArea = feedbackArea;
         this.editChangesButton = editChangesButton;
         this.targetLocale = targetLocale;
+        this.forceFullRescan = forceFullRescan;
         this.localePathIterator = localePathIterator;
         this.statusBar = Main.mainWindow.getStatusBar();
-        this.em = Main.emf.createEntityManager();
+        this.em = Main.bulkEmf.createEntityManager();
         this.newAndModifiedList = new ArrayList<>(10);
         this.jhb = JPAHelperBundle.getInstance(em);
+        this.parsedQueue = new ArrayBlockingQueue<>(PARSED_QUEUE_CAPACITY);
+        this.fingerprints = new HashMap<>(1024);
+        this.pathResolver = new ArchivePathResolver();
     }
 
     @Override
-    protected List<LocaleContent> doInBackground() {
+    protected List<LocaleContentRef> doInBackground() {
         int totalFilesAdded = 0;
         int totalFilesModified = 0;
+        int totalFilesUnchanged = 0;
         int totalFilesDeleted = 0;
         int totalFoldersAdded = 0;
         int totalFoldersModified = 0;
         int totalFoldersDeleted = 0;
 
-        em.getTransaction().begin();
-        while (localePathIterator.hasNext()) {
-            if (isCancelled()) {
-                break;
-            }
-            LocalePath lp = localePathIterator.next();
+        parserPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try {
+            em.getTransaction().begin();
+            loadFingerprints();
+            while (localePathIterator.hasNext()) {
+                if (isCancelled()) {
+                    break;
+                }
+                LocalePath lp = localePathIterator.next();
 
-            publish("Processing " + lp.getFilePath());
+                publish("Processing " + lp.getFilePath());
 
-            processPath(lp);
-            if (isCancelled()) {
-                publish("Update process cancelled, work done until now can't be undone");
-                if (em.isJoinedToTransaction()) {
-                    em.getTransaction().rollback();
+                processPath(lp);
+                if (isCancelled()) {
+                    publish("Update process cancelled, work done until now can't be undone");
+                    if (em.isJoinedToTransaction()) {
+                        em.getTransaction().rollback();
+                    }
+                    break;
+                } else {
+                    totalFilesAdded += filesAdded;
+                    totalFilesModified += filesModified;
+                    totalFilesUnchanged += filesUnchanged;
+                    totalFilesDeleted += filesDeleted;
+                    totalFoldersAdded += foldersAdded;
+                    totalFoldersModified += foldersModified;
+                    totalFoldersDeleted += foldersDeleted;
+
+                    publish("  Files... Added: " + filesAdded + "; Modified: " + filesModified
+                            + "; Unchanged: " + filesUnchanged + "; Deleted: " + filesDeleted);
+                    publish("  Folders... Added: " + foldersAdded + "; Modified: " + foldersModified
+                            + "; Deleted: " + foldersDeleted);
                 }
-                break;
-            } else {
-                totalFilesAdded += filesAdded;
-                totalFilesModified += filesModified;
-                totalFilesDeleted += filesDeleted;
-                totalFoldersAdded += foldersAdded;
-                totalFoldersModified += foldersModified;
-                totalFoldersDeleted += foldersDeleted;
-
-                publish("  Files... Added: " + filesAdded + "; Modified: " + filesModified
-                        + "; Deleted: " + filesDeleted);
-                publish("  Folders... Added: " + foldersAdded + "; Modified: " + foldersModified
-                        + "; Deleted: " + foldersDeleted);
             }
-        }
 
-        if (em.isJoinedToTransaction()) {
-            em.getTransaction().commit();
+            if (em.isJoinedToTransaction()) {
+                em.getTransaction().commit();
+            }
+        } catch (RuntimeException ex) {
+            Logger.getLogger(UpdateProductWorker.class.getName()).log(Level.SEVERE, null, ex);
+            publish("Update failed: " + ex.getMessage());
+            if (em.isJoinedToTransaction()) {
+                em.getTransaction().rollback();
+            }
+        } finally {
+            // Stop the parsers that could still be running after a cancellation
+            parserPool.shutdownNow();
+            parsedQueue.clear();
+            try {
+                pathResolver.close();
+            } catch (IOException ex) {
+                Logger.getLogger(UpdateProductWorker.class.getName()).log(Level.SEVERE, null, ex);
+            }
+            em.close();
         }
-        em.close();
         publish("Total Files... Added: " + totalFilesAdded + "; Modified: " + totalFilesModified
-                + "; Deleted: " + totalFilesDeleted);
+                + "; Unchanged: " + totalFilesUnchanged + "; Deleted: " + totalFilesDeleted);
         publish("Total Folders... Added: " + totalFoldersAdded + "; Modified: " + totalFoldersModified
                 + "; Deleted: " + totalFoldersDeleted);
         return newAndModifiedList;
@@ -125,24 +202,42 @@ public class UpdateProductWorker extends SwingWorker<List<LocaleContent>, String
     protected void done() {
         statusBar.endProgress();
         editChangesButton.setEnabled(true);
+        Main.bulkOperationFinished();
+        // Translations may have been added or changed in any locale
+        TranslationMemory.getInstance().invalidateAll();
     }
 
     private void processPath(LocalePath lp) {
         // Initialize the counters for each path
         filesAdded = 0;
         filesModified = 0;
+        filesUnchanged = 0;
         filesDeleted = 0;
         foldersAdded = 0;
         foldersModified = 0;
         foldersDeleted = 0;
 
         LocaleContainer lc = lp.getLocaleContainer();
-        processContainer(lp.getFilePath(), lc);
+        try {
+            Path root = pathResolver.resolve(lp.getFilePath());
+            // Skip the path instead of taking it as empty, which would remove everything
+            if (!Files.isDirectory(root)) {
+                publish("    Error: " + lp.getFilePath() + " is not a directory, nothing has been updated");
+                return;
+            }
+            processContainer(root, lc);
+        } catch (IOException ex) {
+            Logger.getLogger(UpdateProductWorker.class.getName()).log(Level.SEVERE, null, ex);
+            publish("    Error: " + lp.getFilePath() + " could not be opened");
+            return;
+        }
+
+        // Wait for the files of this path still being parsed, so the counters are right
+        persistParsedFiles(true);
     }
 
-    private void processContainer(String currentPath, LocaleContainer lc) {
-        File curDir = new File(currentPath);
-        File[] childFiles = curDir.listFiles();
+    private void processContainer(Path currentPath, LocaleContainer lc) {
+        DirectoryReconciler dr;
         LocaleContainer managedLc;
         LocaleContainerJPAHelper lcHelper = jhb.getLocaleContainerJPAHelper();
         LocaleFileJPAHelper lfHelper = jhb.getLocaleFileJPAHelper();
@@ -158,7 +253,8 @@ public class UpdateProductWorker extends SwingWorker<List<LocaleContent>, String
                 em.getTransaction().begin();
             }
             managedLc = em.merge(lc);
-            for (File curFile : childFiles) {
+            dr = DirectoryReconciler.reconcile(currentPath, managedLc);
+            for (Path curDir : dr.getAddedDirectories()) {
                 if (isCancelled()) {
                     if (em.isJoinedToTransaction()) {
                         em.getTransaction().rollback();
@@ -166,34 +262,50 @@ public class UpdateProductWorker extends SwingWorker<List<LocaleContent>, String
                     return;
                 }
 
-                if (curFile.isDirectory()) {
-                    boolean exists = (lc.hasChild(curFile.getName(), true));
-                    if (!exists) {
-                        LocaleContainer newLc = new LocaleContainer(curFile.getName(), managedLc);
-                        newLc.setL10nId(managedLc.getL10nId());
-                        managedLc.addChild(newLc);
-                        foldersAdded++;
-                        em.persist(newLc);
-                        
-                        // Create the twin for the target locale
-                        lcHelper.createRecursively(newLc, targetLocale, false);
-                    }
-                } else {
-                    boolean exists = (managedLc.hasFileChild(curFile.getName(), true));
-                    if (!exists) {
-                        LocaleFile lf = LocaleFile.createFile(curFile.getName(), managedLc);
-                        managedLc.addFileChild(lf);
-                        filesAdded++;
-                        em.persist(lf);
-
-                        // Create the twin for the target locale
-                        lfHelper.createRecursively(lf, targetLocale, false);
+                LocaleContainer newLc = new LocaleContainer(curDir.getFileName().toString(), managedLc);
+                newLc.setL10nId(managedLc.getL10nId());
+                managedLc.addChild(newLc);
+                foldersAdded++;
+                em.persist(newLc);
+
+                // Create the twin for the target locale
+                lcHelper.createRecursively(newLc, targetLocale, false);
+            }
+
+            for (Path curFile : dr.getAddedFiles()) {
+                if (isCancelled()) {
+                    if (em.isJoinedToTransaction()) {
+                        em.getTransaction().rollback();
                     }
+                    return;
                 }
+
+                LocaleFile lf = LocaleFile.createFile(curFile.getFileName().toString(), managedLc);
+                managedLc.addFileChild(lf);
+                filesAdded++;
+                em.persist(lf);
+
+                // Create the twin for the target locale
+                lfHelper.createRecursively(lf, targetLocale, false);
             }
             if (em.isJoinedToTransaction()) {
                 em.getTransaction().commit();
             }
+        } catch (NoSuchFileException e) {
+            // Don't take a missing directory as empty, or its whole subtree (along with
+            // its translations) would be removed from the datamodel
+            publish("    Error: " + currentPath + " does not exist, nothing has been removed");
+            if (em.isJoinedToTransaction()) {
+                em.getTransaction().rollback();
+            }
+            return;
+        } catch (IOException e) {
+            Logger.getLogger(UpdateProductWorker.class.getName()).log(Level.SEVERE, null, e);
+            publish("    Error: " + currentPath + " could not be read");
+            if (em.isJoinedToTransaction()) {
+                em.getTransaction().rollback();
+            }
+            return;
         } catch (Exception e) {
             if (em.isJoinedToTransaction()) {
                 em.getTransaction().rollback();
@@ -212,27 +324,9 @@ public class UpdateProductWorker extends SwingWorker<List<LocaleContent>, String
         try {
             em.getTransaction().begin();
             managedLc = em.merge(managedLc);
-            for (Iterator<LocaleContainer> iterator = managedLc.getChildren().iterator(); iterator.hasNext();) {
-                if (isCancelled()) {
-                    if (em.isJoinedToTransaction()) {
-                        em.getTransaction().rollback();
-                    }
-                    return;
-                }
-
-                LocaleContainer lcChild = iterator.next();
-                lcChild = em.merge(lcChild);
-                File result = fileExistsInArray(childFiles, lcChild.getName());
-                boolean exists = (result != null && result.isDirectory());
-                if (!exists) {
-                    lcChild.setParent(null);
-                    iterator.remove();
-                    lcHelper.removeRecursively(lcChild);
-                    foldersDeleted++;
-                } else {
-                    // Remove the entry in the directory entries array to mark it as processed
-                    removeFileFromArray(childFiles, result);
-                }
+            // Whole subtrees may be gone, so we remove them with bulk deletes
+            if (lcHelper.removeInBulk(dr.getRemovedContainers())) {
+                foldersDeleted += dr.getRemovedContainers().size();
             }
             em.getTransaction().commit();
         } catch (NullPointerException e) {
@@ -255,7 +349,7 @@ public class UpdateProductWorker extends SwingWorker<List<LocaleContent>, String
         try {
             em.getTransaction().begin();
             managedLc = em.merge(managedLc);
-            for(Iterator<? extends LocaleFile> iterator = managedLc.getFileChildren().iterator(); iterator.hasNext();) {
+            for(LocaleFile lfChild : dr.getRemovedFiles()) {
                 if (isCancelled()) {
                     if (em.isJoinedToTransaction()) {
                         em.getTransaction().rollback();
@@ -263,18 +357,11 @@ public class UpdateProductWorker extends SwingWorker<List<LocaleContent>, String
                     return;
                 }
 
-                LocaleFile lfChild = iterator.next();
-                em.merge(lfChild);
-                File result = fileExistsInArray(childFiles, lfChild.getName());
-                boolean exists = (result != null && !result.isDirectory());
-                if (!exists) {
-                    lfChild.setParent(null);
-                    iterator.remove();
-                    lfHelper.removeRecursively(lfChild);
-                    filesDeleted++;
-                } else {
-                    removeFileFromArray(childFiles, result);
-                }
+                lfChild = em.merge(lfChild);
+                lfChild.setParent(null);
+                managedLc.removeFileChild(lfChild);
+                lfHelper.removeRecursively(lfChild);
+                filesDeleted++;
             }
             em.getTransaction().commit();
         } catch (NullPointerException e) {
@@ -298,9 +385,12 @@ public class UpdateProductWorker extends SwingWorker<List<LocaleContent>, String
 
         // Traverse the datamodel LocaleContainers (folders/dirs)
         for(LocaleContainer lcChild : managedLc.getChildren()) {
-            processContainer(currentPath + "/" + lcChild.getName(), lcChild);
+            processContainer(currentPath.resolve(lcChild.getName()), lcChild);
         }
 
+        // Persist whatever the parsers have finished so far, without waiting for them
+        persistParsedFiles(false);
+
         // Traverse the datamodel LocaleFiles (files)
         for(LocaleFile lfChild : managedLc.getFileChildren()) {
             if (isCancelled()) {
@@ -309,75 +399,347 @@ public class UpdateProductWorker extends SwingWorker<List<LocaleContent>, String
                 }
                 return;
             }
-            processFile(currentPath + "/" + lfChild.getName(), lfChild);
+            processFile(currentPath.resolve(lfChild.getName()), lfChild,
+                    dr.getAttributes(lfChild.getName()));
         }
     }
 
-    private boolean processFile(String filePath, LocaleFile lf) {
-        LocaleContentJPAHelper lcntHelper = jhb.getLocaleContentJPAHelper();
+    private boolean processFile(Path filePath, LocaleFile lf, BasicFileAttributes attrs) {
         boolean result = true;
 
         try {
             if (lf instanceof ParseableFile) {
-                ParseableFile pf = (ParseableFile) em.merge(lf);
-                newAndModifiedList.addAll(pf.update(this.em, lcntHelper));
-
-                for(LocaleContent lcnt : pf.getChildren()) {
-                    // If the original locale content is set to not be exported
-                    // we don't want to create sibling for it
-                    if ((!lcnt.isDontExport() && lcnt.getTwinByLocale(targetLocale) == null)) {
-                        // em.contains(entity) to know whether an entity is managed or not
-                        LocaleContent mergedLcnt = em.merge(lcnt);
-                        result = lcntHelper.createRecursively(mergedLcnt, targetLocale, false);
+                LocaleFileFingerprint lff = fingerprints.get(lf.getId());
+                // Skipping a file is only possible if the target locale twin already
+                // exists; otherwise, we need to parse it to create the target contents
+                boolean canSkip = !forceFullRescan && lff != null
+                        && lf.getTwinByLocale(targetLocale) != null;
+
+                if (canSkip) {
+                    if (attrs == null) {
+                        attrs = Files.readAttributes(filePath, BasicFileAttributes.class);
+                    }
+                    boolean unchanged = ArchivePathResolver.isArchiveEntry(filePath)
+                            ? lff.matchesArchiveEntry(attrs.size(), ArchivePathResolver.getCrc(filePath))
+                            : lff.matchesAttributes(attrs.size(), attrs.lastModifiedTime().toMillis());
+                    if (unchanged) {
+                        filesUnchanged++;
+                        return result;
                     }
                 }
-                if (em.isJoinedToTransaction()) {
-                    em.getTransaction().commit();
-                    em.getTransaction().begin();
-                }
+
+                // The parsing is done in parserPool; the result will be persisted
+                // (and counted) by persistParsedFiles()
+                submitParsing(filePath, lf.getId(), ((ParseableFile) lf).createFileAccess(),
+                        (canSkip) ? lff.getMd5Hash() : null);
+                return result;
             } else if (lf instanceof TextFile) {
                 if (!em.isJoinedToTransaction()) {
                     em.getTransaction().begin();
                 }
                 TextFile mergedLf = (TextFile) em.merge(lf);
-                newAndModifiedList.addAll(mergedLf.update(this.em));
-                if (em.isJoinedToTransaction()) {
-                    em.getTransaction().commit();
-                    em.getTransaction().begin();
-                }
+                commitFile(mergedLf.update(this.em, filePath));
             }
             filesModified++;
             return result;
-        } catch (ParseException ex) {
-            return false;
         } catch (Exception ex) {
             Logger.getLogger(UpdateProductWorker.class.getName()).log(Level.SEVERE, null, ex);
             return false;
         }
     }
 
-    private File fileExistsInArray(File[] fileArray, String filename) {
-        File result = null;
+    /**
+     * Sends a parseable file to the parser pool. The parsing task neither uses the
+     * EntityManager nor touches any entity (the ParseableFile is found again by its ID
+     * when persisting the result); it just reads the file in disk and leaves the result
+     * in parsedQueue, waiting if the queue is full (ie., if the worker thread can't
+     * persist as fast as the pool parses)
+     * @param filePath the path to the file in disk (or in an archive)
+     * @param fileId the ID of the ParseableFile in the datamodel
+     * @param fileAccess the parser for the file, not bound to any entity
+     * @param storedMd5Hash the MD5 hash of the file in the last update, or null if the
+     *                      file must be parsed anyway
+     */
+    private void submitParsing(final Path filePath, final Integer fileId,
+            final ParseableFileAccess fileAccess, final String storedMd5Hash) {
+        pendingParsedFiles++;
+        parserPool.execute(() -> {
+            ParsedFile parsedFile = new ParsedFile(filePath, fileId);
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(filePath, BasicFileAttributes.class);
+                byte[] fileBytes = Files.readAllBytes(filePath);
+                String md5Hash = BlobChecker.getMD5Hash(fileBytes);
+
+                parsedFile.setFingerprint(attrs.size(), attrs.lastModifiedTime().toMillis(), md5Hash,
+                        ArchivePathResolver.getCrc(filePath));
+                if (md5Hash.equals(storedMd5Hash)) {
+                    // Only the modification time has changed, no need to parse it
+                    parsedFile.setUnchanged(true);
+                } else {
+                    // Parse the bytes already read, instead of reading the file again
+                    parsedFile.setParsedContentList(fileAccess.parse(new LineNumberReader(
+                            new InputStreamReader(new ByteArrayInputStream(fileBytes)))));
+                }
+            } catch (IOException | ParseException | RuntimeException ex) {
+                parsedFile.setException(ex);
+            } catch (Error err) {
+                // Like an OutOfMemoryError on a huge file; report it, but let it go on
+                parsedFile.setException(err);
+                throw err;
+            } finally {
+                // Always hand the result over, or persistParsedFiles would wait forever
+                try {
+                    while (!parserPool.isShutdown()
+                            && !parsedQueue.offer(parsedFile, QUEUE_POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                        // Keep waiting for the worker thread to make room in the queue
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+    }
+
+    /**
+     * Takes the files already parsed by parserPool and persists them
+     * @param waitForAll if true, waits until every file sent to the pool has been persisted;
+     *                   if false, only persists those already parsed and returns
+     */
+    private void persistParsedFiles(boolean waitForAll) {
+        while (pendingParsedFiles > 0) {
+            if (isCancelled()) {
+                return;
+            }
+
+            ParsedFile parsedFile;
+            try {
+                parsedFile = (waitForAll)
+                        ? parsedQueue.poll(QUEUE_POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                        : parsedQueue.poll();
+            } catch (InterruptedException ex) {
+                // cancel(true) interrupts the worker thread
+                return;
+            }
+
+            if (parsedFile == null) {
+                if (waitForAll) {
+                    continue;
+                } else {
+                    return;
+                }
+            }
+            pendingParsedFiles--;
+            persistParsedFile(parsedFile);
+        }
+    }
+
+    private boolean persistParsedFile(ParsedFile parsedFile) {
+        LocaleContentJPAHelper lcntHelper = jhb.getLocaleContentJPAHelper();
+        boolean result = true;
+
+        if (parsedFile.isUnchanged()) {
+            // Save the new modification time, so next time we don't even read it
+            storeFingerprint(parsedFile);
+            commitFile();
+            filesUnchanged++;
+            return result;
+        }
+
+        if (parsedFile.getParsedContentList() == null) {
+            if (parsedFile.getException() != null) {
+                Logger.getLogger(UpdateProductWorker.class.getName()).log(Level.SEVERE,
+                        "Error parsing " + parsedFile.getFilePath(), parsedFile.getException());
+            }
+            publish("    Error: " + parsedFile.getFilePath() + " could not be parsed");
+            return false;
+        }
 
-        for(File f : fileArray) {
-            if ((f != null) && (f.getName().equals(filename))) {
-                result = f;
-                break;
+        LocaleFileFingerprint previousLff = fingerprints.get(parsedFile.getFileId());
+        try {
+            if (!em.isJoinedToTransaction()) {
+                em.getTransaction().begin();
             }
+            LocaleFile lf = em.find(LocaleFile.class, parsedFile.getFileId());
+            if (!(lf instanceof ParseableFile)) {
+                // Removed (or replaced) while being parsed
+                return false;
+            }
+            ParseableFile pf = (ParseableFile) lf;
+            List<LocaleContent> fileChanges = pf.update(this.em, lcntHelper,
+                    parsedFile.getParsedContentList());
+
+            result = lcntHelper.createTwinsForFile(pf, targetLocale);
+            storeFingerprint(parsedFile);
+            // IDs are only guaranteed to be assigned once the changes have been flushed
+            commitFile(fileChanges);
+            filesModified++;
+            return result;
+        } catch (Exception ex) {
+            Logger.getLogger(UpdateProductWorker.class.getName()).log(Level.SEVERE, null, ex);
+            publish("    Error: " + parsedFile.getFilePath() + " could not be updated");
+            discardFile(parsedFile.getFileId(), previousLff);
+            return false;
         }
-        return result;
     }
 
-    private boolean removeFileFromArray(File[] fileArray, File fileToRemove) {
-        boolean result = false;
+    /**
+     * Discards the changes of a file that could not be persisted, so they are neither
+     * committed with the next file nor make its commit fail (if the transaction has
+     * been marked for rollback), and forgets its new fingerprint, so it is parsed again
+     * in the next update
+     * @param fileId the ID of the file
+     * @param previousLff the fingerprint of the file before processing it, or null
+     */
+    private void discardFile(Integer fileId, LocaleFileFingerprint previousLff) {
+        if (em.getTransaction().isActive()) {
+            em.getTransaction().rollback();
+        }
+        em.clear();
+        filesSinceContextClear = 0;
+        if (previousLff == null) {
+            fingerprints.remove(fileId);
+        } else {
+            fingerprints.put(fileId, previousLff);
+        }
+        em.getTransaction().begin();
+    }
+
+    private void commitFile() {
+        commitFile(null);
+    }
+
+    /**
+     * Commits the changes of the file just processed and, every FILES_PER_CONTEXT_CLEAR
+     * files, clears the persistence context, so neither the memory used nor the cost of
+     * the commits grow with the number of files processed. Any entity obtained before
+     * calling this method must be merged again before changing it
+     * @param fileChanges the contents added or modified in the file, to be recorded in
+     *                    newAndModifiedList (may be null)
+     */
+    private void commitFile(List<LocaleContent> fileChanges) {
+        if (em.isJoinedToTransaction()) {
+            em.getTransaction().commit();
+        }
 
-        for(int i = 0; i < fileArray.length; i++) {
-            if ((fileArray[i] != null) && (fileArray[i].equals(fileToRemove))) {
-                fileArray[i] = null;
-                result = true;
-                break;
+        if (fileChanges != null) {
+            for(LocaleContent lc : fileChanges) {
+                if (lc.getId() != null) {
+                    newAndModifiedList.add(LocaleContentRef.of(lc));
+                }
             }
         }
-        return result;
+
+        filesSinceContextClear++;
+        if (filesSinceContextClear >= FILES_PER_CONTEXT_CLEAR) {
+            em.clear();
+            filesSinceContextClear = 0;
+        }
+        em.getTransaction().begin();
+    }
+
+    private void loadFingerprints() {
+        TypedQuery<LocaleFileFingerprint> lffQuery = em.createNamedQuery(
+                "LocaleFileFingerprint.findAll", LocaleFileFingerprint.class);
+
+        for(LocaleFileFingerprint lff : lffQuery.getResultList()) {
+            fingerprints.put(lff.getId(), lff);
+        }
+    }
+
+    private void storeFingerprint(ParsedFile parsedFile) {
+        Integer lfId = parsedFile.getFileId();
+        LocaleFileFingerprint lff = fingerprints.get(lfId);
+
+        if (!em.isJoinedToTransaction()) {
+            em.getTransaction().begin();
+        }
+
+        if (lff == null) {
+            lff = new LocaleFileFingerprint(lfId);
+            em.persist(lff);
+        } else {
+            lff = em.merge(lff);
+        }
+        lff.setFileSize(parsedFile.getFileSize());
+        lff.setLastModified(parsedFile.getLastModified());
+        lff.setMd5Hash(parsedFile.getMd5Hash());
+        lff.setCrc(parsedFile.getCrc());
+        lff.setLastUpdate(new Date());
+        fingerprints.put(lfId, lff);
+    }
+
+    /**
+     * Result of parsing a file in parserPool, ready to be persisted by the worker thread
+     */
+    private static class ParsedFile {
+        private final Path filePath;
+        private final Integer fileId;
+        private List<LocaleContent> parsedContentList;
+        private Throwable exception;
+        private boolean unchanged;
+        private long fileSize;
+        private long lastModified;
+        private String md5Hash;
+        private Long crc;
+
+        ParsedFile(Path filePath, Integer fileId) {
+            this.filePath = filePath;
+            this.fileId = fileId;
+        }
+
+        Path getFilePath() {
+            return filePath;
+        }
+
+        Integer getFileId() {
+            return fileId;
+        }
+
+        List<LocaleContent> getParsedContentList() {
+            return parsedContentList;
+        }
+
+        void setParsedContentList(List<LocaleContent> parsedContentList) {
+            this.parsedContentList = parsedContentList;
+        }
+
+        Throwable getException() {
+            return exception;
+        }
+
+        void setException(Throwable exception) {
+            this.exception = exception;
+        }
+
+        boolean isUnchanged() {
+            return unchanged;
+        }
+
+        void setUnchanged(boolean unchanged) {
+            this.unchanged = unchanged;
+        }
+
+        long getFileSize() {
+            return fileSize;
+        }
+
+        long getLastModified() {
+            return lastModified;
+        }
+
+        String getMd5Hash() {
+            return md5Hash;
+        }
+
+        Long getCrc() {
+            return crc;
+        }
+
+        void setFingerprint(long fileSize, long lastModified, String md5Hash, Long crc) {
+            this.fileSize = fileSize;
+            this.lastModified = lastModified;
+            this.md5Hash = md5Hash;
+            this.crc = crc;
+        }
     }
 }
@@ -0,0 +1,235 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.localizethat.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aho-Corasick automaton that finds every occurrence of a set of terms (which may
+ * contain several words) in a text with a single pass over it.
+ *
+ * Only whole-word occurrences are reported: if a term begins (or ends) with a letter
+ * or digit, the char before (or after) the occurrence can't be a letter or digit. In the
+ * case-insensitive variant, both the terms and the text are folded with foldCase
+ *
+ * @author rpalomares
+ */
+public class AhoCorasickMatcher {
+    private static final int ROOT = 0;
+    private final boolean caseSensitive;
+    // Transitions of every state, as sorted arrays of chars and target states
+    private final char[][] transitionChars;
+    private final int[][] transitionTargets;
+    private final int[] failure;
+    // Nearest state in the failure chain (including the state itself) where a term ends
+    private final int[] output;
+    private final int[] depth;
+
+    /**
+     * Builds the automaton for a collection of terms. Null and empty terms are ignored
+     * @param terms the terms to look for
+     * @param caseSensitive if false, terms are found regardless of case differences
+     */
+    public AhoCorasickMatcher(Collection<String> terms, boolean caseSensitive) {
+        List<Map<Character, Integer>> gotoList = new ArrayList<>(terms.size() * 4 + 1);
+        List<Boolean> terminal = new ArrayList<>(terms.size() * 4 + 1);
+        List<Integer> depthList = new ArrayList<>(terms.size() * 4 + 1);
+
+        this.caseSensitive = caseSensitive;
+        gotoList.add(new HashMap<Character, Integer>(64));
+        terminal.add(Boolean.FALSE);
+        depthList.add(0);
+
+        // Build the trie
+        for(String term : terms) {
+            if (term == null || term.isEmpty()) {
+                continue;
+            }
+            String t = caseSensitive ? term : foldCase(term);
+            int state = ROOT;
+            for(int i = 0; i < t.length(); i++) {
+                Integer next = gotoList.get(state).get(t.charAt(i));
+                if (next == null) {
+                    next = gotoList.size();
+                    gotoList.add(new HashMap<Character, Integer>(4));
+                    terminal.add(Boolean.FALSE);
+                    depthList.add(i + 1);
+                    gotoList.get(state).put(t.charAt(i), next);
+                }
+                state = next;
+            }
+            terminal.set(state, Boolean.TRUE);
+        }
+
+        int states = gotoList.size();
+        transitionChars = new char[states][];
+        transitionTargets = new int[states][];
+        failure = new int[states];
+        output = new int[states];
+        depth = new int[states];
+        for(int s = 0; s < states; s++) {
+            Map<Character, Integer> transitions = gotoList.get(s);
+            char[] chars = new char[transitions.size()];
+            int i = 0;
+            for(Character c : transitions.keySet()) {
+                chars[i++] = c;
+            }
+            Arrays.sort(chars);
+            int[] targets = new int[chars.length];
+            for(i = 0; i < chars.length; i++) {
+                targets[i] = transitions.get(chars[i]);
+            }
+            transitionChars[s] = chars;
+            transitionTargets[s] = targets;
+            depth[s] = depthList.get(s);
+        }
+
+        // Compute failure and output links in breadth-first order
+        int[] queue = new int[states];
+        int head = 0;
+        int tail = 0;
+        failure[ROOT] = ROOT;
+        output[ROOT] = -1;
+        for(int target : transitionTargets[ROOT]) {
+            failure[target] = ROOT;
+            queue[tail++] = target;
+        }
+        while (head < tail) {
+            int s = queue[head++];
+            output[s] = terminal.get(s) ? s : output[failure[s]];
+            for(int i = 0; i < transitionChars[s].length; i++) {
+                char c = transitionChars[s][i];
+                int target = transitionTargets[s][i];
+                int f = failure[s];
+                int next = transition(f, c);
+                while (next == -1 && f != ROOT) {
+                    f = failure[f];
+                    next = transition(f, c);
+                }
+                failure[target] = (next == -1) ? ROOT : next;
+                queue[tail++] = target;
+            }
+        }
+    }
+
+    public boolean isCaseSensitive() {
+        return caseSensitive;
+    }
+
+    /**
+     * Returns every whole-word occurrence of the terms in the text, including
+     * overlapping ones, ordered by end position (and, for the same end, longest first)
+     * @param text the text to search into
+     * @return a list of occurrences
+     */
+    public List<Match> findAll(CharSequence text) {
+        List<Match> matches = new ArrayList<>(8);
+        int state = ROOT;
+
+        for(int i = 0; i < text.length(); i++) {
+            char c = caseSensitive ? text.charAt(i) : foldCase(text.charAt(i));
+            int next = transition(state, c);
+            while (next == -1 && state != ROOT) {
+                state = failure[state];
+                next = transition(state, c);
+            }
+            state = (next == -1) ? ROOT : next;
+
+            for(int s = output[state]; s != -1; s = output[failure[s]]) {
+                int start = i + 1 - depth[s];
+                if (isWholeWord(text, start, i + 1)) {
+                    matches.add(new Match(start, i + 1));
+                }
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Returns the whole-word occurrences of the terms in the text, choosing the
+     * leftmost one when several overlap, and the longest one when several start
+     * at the same position
+     * @param text the text to search into
+     * @return a list of non overlapping occurrences, ordered by position
+     */
+    public List<Match> findLongestNonOverlapping(CharSequence text) {
+        List<Match> all = findAll(text);
+        // For every start position, the end of the longest occurrence starting there
+        int[] longestEnd = new int[text.length()];
+        List<Match> result = new ArrayList<>(all.size());
+
+        for(Match m : all) {
+            if (m.getEnd() > longestEnd[m.getStart()]) {
+                longestEnd[m.getStart()] = m.getEnd();
+            }
+        }
+        for(int i = 0; i < longestEnd.length; i++) {
+            if (longestEnd[i] > 0) {
+                result.add(new Match(i, longestEnd[i]));
+                i = longestEnd[i] - 1;
+            }
+        }
+        return result;
+    }
+
+    private int transition(int state, char c) {
+        int i = Arrays.binarySearch(transitionChars[state], c);
+        return (i < 0) ? -1 : transitionTargets[state][i];
+    }
+
+    private static boolean isWholeWord(CharSequence text, int start, int end) {
+        boolean startOk = (start == 0) || !Character.isLetterOrDigit(text.charAt(start))
+                || !Character.isLetterOrDigit(text.charAt(start - 1));
+        boolean endOk = (end == text.length()) || !Character.isLetterOrDigit(text.charAt(end - 1))
+                || !Character.isLetterOrDigit(text.charAt(end));
+        return startOk && endOk;
+    }
+
+    /**
+     * Folds the case of a string char by char, so the folded string has the same
+     * length (and positions) as the original one
+     * @param s the string to fold
+     * @return the folded string
+     */
+    public static String foldCase(String s) {
+        char[] chars = s.toCharArray();
+
+        for(int i = 0; i < chars.length; i++) {
+            chars[i] = foldCase(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    private static char foldCase(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    /**
+     * An occurrence of a term in the text, from start (inclusive) to end (exclusive)
+     */
+    public static class Match {
+        private final int start;
+        private final int end;
+
+        Match(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        public int getStart() {
+            return start;
+        }
+
+        public int getEnd() {
+            return end;
+        }
+    }
+}
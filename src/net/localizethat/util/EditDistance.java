@@ -0,0 +1,75 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.localizethat.util;
+
+/**
+ * Levenshtein distance (insertions, deletions and substitutions of single chars)
+ * between two strings
+ *
+ * @author rpalomares
+ */
+public class EditDistance {
+
+    private EditDistance() {
+    }
+
+    /**
+     * Computes the edit distance between two strings, giving up as soon as it is known
+     * to be greater than a maximum. Only the cells within maxDistance of the diagonal
+     * are computed, so the cost is proportional to the length of the strings times
+     * maxDistance
+     * @param a one of the strings
+     * @param b the other string
+     * @param maxDistance the maximum distance we are interested in
+     * @return the edit distance, or maxDistance + 1 if it is greater than maxDistance
+     */
+    public static int bounded(CharSequence a, CharSequence b, int maxDistance) {
+        int n = a.length();
+        int m = b.length();
+        int outOfBounds = maxDistance + 1;
+
+        if (Math.abs(n - m) > maxDistance) {
+            return outOfBounds;
+        }
+
+        int[] prev = new int[m + 1];
+        int[] curr = new int[m + 1];
+        for(int j = 0; j <= m; j++) {
+            prev[j] = (j <= maxDistance) ? j : outOfBounds;
+        }
+
+        for(int i = 1; i <= n; i++) {
+            int from = Math.max(1, i - maxDistance);
+            int to = Math.min(m, i + maxDistance);
+            char c = a.charAt(i - 1);
+            int rowMin;
+
+            curr[0] = (i <= maxDistance) ? i : outOfBounds;
+            if (from > 1) {
+                curr[from - 1] = outOfBounds;
+            }
+            rowMin = (from == 1) ? curr[0] : outOfBounds;
+            for(int j = from; j <= to; j++) {
+                int value = prev[j - 1] + ((c == b.charAt(j - 1)) ? 0 : 1);
+                value = Math.min(value, prev[j] + 1);
+                value = Math.min(value, curr[j - 1] + 1);
+                curr[j] = Math.min(value, outOfBounds);
+                rowMin = Math.min(rowMin, curr[j]);
+            }
+            if (to < m) {
+                curr[to + 1] = outOfBounds;
+            }
+            if (rowMin > maxDistance) {
+                return outOfBounds;
+            }
+
+            int[] swap = prev;
+            prev = curr;
+            curr = swap;
+        }
+        return Math.min(prev[m], outOfBounds);
+    }
+}
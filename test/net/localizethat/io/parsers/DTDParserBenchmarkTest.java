@@ -0,0 +1,98 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.localizethat.io.parsers;
+
+import java.io.IOException;
+import java.io.LineNumberReader;
+import java.io.StringReader;
+import java.text.ParseException;
+import java.util.List;
+import java.util.Locale;
+import net.localizethat.model.LocaleContent;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Benchmarks DTDTokenizerReadHelper against DTDReadHelper, the SAX based parser, on a
+ * generated DTD with 5,000 entities and a localization note every 10 of them.
+ *
+ * Both parsers are warmed up and then timed over the same number of runs; the
+ * averages are printed. The test only fails if both parsers don't give the same
+ * items, never because of the timings
+ * @author rpalomares
+ */
+public class DTDParserBenchmarkTest {
+    private static final int ENTITIES = 5000;
+    private static final int WARMUP_RUNS = 10;
+    private static final int TIMED_RUNS = 20;
+
+    @Test
+    public void testBenchmark() throws IOException, ParseException {
+        String dtd = generateDtd(ENTITIES);
+        List<LocaleContent> saxItems = parse(dtd, false);
+        List<LocaleContent> tokenizerItems = parse(dtd, true);
+
+        assertEquals(ENTITIES + ENTITIES / 10 + 1, saxItems.size());
+        assertEquals(PropertiesReadHelperTest.describe(saxItems),
+                PropertiesReadHelperTest.describe(tokenizerItems));
+
+        for(int i = 0; i < WARMUP_RUNS; i++) {
+            parse(dtd, false);
+            parse(dtd, true);
+        }
+        long saxNanos = time(dtd, false);
+        long tokenizerNanos = time(dtd, true);
+
+        System.out.println(String.format(Locale.ROOT,
+                "DTD parsers, %d items, average of %d runs: SAX %.1f ms, tokenizer %.1f ms",
+                saxItems.size(), TIMED_RUNS, saxNanos / (TIMED_RUNS * 1e6),
+                tokenizerNanos / (TIMED_RUNS * 1e6)));
+    }
+
+    private static long time(String dtd, boolean useTokenizer)
+            throws IOException, ParseException {
+        long start = System.nanoTime();
+
+        for(int i = 0; i < TIMED_RUNS; i++) {
+            parse(dtd, useTokenizer);
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Generates a DTD like the ones in Mozilla products: a license header, and
+     * entities with a localization note every 10 of them
+     * @param entities the number of entities
+     * @return the contents of the DTD
+     */
+    static String generateDtd(int entities) {
+        StringBuilder sb = new StringBuilder(entities * 80);
+
+        sb.append("<!-- This Source Code Form is subject to the terms of the Mozilla Public\n")
+          .append("   - License, v. 2.0. If a copy of the MPL was not distributed with this\n")
+          .append("   - file, You can obtain one at http://mozilla.org/MPL/2.0/. -->\n\n");
+        for(int i = 0; i < entities; i++) {
+            if (i % 10 == 0) {
+                sb.append("<!-- LOCALIZATION NOTE (section").append(i / 10)
+                  .append(".label): the next entities are used in section ").append(i / 10)
+                  .append(" -->\n");
+            }
+            sb.append("<!ENTITY section").append(i / 10).append(".item").append(i)
+              .append(".label \"Item number ").append(i).append(" of the generated file\">\n");
+        }
+        return sb.toString();
+    }
+
+    private static List<LocaleContent> parse(String dtd, boolean useTokenizer)
+            throws IOException, ParseException {
+        try (LineNumberReader lnr = new LineNumberReader(new StringReader(dtd))) {
+            ReadHelper rh = (useTokenizer) ? new DTDTokenizerReadHelper(lnr)
+                    : new DTDReadHelper(lnr);
+            rh.parseStream();
+            return rh.getLocaleContentList();
+        }
+    }
+}
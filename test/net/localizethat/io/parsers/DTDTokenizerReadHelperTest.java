@@ -0,0 +1,64 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.localizethat.io.parsers;
+
+import java.io.IOException;
+import java.io.LineNumberReader;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.util.List;
+import net.localizethat.model.LocaleContent;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests DTDTokenizerReadHelper against DTDReadHelper, the SAX based parser it replaces
+ * as the default one: every file in golden/dtd must give the same LocaleContent items
+ * (class, order in file, name, comment type, entity name and text) with both parsers,
+ * so updating a product with one or the other does not flag anything as modified.
+ *
+ * The files only use parameter external entities, as the SAX parser drops the first
+ * character of the name of the general ones, and have no BOM, which the SAX parser
+ * rejects
+ * @author rpalomares
+ */
+public class DTDTokenizerReadHelperTest {
+    private static final String CORPUS_DIR = "golden/dtd";
+
+    @Test
+    public void testSameResultAsSaxParser() throws IOException, ParseException,
+            URISyntaxException {
+        Path corpusDir = Paths.get(DTDTokenizerReadHelperTest.class.getResource(CORPUS_DIR).toURI());
+        int filesChecked = 0;
+
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(corpusDir, "*.dtd")) {
+            for(Path input : ds) {
+                assertEquals(input.getFileName().toString(),
+                        PropertiesReadHelperTest.describe(parse(input, false)),
+                        PropertiesReadHelperTest.describe(parse(input, true)));
+                filesChecked++;
+            }
+        }
+        assertTrue("No files found in " + corpusDir, filesChecked > 0);
+    }
+
+    private static List<LocaleContent> parse(Path input, boolean useTokenizer)
+            throws IOException, ParseException {
+        try (LineNumberReader lnr = new LineNumberReader(
+                Files.newBufferedReader(input, StandardCharsets.UTF_8))) {
+            ReadHelper rh = (useTokenizer) ? new DTDTokenizerReadHelper(lnr)
+                    : new DTDReadHelper(lnr);
+            rh.parseStream();
+            return rh.getLocaleContentList();
+        }
+    }
+}
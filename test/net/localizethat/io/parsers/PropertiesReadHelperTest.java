@@ -0,0 +1,94 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.localizethat.io.parsers;
+
+import java.io.IOException;
+import java.io.LineNumberReader;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.util.List;
+import net.localizethat.model.LTComment;
+import net.localizethat.model.LocaleContent;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Golden-file tests for PropertiesReadHelper. Every file in golden/properties is parsed
+ * and the result is compared with the .expected file next to it, which was produced by
+ * the line-based PropertiesReadHelper replaced in 0.9, so any change in the output of
+ * the parser is caught.
+ *
+ * Each line of an .expected file describes a LocaleContent: class, order in file, name,
+ * comment type and entity name (comments only) and text value, separated by tabs, with
+ * backslashes, tabs and line breaks escaped
+ * @author rpalomares
+ */
+public class PropertiesReadHelperTest {
+    private static final String CORPUS_DIR = "golden/properties";
+
+    @Test
+    public void testGoldenCorpus() throws IOException, ParseException, URISyntaxException {
+        Path corpusDir = Paths.get(PropertiesReadHelperTest.class.getResource(CORPUS_DIR).toURI());
+        int filesChecked = 0;
+
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(corpusDir, "*.properties")) {
+            for(Path input : ds) {
+                Path expected = input.resolveSibling(input.getFileName() + ".expected");
+                assertEquals(input.getFileName().toString(),
+                        new String(Files.readAllBytes(expected), StandardCharsets.UTF_8),
+                        describe(parse(input)));
+                filesChecked++;
+            }
+        }
+        assertTrue("No files found in " + corpusDir, filesChecked > 0);
+    }
+
+    static List<LocaleContent> parse(Path input) throws IOException, ParseException {
+        try (LineNumberReader lnr = new LineNumberReader(
+                Files.newBufferedReader(input, StandardCharsets.UTF_8))) {
+            PropertiesReadHelper prh = new PropertiesReadHelper(lnr);
+            prh.parseStream();
+            return prh.getLocaleContentList();
+        }
+    }
+
+    /**
+     * Describes a list of LocaleContent objects in the format of the .expected files
+     * @param lcList the result of parsing a file
+     * @return the description, one line per LocaleContent
+     */
+    static String describe(List<? extends LocaleContent> lcList) {
+        StringBuilder sb = new StringBuilder(1024);
+
+        for(LocaleContent lc : lcList) {
+            sb.append(lc.getClass().getSimpleName());
+            sb.append('\t').append(lc.getOrderInFile());
+            sb.append('\t').append(escape(lc.getName()));
+            if (lc instanceof LTComment) {
+                LTComment ltc = (LTComment) lc;
+                sb.append('\t').append(ltc.getCommentType());
+                sb.append('\t').append(escape(ltc.getEntityName()));
+            }
+            sb.append('\t').append(escape(lc.getTextValue()));
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static String escape(String s) {
+        if (s == null) {
+            return "(null)";
+        }
+        return s.replace("\\", "\\\\").replace("\t", "\\t").replace("\r", "\\r")
+                .replace("\n", "\\n");
+    }
+}
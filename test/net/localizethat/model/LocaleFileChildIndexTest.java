@@ -0,0 +1,165 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.localizethat.model;
+
+import java.util.Locale;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the lookups of LocaleFile children by name and by order in file, which use
+ * LocaleContentIndex, against the linear scan over the children they replaced.
+ *
+ * testBenchmark times both on a 5,000 entity file and prints the results; it only
+ * fails if they disagree, never because of the timings
+ * @author rpalomares
+ */
+public class LocaleFileChildIndexTest {
+    private static final int BENCHMARK_ENTITIES = 5000;
+    private static final int BENCHMARK_ROUNDS = 5;
+    private DtdFile df;
+
+    @Before
+    public void setUp() {
+        df = createFile(BENCHMARK_ENTITIES);
+    }
+
+    @Test
+    public void testLookupsMatchLinearScan() {
+        for(int i = 0; i < BENCHMARK_ENTITIES; i++) {
+            String name = keyName(i);
+            LocaleContent expected = scanByName(df, name);
+
+            assertSame(expected, df.getChildByName(name));
+            assertSame(expected, df.getChildByName(name.toUpperCase(Locale.ROOT)));
+            assertSame(expected, df.getChildByName(name, true));
+            assertNull(df.getChildByName(name.toUpperCase(Locale.ROOT), true));
+            assertTrue(df.hasChild(expected));
+            assertSame(scanByOrder(df, i), df.getChildByOrderInFile(i));
+        }
+        assertNull(df.getChildByName("missing.key"));
+        assertNull(df.getChildByOrderInFile(BENCHMARK_ENTITIES));
+        assertFalse(df.hasChild(new LTKeyValuePair()));
+    }
+
+    @Test
+    public void testIndexFollowsChanges() {
+        LocaleContent first = df.getChildByName(keyName(0));
+
+        // Moving a child to another line
+        df.setChildOrderInFile(first, BENCHMARK_ENTITIES + 10);
+        assertNull(df.getChildByOrderInFile(0));
+        assertSame(first, df.getChildByOrderInFile(BENCHMARK_ENTITIES + 10));
+
+        // Removing it
+        assertTrue(df.removeChild(first));
+        assertNull(df.getChildByName(keyName(0)));
+        assertNull(df.getChildByOrderInFile(BENCHMARK_ENTITIES + 10));
+        assertFalse(df.hasChild(first));
+
+        // Names differing only in case: the first one added wins, unless matching case
+        LTKeyValuePair lower = createKeyValuePair("dup.key", BENCHMARK_ENTITIES + 1);
+        LTKeyValuePair upper = createKeyValuePair("DUP.KEY", BENCHMARK_ENTITIES + 2);
+        assertTrue(df.addChild(lower));
+        assertTrue(df.addChild(upper));
+        assertFalse(df.addChild(lower));
+        assertSame(lower, df.getChildByName("Dup.Key"));
+        assertSame(upper, df.getChildByName("DUP.KEY", true));
+        assertTrue(df.removeChild(lower));
+        assertSame(upper, df.getChildByName("dup.key"));
+
+        assertTrue(df.clearChildren());
+        assertNull(df.getChildByName(keyName(1)));
+        assertNull(df.getChildByOrderInFile(1));
+    }
+
+    @Test
+    public void testBenchmark() {
+        long scanNanos = Long.MAX_VALUE;
+        long indexNanos = Long.MAX_VALUE;
+
+        for(int round = 0; round < BENCHMARK_ROUNDS; round++) {
+            DtdFile scanned = createFile(BENCHMARK_ENTITIES);
+            long start = System.nanoTime();
+            int scanFound = 0;
+            for(int i = 0; i < BENCHMARK_ENTITIES; i++) {
+                if (scanByName(scanned, keyName(i)) == scanByOrder(scanned, i)) {
+                    scanFound++;
+                }
+            }
+            scanNanos = Math.min(scanNanos, System.nanoTime() - start);
+
+            // Include building the index, as LocaleFile does it lazily
+            DtdFile indexed = createFile(BENCHMARK_ENTITIES);
+            start = System.nanoTime();
+            int indexFound = 0;
+            for(int i = 0; i < BENCHMARK_ENTITIES; i++) {
+                if (indexed.getChildByName(keyName(i)) == indexed.getChildByOrderInFile(i)) {
+                    indexFound++;
+                }
+            }
+            indexNanos = Math.min(indexNanos, System.nanoTime() - start);
+
+            assertEquals(BENCHMARK_ENTITIES, scanFound);
+            assertEquals(BENCHMARK_ENTITIES, indexFound);
+        }
+        System.out.println(String.format(Locale.ROOT,
+                "LocaleFile lookups, %d entities, best of %d: linear scan %.1f ms, index %.1f ms",
+                BENCHMARK_ENTITIES, BENCHMARK_ROUNDS, scanNanos / 1e6, indexNanos / 1e6));
+    }
+
+    private static DtdFile createFile(int entities) {
+        DtdFile f = new DtdFile();
+
+        f.setName("benchmark.dtd");
+        for(int i = 0; i < entities; i++) {
+            f.addChild(createKeyValuePair(keyName(i), i));
+        }
+        return f;
+    }
+
+    private static LTKeyValuePair createKeyValuePair(String name, int orderInFile) {
+        LTKeyValuePair lkvp = new LTKeyValuePair();
+
+        lkvp.setName(name);
+        lkvp.setOrderInFile(orderInFile);
+        lkvp.setTextValue("Value of " + name);
+        return lkvp;
+    }
+
+    private static String keyName(int i) {
+        return "entity.key" + i + ".label";
+    }
+
+    /**
+     * The lookup by name as LocaleFile did it before having an index
+     */
+    private static LocaleContent scanByName(LocaleFile lf, String name) {
+        for(LocaleContent lc : lf.getChildren()) {
+            if (lc.getName().equalsIgnoreCase(name)) {
+                return lc;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The lookup by order in file as LocaleFile did it before having an index
+     */
+    private static LocaleContent scanByOrder(LocaleFile lf, int orderInFile) {
+        for(LocaleContent lc : lf.getChildren()) {
+            if (lc.getOrderInFile() == orderInFile) {
+                return lc;
+            }
+        }
+        return null;
+    }
+}
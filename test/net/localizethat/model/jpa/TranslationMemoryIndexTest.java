@@ -0,0 +1,117 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.localizethat.model.jpa;
+
+import java.util.List;
+import net.localizethat.model.TranslationStatus;
+import net.localizethat.model.TranslationSuggestion;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the exact and fuzzy lookups of TranslationMemoryIndex, and the exclusion of
+ * the content being translated
+ * @author rpalomares
+ */
+public class TranslationMemoryIndexTest {
+    private TranslationMemoryIndex tmi;
+
+    @Before
+    public void setUp() {
+        tmi = new TranslationMemoryIndex(16);
+        tmi.put(1, "Open File", "Abrir archivo");
+        tmi.put(2, "Open File", "Abrir archivo");
+        tmi.put(3, "Open File", "Abrir fichero");
+        tmi.put(4, "Save the current file", "Guardar el archivo actual");
+        tmi.put(5, "Close Tab", "Cerrar pestaña");
+    }
+
+    @Test
+    public void testExactMatches() {
+        List<TranslationSuggestion> suggestions = tmi.suggest("  Open \t File ", 80, 10, null);
+
+        assertEquals(2, suggestions.size());
+        // The most repeated translation goes first
+        assertEquals("Abrir archivo", suggestions.get(0).getTargetText());
+        assertEquals(2, suggestions.get(0).getOccurrences());
+        assertEquals("Abrir fichero", suggestions.get(1).getTargetText());
+        assertEquals(1, suggestions.get(1).getOccurrences());
+        for(TranslationSuggestion ts : suggestions) {
+            assertTrue(ts.isExactMatch());
+            // There is more than one translation, so none of them can be just copied
+            assertEquals(TranslationStatus.Proposed, ts.getTrnsStatus());
+        }
+
+        suggestions = tmi.suggest("Close Tab", 80, 10, null);
+        assertEquals(1, suggestions.size());
+        assertEquals(TranslationStatus.Copied, suggestions.get(0).getTrnsStatus());
+    }
+
+    @Test
+    public void testFuzzyMatches() {
+        List<TranslationSuggestion> suggestions = tmi.suggest("Save the current files", 80, 10, null);
+
+        assertEquals(1, suggestions.size());
+        TranslationSuggestion ts = suggestions.get(0);
+        assertEquals("Save the current file", ts.getSourceText());
+        assertEquals("Guardar el archivo actual", ts.getTargetText());
+        assertFalse(ts.isExactMatch());
+        // One edit over 22 chars
+        assertEquals(95, ts.getSimilarity());
+        assertEquals(TranslationStatus.Approximated, ts.getTrnsStatus());
+
+        // Case differences are fuzzy matches
+        suggestions = tmi.suggest("close tab", 10, 10, null);
+        assertFalse(suggestions.isEmpty());
+        assertFalse(suggestions.get(0).isExactMatch());
+        assertEquals("Cerrar pestaña", suggestions.get(0).getTargetText());
+
+        assertTrue(tmi.suggest("Save the current files", 99, 10, null).isEmpty());
+        assertTrue(tmi.suggest("Something completely different", 50, 10, null).isEmpty());
+    }
+
+    @Test
+    public void testFuzzyMatchesDontRepeatExactTranslations() {
+        tmi.put(6, "Open Files", "Abrir archivo");
+        tmi.put(7, "Open Files", "Abrir archivos");
+
+        List<TranslationSuggestion> suggestions = tmi.suggest("Open File", 80, 10, null);
+        assertEquals(3, suggestions.size());
+        assertEquals("Abrir archivo", suggestions.get(0).getTargetText());
+        assertEquals("Abrir fichero", suggestions.get(1).getTargetText());
+        assertEquals("Abrir archivos", suggestions.get(2).getTargetText());
+        assertFalse(suggestions.get(2).isExactMatch());
+
+        assertEquals(1, tmi.suggest("Open File", 80, 1, null).size());
+    }
+
+    @Test
+    public void testExcludedContent() {
+        assertTrue(tmi.suggest("Close Tab", 80, 10, 5).isEmpty());
+        assertTrue(tmi.suggest("Save the current files", 80, 10, 4).isEmpty());
+
+        List<TranslationSuggestion> suggestions = tmi.suggest("Open File", 80, 10, 3);
+        assertEquals(1, suggestions.size());
+        assertEquals("Abrir archivo", suggestions.get(0).getTargetText());
+        assertEquals(2, suggestions.get(0).getOccurrences());
+        assertEquals(TranslationStatus.Copied, suggestions.get(0).getTrnsStatus());
+    }
+
+    @Test
+    public void testReplacedAndRemovedSegments() {
+        tmi.put(5, "Close Tab", "Cerrar la pestaña");
+        List<TranslationSuggestion> suggestions = tmi.suggest("Close Tab", 80, 10, null);
+        assertEquals(1, suggestions.size());
+        assertEquals("Cerrar la pestaña", suggestions.get(0).getTargetText());
+
+        tmi.remove(4);
+        assertTrue(tmi.suggest("Save the current file", 80, 10, null).isEmpty());
+        assertTrue(tmi.suggest("Save the current files", 80, 10, null).isEmpty());
+    }
+}